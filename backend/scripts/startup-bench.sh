@@ -0,0 +1,68 @@
+#!/usr/bin/env bash
+# Startup benchmark: JVM start -> application ready, and JVM start -> first broadcast.
+#
+# Compares the default startup against the fast-start mode (Spring AOT + AppCDS archive +
+# the fast-start profile). Each run uses a fresh snapshot directory and a random port, and
+# monitors BENCH_LOCATIONS from boot so the first broadcast needs no WebSocket client.
+#
+# Usage: scripts/startup-bench.sh [runs]
+#   BENCH_LOCATIONS  locations to monitor (default: a custom-images location)
+#   BENCH_TIMEOUT    seconds to wait for the first broadcast per run (default: 120)
+#   SKIP_BUILD=1     reuse the existing target/ jar
+set -euo pipefail
+
+cd "$(dirname "$0")/.."
+RUNS="${1:-5}"
+BENCH_LOCATIONS="${BENCH_LOCATIONS:-startup-bench}"
+BENCH_TIMEOUT="${BENCH_TIMEOUT:-120}"
+WORK="target/startup-bench"
+MAIN=com.rainCity.hazard.VanHazard
+
+if [[ "${SKIP_BUILD:-0}" != "1" ]]; then
+  ./mvnw -B -q -Pfast-start -DskipTests package
+fi
+
+JAR=$(ls target/hazard-detector-*.jar | grep -v original | head -1)
+rm -rf "$WORK" && mkdir -p "$WORK/app"
+(cd "$WORK/app" && jar -xf "../../../$JAR")
+# AppCDS only archives classes loaded from jars, so repackage the application classes
+jar -cf "$WORK/app/app-classes.jar" -C "$WORK/app/BOOT-INF/classes" .
+CP="$WORK/app/app-classes.jar$(printf ':%s' "$WORK"/app/BOOT-INF/lib/*.jar)"
+FAST_OPTS=(-Dspring.aot.enabled=true -Dspring.profiles.active=fast-start)
+
+echo "Training AppCDS archive..."
+java -XX:ArchiveClassesAtExit="$WORK/app.jsa" -Dspring.context.exit=onRefresh \
+  "${FAST_OPTS[@]}" -cp "$CP" "$MAIN" \
+  --server.port=0 --hazard.snapshot.path="$WORK/train/snapshot.bin" >"$WORK/train.log" 2>&1 || true
+
+# Prints "<ready_ms> <first_broadcast_ms>" for one run of the given JVM options
+run_once() {
+  local log="$WORK/run-$1.log"
+  shift
+  java "$@" -cp "$CP" "$MAIN" \
+    --server.port=0 \
+    --hazard.snapshot.path="$WORK/snap-$RANDOM/snapshot.bin" \
+    --hazard.startup.monitor="$BENCH_LOCATIONS" >"$log" 2>&1 &
+  local pid=$!
+  local ready="" first="" deadline=$((SECONDS + BENCH_TIMEOUT))
+  while [[ -z "$first" && $SECONDS -lt $deadline ]] && kill -0 "$pid" 2>/dev/null; do
+    sleep 0.2
+    ready=$(grep -ao 'STARTUP ready_ms=[0-9]*' "$log" | head -1 | cut -d= -f2 || true)
+    first=$(grep -ao 'STARTUP first_broadcast_ms=[0-9]*' "$log" | head -1 | cut -d= -f2 || true)
+  done
+  kill "$pid" 2>/dev/null || true
+  wait "$pid" 2>/dev/null || true
+  echo "${ready:--} ${first:--}"
+}
+
+printf "%-12s %4s %10s %20s\n" mode run ready_ms first_broadcast_ms
+for mode in default fast-start; do
+  for i in $(seq 1 "$RUNS"); do
+    if [[ "$mode" == "default" ]]; then
+      read -r ready first < <(run_once "$mode-$i")
+    else
+      read -r ready first < <(run_once "$mode-$i" -XX:SharedArchiveFile="$WORK/app.jsa" "${FAST_OPTS[@]}")
+    fi
+    printf "%-12s %4s %10s %20s\n" "$mode" "$i" "$ready" "$first"
+  done
+done
@@ -0,0 +1,31 @@
+package com.rainCity.hazard.cluster;
+
+import java.util.Collection;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Membership and shared work list for a group of backend nodes. Each node renews a lease on
+ * every heartbeat; a node whose lease has expired is no longer live and its locations move to
+ * the remaining nodes.
+ */
+public interface ClusterMembership {
+
+  /** Creates or renews this node's lease for {@code leaseMillis}. */
+  void heartbeat(String nodeId, long leaseMillis);
+
+  /**
+   * Node ids with an unexpired lease, or empty when membership could not be read. A failed read
+   * is not an empty cluster: callers keep their last view rather than claiming every location.
+   */
+  Optional<Set<String>> liveNodes();
+
+  /** Drops this node's lease so the others take over its locations right away. */
+  void leave(String nodeId);
+
+  /** Adds locations to the cluster-wide monitored set. */
+  void addLocations(Collection<String> locations);
+
+  /** Every location monitored anywhere in the cluster. */
+  Set<String> locations();
+}
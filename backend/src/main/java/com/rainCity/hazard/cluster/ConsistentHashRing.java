@@ -0,0 +1,50 @@
+package com.rainCity.hazard.cluster;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Immutable consistent-hash ring of node ids, with virtual points per node so locations spread
+ * evenly and only about 1/N of them move when a node joins or leaves.
+ */
+public final class ConsistentHashRing {
+
+  private final NavigableMap<Long, String> ring = new TreeMap<>();
+
+  public ConsistentHashRing(Collection<String> nodes, int virtualNodes) {
+    for (String node : nodes) {
+      for (int i = 0; i < virtualNodes; i++)
+        ring.put(hash(node + "#" + i), node);
+    }
+  }
+
+  /** Owning node for the key, or null when the ring is empty. */
+  public String ownerOf(String key) {
+    if (ring.isEmpty())
+      return null;
+    Map.Entry<Long, String> e = ring.ceilingEntry(hash(key));
+    return e != null ? e.getValue() : ring.firstEntry().getValue();
+  }
+
+  public boolean isEmpty() {
+    return ring.isEmpty();
+  }
+
+  // FNV-1a over UTF-8 with a murmur3 finalizer; stable across JVMs and nodes
+  static long hash(String key) {
+    long h = 0xcbf29ce484222325L;
+    for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+      h ^= (b & 0xff);
+      h *= 0x100000001b3L;
+    }
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    h *= 0xc4ceb9fe1a85ec53L;
+    h ^= h >>> 33;
+    return h;
+  }
+}
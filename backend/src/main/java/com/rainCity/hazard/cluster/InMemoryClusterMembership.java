@@ -0,0 +1,49 @@
+package com.rainCity.hazard.cluster;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * In-JVM membership. Every instance in the same JVM shares one view, so several application
+ * contexts (or plain {@link ShardCoordinator}s) can act as separate nodes in tests.
+ */
+@Component
+@ConditionalOnProperty(name = "hazard.cluster.membership", havingValue = "memory", matchIfMissing = true)
+public class InMemoryClusterMembership implements ClusterMembership {
+
+  private static final Map<String, Long> LEASES = new ConcurrentHashMap<>();
+  private static final Set<String> LOCATIONS = ConcurrentHashMap.newKeySet();
+
+  @Override
+  public void heartbeat(String nodeId, long leaseMillis) {
+    LEASES.put(nodeId, System.currentTimeMillis() + leaseMillis);
+  }
+
+  @Override
+  public Optional<Set<String>> liveNodes() {
+    long now = System.currentTimeMillis();
+    LEASES.values().removeIf(expires -> expires <= now);
+    return Optional.of(new HashSet<>(LEASES.keySet()));
+  }
+
+  @Override
+  public void leave(String nodeId) {
+    LEASES.remove(nodeId);
+  }
+
+  @Override
+  public void addLocations(Collection<String> locations) {
+    LOCATIONS.addAll(locations);
+  }
+
+  @Override
+  public Set<String> locations() {
+    return new HashSet<>(LOCATIONS);
+  }
+}
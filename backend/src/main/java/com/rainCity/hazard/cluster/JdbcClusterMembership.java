@@ -0,0 +1,151 @@
+package com.rainCity.hazard.cluster;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Postgres-backed membership. Leases are stored with database time, so node clock skew does not
+ * decide who is live. Calls share a small connection pool, so a heartbeat does not pay for a new
+ * connection.
+ */
+@Component
+@ConditionalOnProperty(name = "hazard.cluster.membership", havingValue = "jdbc")
+public class JdbcClusterMembership implements ClusterMembership {
+
+  @Value("${hazard.cluster.jdbc.url}")
+  private String url;
+
+  @Value("${hazard.cluster.jdbc.username:}")
+  private String username;
+
+  @Value("${hazard.cluster.jdbc.password:}")
+  private String password;
+
+  @Value("${hazard.cluster.jdbc.pool-size:2}")
+  private int poolSize;
+
+  private HikariDataSource dataSource;
+
+  @PostConstruct
+  public void createTables() {
+    HikariConfig config = new HikariConfig();
+    config.setPoolName("hazard-cluster");
+    config.setJdbcUrl(url);
+    config.setUsername(username);
+    config.setPassword(password);
+    config.setMaximumPoolSize(poolSize);
+    config.setMinimumIdle(1);
+    // Fail a heartbeat well inside the lease rather than waiting on a dead database
+    config.setConnectionTimeout(3000);
+    // Start even when the database is briefly unavailable; the table check below reports it
+    config.setInitializationFailTimeout(-1);
+    dataSource = new HikariDataSource(config);
+
+    try (Connection c = connect(); Statement st = c.createStatement()) {
+      st.execute(
+          "CREATE TABLE IF NOT EXISTS hazard_nodes ("
+              + "node_id TEXT PRIMARY KEY, lease_expires_at TIMESTAMPTZ NOT NULL)");
+      st.execute("CREATE TABLE IF NOT EXISTS hazard_locations (location_id TEXT PRIMARY KEY)");
+    } catch (SQLException e) {
+      throw new IllegalStateException("Cluster membership tables unavailable: " + e.getMessage(), e);
+    }
+  }
+
+  @Override
+  public void heartbeat(String nodeId, long leaseMillis) {
+    String sql =
+        "INSERT INTO hazard_nodes (node_id, lease_expires_at) "
+            + "VALUES (?, now() + ? * interval '1 millisecond') "
+            + "ON CONFLICT (node_id) DO UPDATE SET lease_expires_at = EXCLUDED.lease_expires_at";
+    try (Connection c = connect(); PreparedStatement ps = c.prepareStatement(sql)) {
+      ps.setString(1, nodeId);
+      ps.setLong(2, leaseMillis);
+      ps.executeUpdate();
+    } catch (SQLException e) {
+      System.err.println("Cluster heartbeat error: " + e.getMessage());
+    }
+  }
+
+  @Override
+  public Optional<Set<String>> liveNodes() {
+    Set<String> nodes = new HashSet<>();
+    try (Connection c = connect();
+        PreparedStatement ps = c.prepareStatement(
+            "SELECT node_id FROM hazard_nodes WHERE lease_expires_at > now()");
+        ResultSet rs = ps.executeQuery()) {
+      while (rs.next())
+        nodes.add(rs.getString(1));
+    } catch (SQLException e) {
+      System.err.println("Cluster membership read error: " + e.getMessage());
+      return Optional.empty();
+    }
+    return Optional.of(nodes);
+  }
+
+  @Override
+  public void leave(String nodeId) {
+    try (Connection c = connect();
+        PreparedStatement ps = c.prepareStatement("DELETE FROM hazard_nodes WHERE node_id = ?")) {
+      ps.setString(1, nodeId);
+      ps.executeUpdate();
+    } catch (SQLException e) {
+      System.err.println("Cluster leave error: " + e.getMessage());
+    }
+  }
+
+  @Override
+  public void addLocations(Collection<String> locations) {
+    if (locations.isEmpty())
+      return;
+
+    try (Connection c = connect();
+        PreparedStatement ps = c.prepareStatement(
+            "INSERT INTO hazard_locations (location_id) VALUES (?) ON CONFLICT DO NOTHING")) {
+      for (String loc : locations) {
+        ps.setString(1, loc);
+        ps.addBatch();
+      }
+      ps.executeBatch();
+    } catch (SQLException e) {
+      System.err.println("Cluster location write error: " + e.getMessage());
+    }
+  }
+
+  @Override
+  public Set<String> locations() {
+    Set<String> locations = new HashSet<>();
+    try (Connection c = connect();
+        PreparedStatement ps = c.prepareStatement("SELECT location_id FROM hazard_locations");
+        ResultSet rs = ps.executeQuery()) {
+      while (rs.next())
+        locations.add(rs.getString(1));
+    } catch (SQLException e) {
+      System.err.println("Cluster location read error: " + e.getMessage());
+    }
+    return locations;
+  }
+
+  private Connection connect() throws SQLException {
+    return dataSource.getConnection();
+  }
+
+  @PreDestroy
+  public void close() {
+    if (dataSource != null)
+      dataSource.close();
+  }
+}
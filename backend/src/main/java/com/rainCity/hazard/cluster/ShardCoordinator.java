@@ -0,0 +1,152 @@
+package com.rainCity.hazard.cluster;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Decides which monitored locations this node processes. With clustering enabled, locations are
+ * shared through {@link ClusterMembership} and assigned to live nodes on a consistent-hash ring,
+ * so each location has one owner and adding a node divides the work instead of repeating it.
+ * With clustering disabled, this node owns every location.
+ *
+ * <p>The lease is renewed on a dedicated thread rather than Spring's shared scheduler, so a long
+ * tick cannot let it lapse; the heartbeat interval is held to at most a third of the lease.
+ */
+@Service
+public class ShardCoordinator {
+
+  private final ClusterMembership membership;
+  private final boolean enabled;
+  private final String nodeId;
+  private final long leaseMillis;
+  private final long heartbeatMillis;
+  private final int virtualNodes;
+
+  private ScheduledExecutorService heartbeatTimer;
+
+  private volatile Set<String> liveNodes = Set.of();
+  private volatile ConsistentHashRing ring;
+
+  public ShardCoordinator(
+      ClusterMembership membership,
+      @Value("${hazard.cluster.enabled:false}") boolean enabled,
+      @Value("${hazard.cluster.node-id:}") String nodeId,
+      @Value("${hazard.cluster.lease-ms:15000}") long leaseMillis,
+      @Value("${hazard.cluster.heartbeat-ms:5000}") long heartbeatMillis,
+      @Value("${hazard.cluster.virtual-nodes:128}") int virtualNodes) {
+    this.membership = membership;
+    this.enabled = enabled;
+    this.nodeId = nodeId.isBlank() ? "node-" + UUID.randomUUID().toString().substring(0, 8) : nodeId;
+    this.leaseMillis = leaseMillis;
+    // Two renewals may fail or run late before the lease lapses
+    this.heartbeatMillis = Math.max(1, Math.min(heartbeatMillis, leaseMillis / 3));
+    if (this.heartbeatMillis < heartbeatMillis)
+      System.err.println(
+          "Cluster heartbeat-ms " + heartbeatMillis + " is too close to lease-ms " + leaseMillis
+              + ", renewing every " + this.heartbeatMillis + " ms");
+    this.virtualNodes = virtualNodes;
+    this.ring = new ConsistentHashRing(List.of(this.nodeId), virtualNodes);
+  }
+
+  @PostConstruct
+  public void join() {
+    if (!enabled)
+      return;
+    System.out.println("Joining cluster as " + nodeId);
+    heartbeat();
+    heartbeatTimer = Executors.newSingleThreadScheduledExecutor(r -> {
+      Thread t = new Thread(r, "hazard-cluster-heartbeat");
+      t.setDaemon(true);
+      return t;
+    });
+    heartbeatTimer.scheduleWithFixedDelay(() -> {
+      // An exception would cancel every later renewal
+      try {
+        heartbeat();
+      } catch (RuntimeException e) {
+        System.err.println("Cluster heartbeat failed: " + e.getMessage());
+      }
+    }, heartbeatMillis, heartbeatMillis, TimeUnit.MILLISECONDS);
+  }
+
+  /** Renews this node's lease and rebuilds the ring when the set of live nodes changed. */
+  public void heartbeat() {
+    if (!enabled)
+      return;
+
+    membership.heartbeat(nodeId, leaseMillis);
+    Optional<Set<String>> read = membership.liveNodes();
+    if (read.isEmpty()) {
+      // Every node sees the same outage; keeping the ring stops each of them claiming everything
+      System.err.println("Cluster membership unavailable, keeping ring of " + new TreeSet<>(liveNodes));
+      return;
+    }
+    Set<String> live = new HashSet<>(read.get());
+    // This node's own renewal may not be visible yet; it never drops itself from the ring
+    live.add(nodeId);
+
+    if (!live.equals(liveNodes)) {
+      System.out.println("Cluster rebalanced: " + new TreeSet<>(liveNodes) + " -> " + new TreeSet<>(live));
+      ring = new ConsistentHashRing(live, virtualNodes);
+      liveNodes = Set.copyOf(live);
+    }
+  }
+
+  @PreDestroy
+  public void leave() {
+    if (heartbeatTimer != null)
+      heartbeatTimer.shutdownNow();
+    if (enabled)
+      membership.leave(nodeId);
+  }
+
+  /** Publishes locations requested on this node to the rest of the cluster. */
+  public void addLocations(Collection<String> locations) {
+    if (enabled)
+      membership.addLocations(locations);
+  }
+
+  /** Locations this node should process this tick, out of the local and cluster-wide sets. */
+  public List<String> ownedLocations(Collection<String> localLocations) {
+    if (!enabled)
+      return new ArrayList<>(localLocations);
+
+    Set<String> all = new HashSet<>(localLocations);
+    all.addAll(membership.locations());
+    List<String> owned = new ArrayList<>();
+    for (String loc : all) {
+      if (owns(loc))
+        owned.add(loc);
+    }
+    return owned;
+  }
+
+  public boolean owns(String location) {
+    return !enabled || nodeId.equals(ring.ownerOf(location));
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public String nodeId() {
+    return nodeId;
+  }
+
+  public Set<String> liveNodes() {
+    return enabled ? liveNodes : Set.of(nodeId);
+  }
+}
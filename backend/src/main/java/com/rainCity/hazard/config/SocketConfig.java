@@ -1,15 +1,81 @@
 package com.rainCity.hazard.config;
 
+import com.rainCity.hazard.handler.FilteredSubscriptionRegistry;
+import com.rainCity.hazard.handler.SessionEncoding;
+import com.rainCity.hazard.handler.SessionFlowControl;
+import com.rainCity.hazard.handler.SubscriptionFilters;
+import java.util.List;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.converter.MessageConverter;
+import org.springframework.messaging.simp.broker.SimpleBrokerMessageHandler;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
 
 @Configuration
 @EnableWebSocketMessageBroker
 public class SocketConfig implements WebSocketMessageBrokerConfigurer {
 
+  private final SessionFlowControl flowControl;
+  private final SessionEncoding encoding;
+  private final SubscriptionFilters filters;
+
+  // Per-session limits; a session over either one is closed by the transport
+  @Value("${hazard.fanout.send-buffer-bytes:2097152}")
+  private int sendBufferBytes;
+
+  @Value("${hazard.fanout.send-time-limit-ms:10000}")
+  private int sendTimeLimitMillis;
+
+  @Value("${hazard.fanout.outbound-threads:8}")
+  private int outboundThreads;
+
+  // Relay to an external STOMP broker (RabbitMQ, ActiveMQ) so every node's clients see every alert
+  @Value("${hazard.broker.relay.enabled:false}")
+  private boolean relayEnabled;
+
+  @Value("${hazard.broker.relay.host:localhost}")
+  private String relayHost;
+
+  @Value("${hazard.broker.relay.port:61613}")
+  private int relayPort;
+
+  @Value("${hazard.broker.relay.login:guest}")
+  private String relayLogin;
+
+  @Value("${hazard.broker.relay.passcode:guest}")
+  private String relayPasscode;
+
+  @Value("${hazard.cluster.enabled:false}")
+  private boolean clusterEnabled;
+
+  public SocketConfig(SessionFlowControl flowControl, SessionEncoding encoding, SubscriptionFilters filters) {
+    this.flowControl = flowControl;
+    this.encoding = encoding;
+    this.filters = filters;
+  }
+
+  // The simple broker only copies a message for subscribers whose filter accepts it. Static, so
+  // the post-processor is registered without creating this configuration early
+  @Bean
+  static BeanPostProcessor filteredSubscriptionRegistry(ObjectProvider<SubscriptionFilters> filters) {
+    return new BeanPostProcessor() {
+      @Override
+      public Object postProcessBeforeInitialization(Object bean, String beanName) {
+        if (bean instanceof SimpleBrokerMessageHandler broker)
+          broker.setSubscriptionRegistry(new FilteredSubscriptionRegistry(filters.getObject()));
+        return bean;
+      }
+    };
+  }
+
   @Override
   public void registerStompEndpoints(StompEndpointRegistry registry) {
     registry.addEndpoint("/ws/hazards").setAllowedOriginPatterns("*").withSockJS();
@@ -17,7 +83,50 @@ public class SocketConfig implements WebSocketMessageBrokerConfigurer {
 
   @Override
   public void configureMessageBroker(MessageBrokerRegistry config) {
-    config.enableSimpleBroker("/topic");
+    if (relayEnabled) {
+      config.enableStompBrokerRelay("/topic", "/queue")
+          .setRelayHost(relayHost)
+          .setRelayPort(relayPort)
+          .setClientLogin(relayLogin)
+          .setClientPasscode(relayPasscode)
+          .setSystemLogin(relayLogin)
+          .setSystemPasscode(relayPasscode);
+    } else {
+      // Each node only broadcasts the locations it owns; an in-process broker would show its
+      // clients a fraction of the alerts
+      if (clusterEnabled)
+        throw new IllegalStateException(
+            "hazard.cluster.enabled requires hazard.broker.relay.enabled so every node's clients see every alert");
+      config.enableSimpleBroker("/topic", "/queue");
+    }
     config.setApplicationDestinationPrefixes("/app");
   }
+
+  @Override
+  public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+    registration
+        .setSendBufferSizeLimit(sendBufferBytes)
+        .setSendTimeLimit(sendTimeLimitMillis)
+        .addDecoratorFactory(flowControl)
+        .addDecoratorFactory(encoding);
+  }
+
+  // JSON stays the default; CBOR is added for clients that send or accept application/cbor
+  @Override
+  public boolean configureMessageConverters(List<MessageConverter> messageConverters) {
+    messageConverters.add(encoding.messageConverter());
+    return true;
+  }
+
+  @Override
+  public void configureClientInboundChannel(ChannelRegistration registration) {
+    registration.interceptors(encoding, filters);
+  }
+
+  // Relayed copies are filtered before flow control counts them; conflated ones are never encoded
+  @Override
+  public void configureClientOutboundChannel(ChannelRegistration registration) {
+    registration.taskExecutor().corePoolSize(outboundThreads).maxPoolSize(outboundThreads);
+    registration.interceptors(filters, flowControl, encoding);
+  }
 }
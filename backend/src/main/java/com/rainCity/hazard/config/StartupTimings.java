@@ -0,0 +1,31 @@
+package com.rainCity.hazard.config;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Logs time since JVM start to application ready and to the first broadcast. The lines are
+ * parsed by {@code scripts/startup-bench.sh}, so keep their format stable.
+ */
+@Component
+public class StartupTimings {
+
+  private final AtomicBoolean firstBroadcast = new AtomicBoolean();
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void onReady() {
+    System.out.println("⏱️ STARTUP ready_ms=" + sinceJvmStart());
+  }
+
+  public void markBroadcast() {
+    if (firstBroadcast.compareAndSet(false, true))
+      System.out.println("⏱️ STARTUP first_broadcast_ms=" + sinceJvmStart());
+  }
+
+  private static long sinceJvmStart() {
+    return System.currentTimeMillis() - ManagementFactory.getRuntimeMXBean().getStartTime();
+  }
+}
@@ -0,0 +1,93 @@
+package com.rainCity.hazard.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.rainCity.hazard.model.HazardModels.LocationRequest;
+import com.rainCity.hazard.service.BatchAnalysisService;
+import java.io.IOException;
+import java.util.List;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/** On-demand analysis of a batch of locations, streamed back as each one completes. */
+@RestController
+@RequestMapping("/api")
+@CrossOrigin(originPatterns = "*")
+public class AnalyzeController {
+
+  private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
+  private final BatchAnalysisService batchAnalysis;
+  private final ObjectMapper objectMapper;
+
+  @Value("${hazard.batch.timeout-ms:120000}")
+  private long batchTimeoutMillis;
+
+  public AnalyzeController(BatchAnalysisService batchAnalysis, ObjectMapper objectMapper) {
+    this.batchAnalysis = batchAnalysis;
+    this.objectMapper = objectMapper;
+  }
+
+  /**
+   * Analyzes the given locations now, concurrently, and streams one result per location as it
+   * completes, followed by a summary. The stream is NDJSON ({@code {"type":"result",...}} lines)
+   * unless the client accepts {@code text/event-stream}, in which case results and the summary
+   * are {@code result} and {@code summary} events.
+   */
+  @PostMapping("/analyze")
+  public ResponseEntity<ResponseBodyEmitter> analyze(
+      @RequestBody LocationRequest request,
+      @RequestParam(defaultValue = "false") boolean enrich,
+      @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+    List<String> locations = batchAnalysis.normalize(
+        request.getLocations() != null ? request.getLocations() : List.of());
+    if (locations.size() > batchAnalysis.maxLocations()) {
+      throw new ResponseStatusException(
+          HttpStatus.BAD_REQUEST,
+          "At most " + batchAnalysis.maxLocations() + " locations per batch, got " + locations.size());
+    }
+
+    boolean sse = accept != null && accept.contains(MediaType.TEXT_EVENT_STREAM_VALUE);
+    ResponseBodyEmitter emitter = sse ? new SseEmitter(batchTimeoutMillis) : new ResponseBodyEmitter(batchTimeoutMillis);
+    batchAnalysis.analyze(
+        locations,
+        enrich,
+        result -> emit(emitter, sse, "result", result),
+        summary -> {
+          emit(emitter, sse, "summary", summary);
+          emitter.complete();
+        });
+
+    return sse
+        ? ResponseEntity.ok().body(emitter)
+        : ResponseEntity.ok().contentType(NDJSON).body(emitter);
+  }
+
+  // A client that disconnects mid-batch only stops receiving; the analysis still completes
+  private void emit(ResponseBodyEmitter emitter, boolean sse, String type, Object payload) {
+    try {
+      if (sse) {
+        ((SseEmitter) emitter).send(SseEmitter.event().name(type).data(payload, MediaType.APPLICATION_JSON));
+      } else {
+        ObjectNode line = objectMapper.createObjectNode().put("type", type);
+        line.setAll((ObjectNode) objectMapper.valueToTree(payload));
+        emitter.send(objectMapper.writeValueAsString(line) + "\n", NDJSON);
+      }
+    } catch (IOException | IllegalStateException e) {
+      System.err.println("Batch stream closed, dropping " + type + ": " + e.getMessage());
+    }
+  }
+}
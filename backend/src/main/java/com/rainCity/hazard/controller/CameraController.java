@@ -0,0 +1,61 @@
+package com.rainCity.hazard.controller;
+
+import com.rainCity.hazard.service.CameraHealth;
+import com.rainCity.hazard.service.CameraRegistry;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+/** The camera registry and per-camera fetch health. */
+@RestController
+@RequestMapping("/api")
+@CrossOrigin(originPatterns = "*")
+public class CameraController {
+
+  private final CameraRegistry cameraRegistry;
+  private final CameraHealth cameraHealth;
+
+  public CameraController(CameraRegistry cameraRegistry, CameraHealth cameraHealth) {
+    this.cameraRegistry = cameraRegistry;
+    this.cameraHealth = cameraHealth;
+  }
+
+  @GetMapping("/cameras")
+  public Map<String, Object> cameras() {
+    CameraRegistry.Snapshot snapshot = cameraRegistry.snapshot();
+    Map<String, Object> info = new LinkedHashMap<>();
+    info.put("source", cameraRegistry.source());
+    info.put("version", snapshot.version());
+    info.put("count", snapshot.cameras().size());
+    info.put("cameras", snapshot.cameras());
+    return info;
+  }
+
+  @PostMapping("/cameras/reload")
+  public CameraRegistry.ReloadResult reloadCameras() {
+    return cameraRegistry.reload();
+  }
+
+  /** Fetch health per camera that has been fetched at least once; quarantined cameras first. */
+  @GetMapping("/cameras/health")
+  public Map<String, Object> cameraHealth() {
+    Map<String, Object> info = cameraHealth.summary();
+    info.put("cameras", cameraHealth.statuses());
+    return info;
+  }
+
+  /** Ends the quarantine of {@code location}, or of every camera without one. */
+  @PostMapping("/cameras/health/release")
+  public Map<String, Object> releaseCameras(@RequestParam(required = false) String location) {
+    String key = location != null ? cameraRegistry.canonicalize(location) : null;
+    Map<String, Object> body = new LinkedHashMap<>();
+    body.put("location", key);
+    body.put("released", cameraHealth.release(key));
+    return body;
+  }
+}
@@ -0,0 +1,30 @@
+package com.rainCity.hazard.controller;
+
+import com.rainCity.hazard.cluster.ShardCoordinator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api")
+@CrossOrigin(originPatterns = "*")
+public class ClusterController {
+
+  private final ShardCoordinator shardCoordinator;
+
+  public ClusterController(ShardCoordinator shardCoordinator) {
+    this.shardCoordinator = shardCoordinator;
+  }
+
+  @GetMapping("/cluster")
+  public Map<String, Object> cluster() {
+    Map<String, Object> info = new LinkedHashMap<>();
+    info.put("enabled", shardCoordinator.isEnabled());
+    info.put("nodeId", shardCoordinator.nodeId());
+    info.put("liveNodes", shardCoordinator.liveNodes());
+    return info;
+  }
+}
@@ -0,0 +1,40 @@
+package com.rainCity.hazard.controller;
+
+import com.rainCity.hazard.service.CustomImagePool;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/** The fallback frames served for locations that are not cameras. */
+@RestController
+@RequestMapping("/api")
+@CrossOrigin(originPatterns = "*")
+public class CustomImageController {
+
+  private final CustomImagePool customImages;
+
+  public CustomImageController(CustomImagePool customImages) {
+    this.customImages = customImages;
+  }
+
+  @GetMapping("/custom-images")
+  public Map<String, Object> customImages() {
+    CustomImagePool.Pool pool = customImages.pool();
+    Map<String, Object> info = new LinkedHashMap<>();
+    info.put("source", pool.source());
+    info.put("version", pool.version());
+    info.put("count", pool.images().size());
+    info.put("bytes", pool.bytes());
+    info.put("images", pool.images().stream().map(CustomImagePool.Image::name).toList());
+    return info;
+  }
+
+  @PostMapping("/custom-images/reload")
+  public CustomImagePool.ReloadResult reloadCustomImages() {
+    return customImages.reload();
+  }
+}
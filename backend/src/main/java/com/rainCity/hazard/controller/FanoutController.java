@@ -0,0 +1,48 @@
+package com.rainCity.hazard.controller;
+
+import com.rainCity.hazard.handler.SessionEncoding;
+import com.rainCity.hazard.handler.SessionFlowControl;
+import com.rainCity.hazard.handler.SubscriptionFilters;
+import com.rainCity.hazard.service.FanoutService;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/** WebSocket fan-out counters: sessions, evictions, encodings and subscription filters. */
+@RestController
+@RequestMapping("/api")
+@CrossOrigin(originPatterns = "*")
+public class FanoutController {
+
+  private final FanoutService fanoutService;
+  private final SessionFlowControl flowControl;
+  private final SessionEncoding sessionEncoding;
+  private final SubscriptionFilters subscriptionFilters;
+
+  public FanoutController(
+      FanoutService fanoutService,
+      SessionFlowControl flowControl,
+      SessionEncoding sessionEncoding,
+      SubscriptionFilters subscriptionFilters) {
+    this.fanoutService = fanoutService;
+    this.flowControl = flowControl;
+    this.sessionEncoding = sessionEncoding;
+    this.subscriptionFilters = subscriptionFilters;
+  }
+
+  @GetMapping("/fanout/sessions")
+  public Map<String, Object> fanoutSessions() {
+    Map<String, Object> info = new LinkedHashMap<>();
+    info.put("sessions", flowControl.sessionCount());
+    info.put("evictions", flowControl.evictions());
+    info.put("broadcasts", fanoutService.broadcastCount());
+    info.put("bytesSerialized", fanoutService.bytesSerialized());
+    info.put("encoding", sessionEncoding.stats());
+    info.put("filters", subscriptionFilters.stats());
+    info.put("perSession", flowControl.sessionStats());
+    return info;
+  }
+}
@@ -0,0 +1,49 @@
+package com.rainCity.hazard.controller;
+
+import com.rainCity.hazard.service.RenditionService;
+import java.util.concurrent.TimeUnit;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api")
+@CrossOrigin(originPatterns = "*")
+public class FrameController {
+
+  private final RenditionService renditionService;
+
+  public FrameController(RenditionService renditionService) {
+    this.renditionService = renditionService;
+  }
+
+  /**
+   * One rendition of a location's latest labeled frame. With {@code v} the response is immutable
+   * and cacheable; a version that has been replaced by a newer frame answers 404.
+   */
+  @GetMapping("/frames/{rendition}")
+  public ResponseEntity<byte[]> frame(
+      @PathVariable String rendition,
+      @RequestParam String location,
+      @RequestParam(required = false) Long v) {
+    RenditionService.Rendition r = RenditionService.Rendition.of(rendition);
+    RenditionService.Frame frame = r != null ? renditionService.get(location, v) : null;
+    if (frame == null)
+      return ResponseEntity.notFound().build();
+
+    CacheControl cache = v != null
+        ? CacheControl.maxAge(365, TimeUnit.DAYS).cachePublic().immutable()
+        : CacheControl.noCache();
+    return ResponseEntity.ok()
+        .contentType(MediaType.IMAGE_JPEG)
+        .cacheControl(cache)
+        .eTag(Long.toString(frame.version()))
+        .body(frame.get(r));
+  }
+}
@@ -0,0 +1,34 @@
+package com.rainCity.hazard.controller;
+
+import com.rainCity.hazard.service.HeatmapGrid;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api")
+@CrossOrigin(originPatterns = "*")
+public class HeatmapController {
+
+  private final HeatmapGrid heatmapGrid;
+
+  public HeatmapController(HeatmapGrid heatmapGrid) {
+    this.heatmapGrid = heatmapGrid;
+  }
+
+  /**
+   * City-wide grid of per-cell maximum score and spike count. The ETag is the grid's version, so
+   * a poll with {@code If-None-Match} answers 304 until some cell changes.
+   */
+  @GetMapping("/heatmap")
+  public ResponseEntity<HeatmapGrid.Heatmap> heatmap() {
+    HeatmapGrid.Heatmap heatmap = heatmapGrid.snapshot();
+    return ResponseEntity.ok()
+        .cacheControl(CacheControl.noCache())
+        .eTag(Long.toString(heatmap.version()))
+        .body(heatmap);
+  }
+}
@@ -0,0 +1,68 @@
+package com.rainCity.hazard.controller;
+
+import com.rainCity.hazard.service.CameraRegistry;
+import com.rainCity.hazard.service.ScoreHistoryStore;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+@RestController
+@RequestMapping("/api")
+@CrossOrigin(originPatterns = "*")
+public class HistoryController {
+
+  private final ScoreHistoryStore historyStore;
+  private final CameraRegistry cameraRegistry;
+
+  public HistoryController(ScoreHistoryStore historyStore, CameraRegistry cameraRegistry) {
+    this.historyStore = historyStore;
+    this.cameraRegistry = cameraRegistry;
+  }
+
+  /**
+   * Score history for one location from the local store, under any spelling the camera registry
+   * knows. {@code from}/{@code to} are epoch millis (default: the last 24 hours);
+   * {@code resolution} is raw, minute, hour or auto.
+   */
+  @GetMapping("/history/{location}")
+  public Map<String, Object> history(
+      @PathVariable String location,
+      @RequestParam(required = false) Long from,
+      @RequestParam(required = false) Long to,
+      @RequestParam(defaultValue = "auto") String resolution) {
+    long end = to != null ? to : System.currentTimeMillis();
+    long start = from != null ? from : end - 24 * ScoreHistoryStore.HOUR_MS;
+    ScoreHistoryStore.Resolution res;
+    if ("auto".equalsIgnoreCase(resolution)) {
+      res = historyStore.resolutionFor(start, end);
+    } else {
+      try {
+        res = ScoreHistoryStore.Resolution.valueOf(resolution.toUpperCase(Locale.ROOT));
+      } catch (IllegalArgumentException e) {
+        throw new ResponseStatusException(
+            HttpStatus.BAD_REQUEST,
+            "Unknown resolution '" + resolution + "', expected raw, minute, hour or auto");
+      }
+    }
+
+    // History is keyed by canonical location, as recorded by the pipeline
+    String key = cameraRegistry.canonicalize(location);
+    List<ScoreHistoryStore.HistoryPoint> points = historyStore.query(key, start, end, res);
+    Map<String, Object> body = new LinkedHashMap<>();
+    body.put("location", key);
+    body.put("from", start);
+    body.put("to", end);
+    body.put("resolution", res);
+    body.put("points", points);
+    return body;
+  }
+}
@@ -0,0 +1,25 @@
+package com.rainCity.hazard.controller;
+
+import com.rainCity.hazard.service.IncidentCorrelator;
+import java.util.List;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api")
+@CrossOrigin(originPatterns = "*")
+public class IncidentController {
+
+  private final IncidentCorrelator incidentCorrelator;
+
+  public IncidentController(IncidentCorrelator incidentCorrelator) {
+    this.incidentCorrelator = incidentCorrelator;
+  }
+
+  @GetMapping("/incidents")
+  public List<IncidentCorrelator.Incident> incidents() {
+    return incidentCorrelator.activeIncidents();
+  }
+}
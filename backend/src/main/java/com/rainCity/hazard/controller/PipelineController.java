@@ -0,0 +1,40 @@
+package com.rainCity.hazard.controller;
+
+import com.rainCity.hazard.service.HazardPipeline;
+import com.rainCity.hazard.service.HostRateLimiter;
+import com.rainCity.hazard.service.RoiCropper;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/** Queue depths and per-stage counters of the processing pipeline and its outbound limits. */
+@RestController
+@RequestMapping("/api")
+@CrossOrigin(originPatterns = "*")
+public class PipelineController {
+
+  private final HazardPipeline pipeline;
+  private final HostRateLimiter rateLimiter;
+  private final RoiCropper roiCropper;
+
+  public PipelineController(HazardPipeline pipeline, HostRateLimiter rateLimiter, RoiCropper roiCropper) {
+    this.pipeline = pipeline;
+    this.rateLimiter = rateLimiter;
+    this.roiCropper = roiCropper;
+  }
+
+  @GetMapping("/pipeline/metrics")
+  public Map<String, Object> pipelineMetrics() {
+    Map<String, Object> metrics = new LinkedHashMap<>();
+    metrics.put("inFlight", pipeline.inFlightCount());
+    metrics.put("deferred", pipeline.deferredCount());
+    metrics.put("expired", pipeline.expiredCount());
+    metrics.put("stages", pipeline.stageStats());
+    metrics.put("rateLimits", rateLimiter.stats());
+    metrics.put("roi", roiCropper.stats());
+    return metrics;
+  }
+}
@@ -0,0 +1,24 @@
+package com.rainCity.hazard.handler;
+
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.broker.DefaultSubscriptionRegistry;
+import org.springframework.util.MultiValueMap;
+
+/**
+ * The simple broker's subscription registry, narrowed by {@link SubscriptionFilters}: the
+ * subscribers it returns for a message are only those whose filter accepts it, so the broker
+ * never builds or dispatches the other sessions' copies.
+ */
+public class FilteredSubscriptionRegistry extends DefaultSubscriptionRegistry {
+
+  private final SubscriptionFilters filters;
+
+  public FilteredSubscriptionRegistry(SubscriptionFilters filters) {
+    this.filters = filters;
+  }
+
+  @Override
+  protected MultiValueMap<String, String> findSubscriptionsInternal(String destination, Message<?> message) {
+    return filters.matching(message, super.findSubscriptionsInternal(destination, message));
+  }
+}
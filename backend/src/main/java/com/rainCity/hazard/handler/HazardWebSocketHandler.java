@@ -1,53 +1,146 @@
 package com.rainCity.hazard.handler;
 
+import com.rainCity.hazard.cluster.ShardCoordinator;
+import com.rainCity.hazard.config.StartupTimings;
 import com.rainCity.hazard.model.HazardModels.HazardResponse;
 import com.rainCity.hazard.model.HazardModels.LocationRequest;
-import com.rainCity.hazard.service.ProcessingService;
+import com.rainCity.hazard.service.CameraRegistry;
+import com.rainCity.hazard.service.FanoutService;
+import com.rainCity.hazard.service.HazardPipeline;
+import com.rainCity.hazard.service.IncidentCorrelator;
+import com.rainCity.hazard.service.LatestStateStore;
+import com.rainCity.hazard.service.SnapshotStore;
+import jakarta.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.handler.annotation.Header;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.handler.annotation.Payload;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Controller;
 
 @Controller
 public class HazardWebSocketHandler {
 
-  private final ProcessingService processingService;
-  private final SimpMessagingTemplate messagingTemplate;
+  private final HazardPipeline pipeline;
+  private final FanoutService fanoutService;
+  private final SnapshotStore snapshotStore;
+  private final LatestStateStore latestState;
+  private final StartupTimings startupTimings;
+  private final ShardCoordinator shardCoordinator;
+  private final IncidentCorrelator incidentCorrelator;
+  private final CameraRegistry cameraRegistry;
 
-  // Stores unique locations to monitor across all connected users
+  // Locations to monitor from boot, e.g. for headless nodes or the startup benchmark
+  @Value("${hazard.startup.monitor:}")
+  private List<String> startupLocations;
+
+  // Stores unique locations to monitor across all connected users, in canonical form
   private final Set<String> monitoredLocations = ConcurrentHashMap.newKeySet();
 
+  // Restored and startup locations as written, canonicalized on the first tick so startup does
+  // not load the camera registry when hazard.startup.defer-init is set
+  private volatile List<String> restoredLocations = List.of();
+
   public HazardWebSocketHandler(
-      ProcessingService processingService, SimpMessagingTemplate messagingTemplate) {
-    this.processingService = processingService;
-    this.messagingTemplate = messagingTemplate;
+      HazardPipeline pipeline,
+      FanoutService fanoutService,
+      SnapshotStore snapshotStore,
+      LatestStateStore latestState,
+      StartupTimings startupTimings,
+      ShardCoordinator shardCoordinator,
+      IncidentCorrelator incidentCorrelator,
+      CameraRegistry cameraRegistry) {
+    this.pipeline = pipeline;
+    this.fanoutService = fanoutService;
+    this.snapshotStore = snapshotStore;
+    this.latestState = latestState;
+    this.startupTimings = startupTimings;
+    this.shardCoordinator = shardCoordinator;
+    this.incidentCorrelator = incidentCorrelator;
+    this.cameraRegistry = cameraRegistry;
+  }
+
+  // Runs before the scheduler starts, so the first tick already knows what to monitor
+  @PostConstruct
+  public void restoreSnapshot() {
+    List<String> restored = new ArrayList<>(snapshotStore.monitoredLocations());
+    restored.addAll(startupLocations);
+    restoredLocations = restored;
+  }
+
+  private void adoptRestoredLocations() {
+    List<String> restored = restoredLocations;
+    if (restored.isEmpty())
+      return;
+    restoredLocations = List.of();
+    Set<String> locations = canonicalize(restored);
+    if (!locations.isEmpty()) {
+      monitoredLocations.addAll(locations);
+      System.out.println("Backend restored tracking: " + locations);
+      shardCoordinator.addLocations(locations);
+    }
   }
 
   @MessageMapping("/monitor-intersections")
-  public void handleMonitorRequest(@Payload LocationRequest request) {
+  public void handleMonitorRequest(
+      @Payload LocationRequest request, @Header("simpSessionId") String sessionId) {
     if (request != null && request.getLocations() != null) {
-      monitoredLocations.addAll(request.getLocations());
+      // "TCM001", "tcm001" and the camera's name are one camera and are processed once
+      Set<String> locations = canonicalize(request.getLocations());
+      for (String loc : locations) {
+        if (monitoredLocations.add(loc))
+          snapshotStore.recordMonitored(loc);
+      }
+      shardCoordinator.addLocations(locations);
       System.out.println("Backend is now tracking: " + monitoredLocations);
+
+      // Replay the last known state to this session only, instead of waiting for the next tick
+      List<HazardResponse> cached = latestState.getAll(locations);
+      for (HazardResponse response : cached) {
+        fanoutService.sendToSession(sessionId, response);
+      }
+      if (!cached.isEmpty())
+        System.out.println("Replayed " + cached.size() + " cached results to session " + sessionId);
     }
   }
 
   @Scheduled(fixedRateString = "${hazard.refresh-rate-ms}")
   public void scheduledUpdate() {
-    if (monitoredLocations.isEmpty())
+    adoptRestoredLocations();
+    // In a cluster, only the locations this node owns on the hash ring
+    List<String> owned = shardCoordinator.ownedLocations(monitoredLocations);
+    if (owned.isEmpty())
       return;
 
-    for (String loc : monitoredLocations) {
-      try {
-        HazardResponse response = processingService.processLocation(loc);
-        if (response != null) {
-          messagingTemplate.convertAndSend("/topic/traffic-alerts", response);
-        }
-      } catch (Exception e) {
-        System.err.println("Error updating location " + loc + ": " + e.getMessage());
-      }
+    // Locations flow through fetch -> detect -> describe -> persist -> broadcast stages, so
+    // camera fetches for later locations overlap with inference for earlier ones. LLM text
+    // arrives later as an update, so alerts are not held back by description generation
+    int accepted = pipeline.submitAll(owned, this::broadcast, fanoutService::broadcastUpdate);
+    System.out.println(
+        "Queued " + accepted + "/" + owned.size() + " locations, " + pipeline.deferredCount()
+            + " deferred, stage queues: " + pipeline.queueDepths());
+  }
+
+  private Set<String> canonicalize(Iterable<String> locations) {
+    Set<String> canonical = new LinkedHashSet<>();
+    for (String loc : locations) {
+      if (loc != null && !loc.isBlank())
+        canonical.add(cameraRegistry.canonicalize(loc));
+    }
+    return canonical;
+  }
+
+  private void broadcast(HazardResponse response) {
+    if (response != null) {
+      fanoutService.broadcast(response);
+      startupTimings.markBroadcast();
+      // Groups spikes from neighbouring cameras and publishes them on /topic/incidents
+      incidentCorrelator.onResult(response);
     }
   }
 }
@@ -0,0 +1,181 @@
+package com.rainCity.hazard.handler;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.rainCity.hazard.service.FanoutService;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.converter.MessageConverter;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+import org.springframework.web.socket.handler.WebSocketHandlerDecoratorFactory;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+import org.springframework.web.socket.sockjs.transport.SockJsSession;
+
+/**
+ * Per-session payload encoding for outbound STOMP messages. JSON is the default; a client that
+ * sends {@code accept: application/cbor} on its CONNECT frame receives CBOR instead, where the
+ * frame image is a raw byte string rather than a base64 data URL.
+ *
+ * <p>CBOR is produced from the {@link FanoutService.Source} each message carries, once per
+ * message however many sessions asked for it. STOMP would otherwise send any payload that is not
+ * {@code application/octet-stream} as a text frame, so a CBOR session's frames are all written
+ * as binary WebSocket messages. SockJS cannot carry binary frames; those sessions, and messages
+ * that came back from an external broker relay without their source, stay on JSON. The
+ * {@code content-type} header of each MESSAGE frame says which one the client got.
+ */
+@Component
+public class SessionEncoding implements ChannelInterceptor, WebSocketHandlerDecoratorFactory {
+
+  public static final MimeType APPLICATION_CBOR = new MimeType("application", "cbor");
+  /** CONNECT header listing the payload types the client can read. */
+  public static final String ACCEPT_HEADER = "accept";
+
+  private final CBORMapper cborMapper = new CBORMapper();
+
+  @Value("${hazard.fanout.cbor-enabled:true}")
+  private boolean cborEnabled = true;
+
+  private final Map<String, SessionInfo> sessions = new ConcurrentHashMap<>();
+  private final AtomicLong cborMessages = new AtomicLong();
+  private final AtomicLong jsonBytesReplaced = new AtomicLong();
+  private final AtomicLong cborBytesSent = new AtomicLong();
+
+  private static final class SessionInfo {
+    final boolean sockJs;
+    volatile boolean cbor;
+
+    SessionInfo(boolean sockJs) {
+      this.sockJs = sockJs;
+    }
+  }
+
+  /** Reads and writes {@code application/cbor} payloads, e.g. CBOR monitor requests. */
+  public MessageConverter messageConverter() {
+    return new MappingJackson2MessageConverter(cborMapper, APPLICATION_CBOR);
+  }
+
+  // clientInboundChannel: CONNECT negotiates; clientOutboundChannel: MESSAGE is re-encoded
+  @Override
+  public Message<?> preSend(Message<?> message, MessageChannel channel) {
+    SimpMessageType type = SimpMessageHeaderAccessor.getMessageType(message.getHeaders());
+    if (type == SimpMessageType.CONNECT)
+      negotiate(message);
+    else if (type == SimpMessageType.MESSAGE)
+      return encode(message);
+    return message;
+  }
+
+  private void negotiate(Message<?> message) {
+    SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(message);
+    SessionInfo info = sessions.get(accessor.getSessionId());
+    String accept = accessor.getFirstNativeHeader(ACCEPT_HEADER);
+    if (info == null || accept == null || !cborEnabled)
+      return;
+
+    for (MimeType type : MimeTypeUtils.parseMimeTypes(accept)) {
+      if (APPLICATION_CBOR.equalsTypeAndSubtype(type)) {
+        if (info.sockJs) {
+          System.out.println("Session " + accessor.getSessionId() + " asked for CBOR over SockJS, staying on JSON");
+        } else {
+          info.cbor = true;
+          System.out.println("Session " + accessor.getSessionId() + " receives CBOR");
+        }
+        return;
+      }
+    }
+  }
+
+  private Message<?> encode(Message<?> message) {
+    String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+    SessionInfo info = sessionId != null ? sessions.get(sessionId) : null;
+    Object source = message.getHeaders().get(FanoutService.SOURCE_HEADER);
+    if (info == null || !info.cbor || !(source instanceof FanoutService.Source s)
+        || !(message.getPayload() instanceof byte[] json))
+      return message;
+
+    byte[] cbor = s.encoded(this::toCbor);
+    SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(message);
+    accessor.setContentType(APPLICATION_CBOR);
+    accessor.removeHeader(FanoutService.SOURCE_HEADER);
+    cborMessages.incrementAndGet();
+    jsonBytesReplaced.addAndGet(json.length);
+    cborBytesSent.addAndGet(cbor.length);
+    return MessageBuilder.createMessage(cbor, accessor.getMessageHeaders());
+  }
+
+  private byte[] toCbor(Object value) {
+    try {
+      return cborMapper.writeValueAsBytes(value);
+    } catch (JsonProcessingException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  // Records the transport, and turns a CBOR session's text frames into binary ones
+  @Override
+  public WebSocketHandler decorate(WebSocketHandler handler) {
+    return new WebSocketHandlerDecorator(handler) {
+      @Override
+      public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+        SessionInfo info = new SessionInfo(WebSocketSessionDecorator.unwrap(session) instanceof SockJsSession);
+        sessions.put(session.getId(), info);
+        super.afterConnectionEstablished(new BinarySession(session, info));
+      }
+
+      @Override
+      public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus)
+          throws Exception {
+        sessions.remove(session.getId());
+        super.afterConnectionClosed(session, closeStatus);
+      }
+    };
+  }
+
+  public Map<String, Object> stats() {
+    Map<String, Object> stats = new LinkedHashMap<>();
+    stats.put("cborEnabled", cborEnabled);
+    stats.put("cborSessions", sessions.values().stream().filter(i -> i.cbor).count());
+    stats.put("cborMessages", cborMessages.get());
+    stats.put("jsonBytesReplaced", jsonBytesReplaced.get());
+    stats.put("cborBytesSent", cborBytesSent.get());
+    return stats;
+  }
+
+  private static final class BinarySession extends WebSocketSessionDecorator {
+    private final SessionInfo info;
+
+    BinarySession(WebSocketSession session, SessionInfo info) {
+      super(session);
+      this.info = info;
+    }
+
+    @Override
+    public void sendMessage(WebSocketMessage<?> message) throws IOException {
+      // STOMP frames are built as bytes; a text message would re-read the CBOR body as UTF-8
+      if (info.cbor && message instanceof TextMessage text)
+        message = new BinaryMessage(text.asBytes(), text.isLast());
+      super.sendMessage(message);
+    }
+  }
+}
@@ -0,0 +1,220 @@
+package com.rainCity.hazard.handler;
+
+import com.rainCity.hazard.service.FanoutService;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+import org.springframework.web.socket.handler.WebSocketHandlerDecoratorFactory;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+
+/**
+ * Per-session flow control for outbound STOMP messages.
+ *
+ * <p>Messages are counted when they enter {@code clientOutboundChannel} and again when they are
+ * actually written to the socket; the difference is the session's backlog. Once a session is
+ * {@code conflate-after} messages behind, further alerts for a location replace the one already
+ * held back for it, so a slow consumer only ever catches up to the latest state per location.
+ * A session whose oldest unsent message is older than {@code evict-after-ms} is closed.
+ */
+@Component
+public class SessionFlowControl implements ChannelInterceptor, WebSocketHandlerDecoratorFactory {
+
+  @Value("${hazard.fanout.conflate-after:8}")
+  private int conflateAfter;
+
+  @Value("${hazard.fanout.evict-after-ms:30000}")
+  private long evictAfterMillis;
+
+  private final Map<String, SessionState> sessions = new ConcurrentHashMap<>();
+  private final AtomicLong evictions = new AtomicLong();
+  private volatile MessageChannel outboundChannel;
+
+  public record SessionStats(
+      String sessionId,
+      int pending,
+      int heldBack,
+      long sent,
+      long conflated,
+      long lastLagMillis,
+      long maxLagMillis,
+      long bytesSent) {
+  }
+
+  private final class SessionState {
+    final String id;
+    final WebSocketSession session;
+    final AtomicInteger pending = new AtomicInteger();
+    final Queue<Long> enqueuedAt = new ConcurrentLinkedQueue<>();
+    // Latest held-back alert per location while the session is behind
+    final Map<String, Message<?>> heldBack = new ConcurrentHashMap<>();
+    final AtomicLong sent = new AtomicLong();
+    final AtomicLong conflated = new AtomicLong();
+    final AtomicLong bytesSent = new AtomicLong();
+    volatile long lastLagMillis;
+    volatile long maxLagMillis;
+
+    SessionState(WebSocketSession session) {
+      this.id = session.getId();
+      this.session = session;
+    }
+
+    void written(int bytes) {
+      sent.incrementAndGet();
+      bytesSent.addAndGet(bytes);
+      if (pending.get() > 0)
+        pending.decrementAndGet();
+
+      Long enqueued = enqueuedAt.poll();
+      if (enqueued != null) {
+        long lag = System.currentTimeMillis() - enqueued;
+        lastLagMillis = lag;
+        if (lag > maxLagMillis)
+          maxLagMillis = lag;
+      }
+
+      if (pending.get() <= conflateAfter / 2 && !heldBack.isEmpty())
+        release();
+    }
+
+    void release() {
+      MessageChannel channel = outboundChannel;
+      if (channel == null)
+        return;
+      for (String location : new ArrayList<>(heldBack.keySet())) {
+        Message<?> message = heldBack.remove(location);
+        if (message != null)
+          channel.send(message);
+      }
+    }
+
+    boolean isStale() {
+      Long oldest = enqueuedAt.peek();
+      return oldest != null && System.currentTimeMillis() - oldest > evictAfterMillis;
+    }
+
+    SessionStats stats() {
+      return new SessionStats(
+          id,
+          pending.get(),
+          heldBack.size(),
+          sent.get(),
+          conflated.get(),
+          lastLagMillis,
+          maxLagMillis,
+          bytesSent.get());
+    }
+  }
+
+  // clientOutboundChannel: count, conflate or evict before a message is queued for a session
+  @Override
+  public Message<?> preSend(Message<?> message, MessageChannel channel) {
+    outboundChannel = channel;
+    String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+    SessionState state = sessionId != null ? sessions.get(sessionId) : null;
+    if (state == null)
+      return message;
+
+    if (state.isStale()) {
+      evict(state);
+      return null;
+    }
+
+    if (SimpMessageHeaderAccessor.getMessageType(message.getHeaders()) == SimpMessageType.MESSAGE
+        && state.pending.get() >= conflateAfter) {
+      String location =
+          SimpMessageHeaderAccessor.wrap(message).getFirstNativeHeader(FanoutService.LOCATION_HEADER);
+      if (location != null) {
+        if (state.heldBack.put(location, message) != null)
+          state.conflated.incrementAndGet();
+        return null;
+      }
+    }
+
+    state.pending.incrementAndGet();
+    state.enqueuedAt.add(System.currentTimeMillis());
+    return message;
+  }
+
+  // Wraps each raw session so actual socket writes can be counted against what was queued
+  @Override
+  public WebSocketHandler decorate(WebSocketHandler handler) {
+    return new WebSocketHandlerDecorator(handler) {
+      @Override
+      public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+        SessionState state = new SessionState(session);
+        sessions.put(state.id, state);
+        super.afterConnectionEstablished(new CountingSession(session, state));
+      }
+
+      @Override
+      public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus)
+          throws Exception {
+        sessions.remove(session.getId());
+        super.afterConnectionClosed(session, closeStatus);
+      }
+    };
+  }
+
+  public List<SessionStats> sessionStats() {
+    List<SessionStats> stats = new ArrayList<>();
+    for (SessionState state : sessions.values())
+      stats.add(state.stats());
+    stats.sort(Comparator.comparingInt(SessionStats::pending).reversed());
+    return stats;
+  }
+
+  public int sessionCount() {
+    return sessions.size();
+  }
+
+  public long evictions() {
+    return evictions.get();
+  }
+
+  private void evict(SessionState state) {
+    if (sessions.remove(state.id) == null)
+      return;
+    evictions.incrementAndGet();
+    System.err.println(
+        "Evicting slow session " + state.id + " (" + state.pending.get() + " messages behind)");
+    try {
+      state.session.close(CloseStatus.SESSION_NOT_RELIABLE);
+    } catch (IOException e) {
+      System.err.println("Error closing session " + state.id + ": " + e.getMessage());
+    }
+  }
+
+  private static final class CountingSession extends WebSocketSessionDecorator {
+    private final SessionState state;
+
+    CountingSession(WebSocketSession session, SessionState state) {
+      super(session);
+      this.state = state;
+    }
+
+    @Override
+    public void sendMessage(WebSocketMessage<?> message) throws IOException {
+      super.sendMessage(message);
+      state.written(message.getPayloadLength());
+    }
+  }
+}
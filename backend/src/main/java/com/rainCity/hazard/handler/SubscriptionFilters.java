@@ -0,0 +1,298 @@
+package com.rainCity.hazard.handler;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.rainCity.hazard.model.HazardModels.DetailedTags;
+import com.rainCity.hazard.model.HazardModels.HazardResponse;
+import com.rainCity.hazard.service.CameraRegistry;
+import com.rainCity.hazard.service.FanoutService;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.stereotype.Component;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+
+/**
+ * Server-side filters on alert subscriptions. A SUBSCRIBE frame may carry any of
+ * <ul>
+ *   <li>{@code min-score}: only alerts scoring at least this much</li>
+ *   <li>{@code spike-only}: {@code true} for spikes only</li>
+ *   <li>{@code tags}: comma-separated {@link DetailedTags} categories that must all be present
+ *       ({@code accident}, {@code person_laying}, {@code cones}, {@code debris}, {@code people},
+ *       {@code tree})</li>
+ *   <li>{@code locations}: comma-separated locations, in any spelling the camera registry knows</li>
+ * </ul>
+ *
+ * <p>Subscriptions with the same filter share one group and one compiled predicate. Each
+ * broadcast is tested once per group through its {@link FanoutService.Source}. The simple
+ * broker asks {@link #matching} which subscribers want a message before it copies the message
+ * for each session, so a filtered-out subscriber costs one verdict lookup and nothing is queued
+ * on {@code clientOutboundChannel}. Only {@link HazardResponse} payloads are filtered;
+ * description updates and incidents always pass.
+ *
+ * <p>Messages relayed by an external broker arrive as one copy per session with only the JSON
+ * bytes. Alerts among them, recognised by their {@code location} header, are read back (without
+ * the inline frame) for sessions with a filter and dropped on {@code clientOutboundChannel},
+ * so relayed filtering still costs a parse per filtered session copy.
+ */
+@Component
+public class SubscriptionFilters implements ChannelInterceptor {
+
+  public static final String MIN_SCORE_HEADER = "min-score";
+  public static final String SPIKE_ONLY_HEADER = "spike-only";
+  public static final String TAGS_HEADER = "tags";
+  public static final String LOCATIONS_HEADER = "locations";
+
+  private static final Map<String, Predicate<DetailedTags>> TAGS = Map.of(
+      "accident", DetailedTags::isAccident,
+      "person_laying", DetailedTags::isPersonLaying,
+      "cones", DetailedTags::isCones,
+      "debris", t -> t.getNumberOfDebrisItems() > 0,
+      "people", t -> t.getPedestrianAmount() > 0,
+      "tree", DetailedTags::isFallenTree);
+
+  private final CameraRegistry cameraRegistry;
+  // Relayed alerts are read for their scores, tags and location only; the inline frame is skipped
+  private final ObjectReader relayedReader = new ObjectMapper()
+      .addMixIn(HazardResponse.class, WithoutImage.class)
+      .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+      .readerFor(HazardResponse.class);
+
+  private final Map<Filter, Group> groups = new ConcurrentHashMap<>();
+  // sessionId -> subscriptionId -> group
+  private final Map<String, Map<String, Group>> subscriptions = new ConcurrentHashMap<>();
+  private final AtomicLong delivered = new AtomicLong();
+  private final AtomicLong dropped = new AtomicLong();
+
+  /** A parsed filter; equal filters share a group. Sets are sorted so spelling order does not matter. */
+  public record Filter(double minScore, boolean spikeOnly, Set<String> tags, Set<String> locations) {
+
+    Predicate<Object> compile(UnaryOperator<String> canonicalize) {
+      Predicate<HazardResponse> p = r -> true;
+      if (minScore > 0)
+        p = p.and(r -> r.getScore() >= minScore);
+      if (spikeOnly)
+        p = p.and(HazardResponse::isSpike);
+      for (String tag : tags) {
+        Predicate<DetailedTags> present = TAGS.get(tag);
+        p = p.and(r -> r.getInfo() != null && present.test(r.getInfo()));
+      }
+      if (!locations.isEmpty())
+        p = p.and(r -> locations.contains(canonicalize.apply(r.getLocationString())));
+      Predicate<HazardResponse> compiled = p;
+      return value -> !(value instanceof HazardResponse r) || compiled.test(r);
+    }
+  }
+
+  @JsonIgnoreProperties({"img", "images"})
+  private abstract static class WithoutImage {
+  }
+
+  public record GroupStats(String filter, int subscriptions, long evaluations) {
+  }
+
+  private static final class Group {
+    final Filter filter;
+    final Predicate<Object> predicate;
+    final AtomicInteger subscriptions = new AtomicInteger();
+    final AtomicLong evaluations = new AtomicLong();
+
+    Group(Filter filter, Predicate<Object> compiled) {
+      this.filter = filter;
+      this.predicate = value -> {
+        evaluations.incrementAndGet();
+        return compiled.test(value);
+      };
+    }
+  }
+
+  public SubscriptionFilters(CameraRegistry cameraRegistry) {
+    this.cameraRegistry = cameraRegistry;
+  }
+
+  // clientInboundChannel: SUBSCRIBE/UNSUBSCRIBE/DISCONNECT; clientOutboundChannel: MESSAGE
+  @Override
+  public Message<?> preSend(Message<?> message, MessageChannel channel) {
+    SimpMessageType type = SimpMessageHeaderAccessor.getMessageType(message.getHeaders());
+    if (type == null)
+      return message;
+    String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+    switch (type) {
+      case SUBSCRIBE -> subscribe(SimpMessageHeaderAccessor.wrap(message));
+      case UNSUBSCRIBE -> unsubscribe(sessionId, SimpMessageHeaderAccessor.getSubscriptionId(message.getHeaders()));
+      case DISCONNECT -> disconnect(sessionId);
+      case MESSAGE -> {
+        return accept(message, sessionId) ? message : null;
+      }
+      default -> {
+      }
+    }
+    return message;
+  }
+
+  private void subscribe(SimpMessageHeaderAccessor accessor) {
+    Filter filter = parse(accessor);
+    if (filter == null)
+      return;
+    Group group = groups.computeIfAbsent(filter, k -> new Group(k, k.compile(cameraRegistry::canonicalize)));
+    group.subscriptions.incrementAndGet();
+    Group previous = subscriptions
+        .computeIfAbsent(accessor.getSessionId(), k -> new ConcurrentHashMap<>())
+        .put(accessor.getSubscriptionId(), group);
+    if (previous != null)
+      release(previous);
+  }
+
+  private void unsubscribe(String sessionId, String subscriptionId) {
+    Map<String, Group> session = sessionId != null ? subscriptions.get(sessionId) : null;
+    Group group = session != null && subscriptionId != null ? session.remove(subscriptionId) : null;
+    if (group != null)
+      release(group);
+  }
+
+  private void disconnect(String sessionId) {
+    Map<String, Group> session = sessionId != null ? subscriptions.remove(sessionId) : null;
+    if (session != null)
+      session.values().forEach(this::release);
+  }
+
+  private void release(Group group) {
+    if (group.subscriptions.decrementAndGet() <= 0)
+      groups.remove(group.filter, group);
+  }
+
+  /**
+   * The subscribers in {@code subscribers} (session id to subscription ids) whose filter accepts
+   * {@code message}; the same map when none is filtered out.
+   */
+  public MultiValueMap<String, String> matching(Message<?> message, MultiValueMap<String, String> subscribers) {
+    if (subscriptions.isEmpty()
+        || !(message.getHeaders().get(FanoutService.SOURCE_HEADER) instanceof FanoutService.Source source))
+      return subscribers;
+
+    MultiValueMap<String, String> matched = new LinkedMultiValueMap<>(subscribers.size());
+    boolean filtered = false;
+    for (Map.Entry<String, List<String>> entry : subscribers.entrySet()) {
+      Map<String, Group> session = subscriptions.get(entry.getKey());
+      for (String subscriptionId : entry.getValue()) {
+        Group group = session != null ? session.get(subscriptionId) : null;
+        if (group == null) {
+          matched.add(entry.getKey(), subscriptionId);
+        } else if (source.matches(group, group.predicate)) {
+          delivered.incrementAndGet();
+          matched.add(entry.getKey(), subscriptionId);
+        } else {
+          dropped.incrementAndGet();
+          filtered = true;
+        }
+      }
+    }
+    return filtered ? matched : subscribers;
+  }
+
+  // Only relayed copies get here with a filter still to apply; local ones were matched by the broker
+  private boolean accept(Message<?> message, String sessionId) {
+    if (message.getHeaders().containsKey(FanoutService.SOURCE_HEADER))
+      return true;
+    Map<String, Group> session = sessionId != null ? subscriptions.get(sessionId) : null;
+    if (session == null)
+      return true;
+    String subscriptionId = SimpMessageHeaderAccessor.getSubscriptionId(message.getHeaders());
+    Group group = subscriptionId != null ? session.get(subscriptionId) : null;
+    if (group == null
+        || SimpMessageHeaderAccessor.getFirstNativeHeader(FanoutService.LOCATION_HEADER, message.getHeaders()) == null
+        || !(message.getPayload() instanceof byte[] payload))
+      return true;
+
+    HazardResponse response;
+    try {
+      response = relayedReader.readValue(payload);
+    } catch (IOException e) {
+      return true;
+    }
+    if (group.predicate.test(response)) {
+      delivered.incrementAndGet();
+      return true;
+    }
+    dropped.incrementAndGet();
+    return false;
+  }
+
+  /** @return the subscription's filter, or null when it has none */
+  Filter parse(SimpMessageHeaderAccessor accessor) {
+    String minScore = accessor.getFirstNativeHeader(MIN_SCORE_HEADER);
+    String spikeOnly = accessor.getFirstNativeHeader(SPIKE_ONLY_HEADER);
+    String tags = accessor.getFirstNativeHeader(TAGS_HEADER);
+    String locations = accessor.getFirstNativeHeader(LOCATIONS_HEADER);
+    if (minScore == null && spikeOnly == null && tags == null && locations == null)
+      return null;
+
+    double min = 0;
+    if (minScore != null) {
+      try {
+        min = Double.parseDouble(minScore.trim());
+      } catch (NumberFormatException e) {
+        throw new IllegalArgumentException("Invalid " + MIN_SCORE_HEADER + ": " + minScore);
+      }
+    }
+
+    SortedSet<String> tagSet = new TreeSet<>();
+    for (String tag : split(tags)) {
+      String key = tag.toLowerCase(Locale.ROOT);
+      if (!TAGS.containsKey(key))
+        throw new IllegalArgumentException("Unknown tag '" + tag + "', expected one of " + new TreeSet<>(TAGS.keySet()));
+      tagSet.add(key);
+    }
+
+    SortedSet<String> locationSet = new TreeSet<>();
+    for (String loc : split(locations))
+      locationSet.add(cameraRegistry.canonicalize(loc));
+
+    return new Filter(
+        min, Boolean.parseBoolean(spikeOnly),
+        Collections.unmodifiableSortedSet(tagSet), Collections.unmodifiableSortedSet(locationSet));
+  }
+
+  private static List<String> split(String header) {
+    List<String> parts = new ArrayList<>();
+    if (header != null) {
+      for (String part : header.split(",")) {
+        if (!part.isBlank())
+          parts.add(part.trim());
+      }
+    }
+    return parts;
+  }
+
+  public Map<String, Object> stats() {
+    Map<String, Object> stats = new LinkedHashMap<>();
+    List<GroupStats> perGroup = new ArrayList<>();
+    for (Group group : groups.values())
+      perGroup.add(new GroupStats(group.filter.toString(), group.subscriptions.get(), group.evaluations.get()));
+    stats.put("groups", perGroup.size());
+    stats.put("delivered", delivered.get());
+    stats.put("dropped", dropped.get());
+    stats.put("perGroup", perGroup);
+    return stats;
+  }
+}
@@ -1,7 +1,15 @@
 package com.rainCity.hazard.model;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import java.io.IOException;
+import java.util.Base64;
 import java.util.List;
+import java.util.Map;
 import lombok.Builder;
 import lombok.Data;
 
@@ -21,9 +29,89 @@ public class HazardModels {
     }
   }
 
+  /**
+   * JPEG bytes that serialize as a {@code "data:image/jpeg;base64,..."} JSON string. The base64
+   * text is encoded in small chunks directly into the generator's output, so neither the encoded
+   * string nor the prefixed data URL is ever built; the bytes themselves are shared, not copied.
+   */
+  @JsonSerialize(using = JpegDataUrl.Serializer.class)
+  public record JpegDataUrl(byte[] data) {
+    public static final String PREFIX = "data:image/jpeg;base64,";
+
+    /** Length of the serialized data URL, without quotes. */
+    public int length() {
+      return PREFIX.length() + (data.length + 2) / 3 * 4;
+    }
+
+    @Override
+    public String toString() {
+      return PREFIX + Base64.getEncoder().encodeToString(data);
+    }
+
+    static final class Serializer extends StdSerializer<JpegDataUrl> {
+      private static final char[] ALPHABET =
+          "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".toCharArray();
+      private static final String OPEN = "\"" + PREFIX;
+      // Input bytes per chunk; a multiple of 3 so only the last chunk is padded
+      private static final int CHUNK = 3 * 1024;
+      private static final ThreadLocal<char[]> BUFFER = ThreadLocal.withInitial(() -> new char[CHUNK / 3 * 4]);
+
+      Serializer() {
+        super(JpegDataUrl.class);
+      }
+
+      @Override
+      public void serialize(JpegDataUrl value, JsonGenerator gen, SerializerProvider provider)
+          throws IOException {
+        // Token buffers (valueToTree, convertValue) cannot take raw output
+        if (gen instanceof TokenBuffer) {
+          gen.writeString(value.toString());
+          return;
+        }
+        // Binary formats (CBOR) carry the JPEG as a byte string instead of a data URL
+        if (gen.canWriteBinaryNatively()) {
+          gen.writeBinary(value.data());
+          return;
+        }
+        // Base64 needs no JSON escaping, so after the first raw value the rest is appended as is
+        gen.writeRawValue(OPEN);
+        byte[] data = value.data();
+        char[] buf = BUFFER.get();
+        for (int off = 0; off < data.length; off += CHUNK)
+          gen.writeRaw(buf, 0, encode(data, off, Math.min(CHUNK, data.length - off), buf));
+        gen.writeRaw('"');
+      }
+
+      private static int encode(byte[] src, int off, int len, char[] dst) {
+        int d = 0;
+        int end = off + len - len % 3;
+        for (int i = off; i < end; i += 3) {
+          int bits = (src[i] & 0xFF) << 16 | (src[i + 1] & 0xFF) << 8 | (src[i + 2] & 0xFF);
+          dst[d++] = ALPHABET[bits >>> 18];
+          dst[d++] = ALPHABET[(bits >>> 12) & 0x3F];
+          dst[d++] = ALPHABET[(bits >>> 6) & 0x3F];
+          dst[d++] = ALPHABET[bits & 0x3F];
+        }
+        int rest = len % 3;
+        if (rest > 0) {
+          int bits = (src[end] & 0xFF) << 16 | (rest == 2 ? (src[end + 1] & 0xFF) << 8 : 0);
+          dst[d++] = ALPHABET[bits >>> 18];
+          dst[d++] = ALPHABET[(bits >>> 12) & 0x3F];
+          dst[d++] = rest == 2 ? ALPHABET[(bits >>> 6) & 0x3F] : '=';
+          dst[d++] = '=';
+        }
+        return d;
+      }
+    }
+  }
+
   public static class HazardResponse {
+    // Per frame ("location@epochMillis"); description updates and stale checks match on it
     private String id;
 
+    // Row id of the location's record in Supabase, which is shared by all its frames
+    private String dbId;
+
     @JsonProperty("location")
     private String locationString;
 
@@ -38,8 +126,13 @@ public class HazardModels {
     private String description;
     private String timestamp;
 
+    // Inline frame, serialized as a data URL straight from the JPEG bytes
     @JsonProperty("img")
-    private String imageBase64;
+    private JpegDataUrl image;
+
+    // Rendition name (thumb, medium, full) -> versioned URL of that size of the frame
+    @JsonProperty("images")
+    private Map<String, String> imageUrls;
 
     @JsonProperty("detectedObjects")
     private DetailedTags info;
@@ -53,6 +146,10 @@ public class HazardModels {
       return id;
     }
 
+    public String getDbId() {
+      return dbId;
+    }
+
     public String getLocationString() {
       return locationString;
     }
@@ -85,8 +182,12 @@ public class HazardModels {
       return timestamp;
     }
 
-    public String getImageBase64() {
-      return imageBase64;
+    public JpegDataUrl getImage() {
+      return image;
+    }
+
+    public Map<String, String> getImageUrls() {
+      return imageUrls;
     }
 
     public DetailedTags getInfo() {
@@ -98,6 +199,10 @@ public class HazardModels {
       this.id = id;
     }
 
+    public void setDbId(String dbId) {
+      this.dbId = dbId;
+    }
+
     public void setLocationString(String locationString) {
       this.locationString = locationString;
     }
@@ -130,8 +235,12 @@ public class HazardModels {
       this.timestamp = timestamp;
     }
 
-    public void setImageBase64(String imageBase64) {
-      this.imageBase64 = imageBase64;
+    public void setImage(JpegDataUrl image) {
+      this.image = image;
+    }
+
+    public void setImageUrls(Map<String, String> imageUrls) {
+      this.imageUrls = imageUrls;
     }
 
     public void setInfo(DetailedTags info) {
@@ -143,8 +252,27 @@ public class HazardModels {
       return new Builder();
     }
 
+    /** A builder holding this response's fields, for a modified copy that leaves it untouched. */
+    public Builder toBuilder() {
+      return new Builder()
+          .id(id)
+          .dbId(dbId)
+          .locationString(locationString)
+          .coords(coords)
+          .score(score)
+          .avg(avg)
+          .delta(delta)
+          .spike(spike)
+          .description(description)
+          .timestamp(timestamp)
+          .image(image)
+          .imageUrls(imageUrls)
+          .info(info);
+    }
+
     public static class Builder {
       private String id;
+      private String dbId;
       private String locationString;
       private Coordinates coords;
       private double score;
@@ -153,7 +281,8 @@ public class HazardModels {
       private boolean spike;
       private String description;
       private String timestamp;
-      private String imageBase64;
+      private JpegDataUrl image;
+      private Map<String, String> imageUrls;
       private DetailedTags info;
 
       public Builder id(String id) {
@@ -161,6 +290,11 @@ public class HazardModels {
         return this;
       }
 
+      public Builder dbId(String dbId) {
+        this.dbId = dbId;
+        return this;
+      }
+
       public Builder locationString(String locationString) {
         this.locationString = locationString;
         return this;
@@ -201,8 +335,13 @@ public class HazardModels {
         return this;
       }
 
-      public Builder imageBase64(String imageBase64) {
-        this.imageBase64 = imageBase64;
+      public Builder image(JpegDataUrl image) {
+        this.image = image;
+        return this;
+      }
+
+      public Builder imageUrls(Map<String, String> imageUrls) {
+        this.imageUrls = imageUrls;
         return this;
       }
 
@@ -214,6 +353,7 @@ public class HazardModels {
       public HazardResponse build() {
         HazardResponse response = new HazardResponse();
         response.id = this.id;
+        response.dbId = this.dbId;
         response.locationString = this.locationString;
         response.coords = this.coords;
         response.score = this.score;
@@ -222,7 +362,8 @@ public class HazardModels {
         response.spike = this.spike;
         response.description = this.description;
         response.timestamp = this.timestamp;
-        response.imageBase64 = this.imageBase64;
+        response.image = this.image;
+        response.imageUrls = this.imageUrls;
         response.info = this.info;
         return response;
       }
@@ -0,0 +1,204 @@
+package com.rainCity.hazard.service;
+
+import com.rainCity.hazard.model.HazardModels.HazardResponse;
+import jakarta.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * On-demand analysis of a list of locations, outside the monitoring tick. Every location runs
+ * through {@link ProcessingService} concurrently on a bounded worker pool, and each result is
+ * handed to the caller as soon as it completes, so a batch takes as long as its slowest item.
+ *
+ * <p>Results are handled like a monitored pass: persisted (latest state, history, heatmap,
+ * Supabase), broadcast to alert subscribers and fed to the incident correlator, so every live view
+ * agrees with what the batch returned. A location is claimed in {@link HazardPipeline}'s in-flight
+ * set while it runs, so the monitoring tick and a batch never fetch it at the same time; one that
+ * the tick already has completes as {@code in_flight}, and its result arrives with the tick's
+ * broadcast. Items that qualify for an LLM description and are not awaited go to the pipeline's
+ * batched enrich stage, like a monitored pass. Each item gets the pipeline deadline from the moment a
+ * worker picks it up and completes as {@code expired} if it runs out. When the pool's queue is
+ * full, the remaining items complete immediately with status {@code rejected} rather than waiting
+ * behind other batches.
+ */
+@Service
+public class BatchAnalysisService {
+
+  private final ProcessingService processingService;
+  private final HazardPipeline pipeline;
+  private final CameraRegistry cameraRegistry;
+  private final FanoutService fanoutService;
+  private final IncidentCorrelator incidentCorrelator;
+  private final ThreadPoolExecutor executor;
+  private final int maxLocations;
+
+  /**
+   * Outcome for one location. {@code status} is {@code ok}, {@code no_image}, {@code expired},
+   * {@code error}, {@code in_flight} or {@code rejected}; {@code queuedMillis} is time spent waiting for a worker.
+   */
+  public record ItemResult(
+      int index,
+      String location,
+      String status,
+      long queuedMillis,
+      long millis,
+      HazardResponse response,
+      String error) {
+  }
+
+  public record Summary(int requested, int succeeded, int failed, long millis) {
+  }
+
+  public BatchAnalysisService(
+      ProcessingService processingService,
+      HazardPipeline pipeline,
+      CameraRegistry cameraRegistry,
+      FanoutService fanoutService,
+      IncidentCorrelator incidentCorrelator,
+      @Value("${hazard.batch.threads:8}") int threads,
+      @Value("${hazard.batch.queue-capacity:256}") int queueCapacity,
+      @Value("${hazard.batch.max-locations:100}") int maxLocations) {
+    this.processingService = processingService;
+    this.pipeline = pipeline;
+    this.cameraRegistry = cameraRegistry;
+    this.fanoutService = fanoutService;
+    this.incidentCorrelator = incidentCorrelator;
+    this.maxLocations = maxLocations;
+    AtomicInteger counter = new AtomicInteger();
+    this.executor = new ThreadPoolExecutor(
+        threads,
+        threads,
+        0L,
+        TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<>(queueCapacity),
+        r -> {
+          Thread t = new Thread(r, "hazard-batch-" + counter.incrementAndGet());
+          t.setDaemon(true);
+          return t;
+        });
+  }
+
+  public int maxLocations() {
+    return maxLocations;
+  }
+
+  /**
+   * Canonical, de-duplicated form of the requested locations, in request order. Two spellings of
+   * the same camera are analyzed once.
+   */
+  public List<String> normalize(List<String> locations) {
+    Set<String> unique = new LinkedHashSet<>();
+    for (String loc : locations) {
+      if (loc != null && !loc.isBlank())
+        unique.add(cameraRegistry.canonicalize(loc));
+    }
+    return new ArrayList<>(unique);
+  }
+
+  /**
+   * Starts every location and returns immediately. {@code onResult} is called once per location,
+   * from worker threads and in completion order; {@code onComplete} is called once after the last
+   * result.
+   *
+   * @param enrich also wait for the LLM description of items that qualify for one; otherwise it
+   *     follows as an alert update
+   */
+  public void analyze(
+      List<String> locations,
+      boolean enrich,
+      Consumer<ItemResult> onResult,
+      Consumer<Summary> onComplete) {
+    long start = System.nanoTime();
+    AtomicInteger remaining = new AtomicInteger(locations.size());
+    AtomicInteger succeeded = new AtomicInteger();
+    Consumer<ItemResult> collect = result -> {
+      if ("ok".equals(result.status()))
+        succeeded.incrementAndGet();
+      try {
+        onResult.accept(result);
+      } finally {
+        if (remaining.decrementAndGet() == 0) {
+          int ok = succeeded.get();
+          onComplete.accept(new Summary(
+              locations.size(), ok, locations.size() - ok, (System.nanoTime() - start) / 1_000_000));
+        }
+      }
+    };
+
+    if (locations.isEmpty()) {
+      onComplete.accept(new Summary(0, 0, 0, 0));
+      return;
+    }
+
+    System.out.println("📦 Batch analysis of " + locations.size() + " locations");
+    for (int i = 0; i < locations.size(); i++) {
+      int index = i;
+      String loc = locations.get(i);
+      long queuedAt = System.nanoTime();
+      try {
+        executor.execute(() -> collect.accept(run(index, loc, enrich, queuedAt)));
+      } catch (RejectedExecutionException e) {
+        collect.accept(new ItemResult(index, loc, "rejected", 0, 0, null, "batch queue is full"));
+      }
+    }
+  }
+
+  private ItemResult run(int index, String loc, boolean enrich, long queuedAt) {
+    long begin = System.nanoTime();
+    long queued = (begin - queuedAt) / 1_000_000;
+    if (!pipeline.claim(loc))
+      return new ItemResult(
+          index, loc, "in_flight", queued, 0, null, "Already being analyzed by the monitoring pipeline");
+
+    boolean claimed = true;
+    try {
+      PipelineItem item = processingService.fetch(loc, processingService.newDeadline());
+      if (item == null)
+        return new ItemResult(index, loc, "no_image", queued, elapsed(begin), null, "No images found");
+
+      processingService.detect(item);
+      processingService.describe(item);
+      processingService.persist(item);
+      fanoutService.broadcast(item.getResponse());
+      incidentCorrelator.onResult(item.getResponse());
+      // Released once broadcast, as the pipeline does; a description may still follow
+      pipeline.release(loc);
+      claimed = false;
+
+      if (item.isEnrich()) {
+        if (!enrich)
+          pipeline.enrichLater(item, fanoutService::broadcastUpdate);
+        else if (processingService.enrich(item))
+          fanoutService.broadcastUpdate(item.getResponse());
+      }
+      return new ItemResult(index, loc, "ok", queued, elapsed(begin), item.getResponse(), null);
+    } catch (DeadlineExceededException e) {
+      return new ItemResult(index, loc, "expired", queued, elapsed(begin), null, e.getMessage());
+    } catch (Exception e) {
+      System.err.println("Batch analysis failed for " + loc + ": " + e.getMessage());
+      return new ItemResult(index, loc, "error", queued, elapsed(begin), null, String.valueOf(e.getMessage()));
+    } finally {
+      if (claimed)
+        pipeline.release(loc);
+    }
+  }
+
+  private static long elapsed(long begin) {
+    return (System.nanoTime() - begin) / 1_000_000;
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    executor.shutdownNow();
+  }
+}
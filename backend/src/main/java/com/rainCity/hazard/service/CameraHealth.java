@@ -0,0 +1,226 @@
+package com.rainCity.hazard.service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Health of each camera as seen by {@link ExternalApiService#fetchCameraImages}: consecutive
+ * failures, the last good frame and fetch latency. A failure is an error on the camera page or
+ * image, a request the camera did not answer before the deadline, or a page whose image is
+ * missing or a placeholder. A deadline that ran out before the request was sent is not the
+ * camera's doing and is not counted.
+ *
+ * <p>After {@code failure-threshold} consecutive failures a camera is quarantined and
+ * {@link HazardPipeline} stops submitting it, so an outage costs no fetch workers. Each further
+ * failure doubles the quarantine, from {@code base-backoff-ms} up to {@code max-backoff-ms}, with
+ * {@code jitter} spreading the retries of cameras that failed together. Once a quarantine ends,
+ * the next tick probes the camera again; one good frame clears its record.
+ */
+@Component
+public class CameraHealth {
+
+  @Value("${hazard.camera-health.failure-threshold:3}")
+  private int failureThreshold = 3;
+
+  @Value("${hazard.camera-health.base-backoff-ms:30000}")
+  private long baseBackoffMillis = 30000;
+
+  @Value("${hazard.camera-health.max-backoff-ms:900000}")
+  private long maxBackoffMillis = 900000;
+
+  // Fraction of the backoff added or removed at random
+  @Value("${hazard.camera-health.jitter:0.2}")
+  private double jitter = 0.2;
+
+  private final Map<String, Health> cameras = new ConcurrentHashMap<>();
+  private final AtomicLong skipped = new AtomicLong();
+
+  public record CameraStatus(
+      String location,
+      String state,
+      int consecutiveFailures,
+      long successes,
+      long failures,
+      long skipped,
+      long lastGoodFrameAt,
+      long lastFailureAt,
+      String lastError,
+      long lastLatencyMillis,
+      double avgLatencyMillis,
+      long quarantinedUntil) {
+  }
+
+  private static final class Health {
+    final String location;
+    int consecutiveFailures;
+    long successes;
+    long failures;
+    long skipped;
+    long lastGoodFrameAt;
+    long lastFailureAt;
+    String lastError;
+    long lastLatencyMillis;
+    double avgLatencyMillis;
+    long quarantinedUntil;
+
+    Health(String location) {
+      this.location = location;
+    }
+
+    void latency(long millis) {
+      lastLatencyMillis = millis;
+      long samples = successes + failures;
+      avgLatencyMillis = samples <= 1 ? millis : avgLatencyMillis * 0.8 + millis * 0.2;
+    }
+
+    String state(long now) {
+      if (quarantinedUntil > now)
+        return "quarantined";
+      if (consecutiveFailures > 0)
+        return "failing";
+      return "healthy";
+    }
+
+    CameraStatus status(long now) {
+      return new CameraStatus(
+          location,
+          state(now),
+          consecutiveFailures,
+          successes,
+          failures,
+          skipped,
+          lastGoodFrameAt,
+          lastFailureAt,
+          lastError,
+          lastLatencyMillis,
+          avgLatencyMillis,
+          quarantinedUntil > now ? quarantinedUntil : 0);
+    }
+  }
+
+  /**
+   * True while {@code location} is quarantined; counts the skipped submission. Unknown
+   * locations are always available.
+   */
+  public boolean isQuarantined(String location) {
+    Health health = cameras.get(location);
+    if (health == null)
+      return false;
+    synchronized (health) {
+      if (health.quarantinedUntil <= System.currentTimeMillis())
+        return false;
+      health.skipped++;
+    }
+    skipped.incrementAndGet();
+    return true;
+  }
+
+  public void recordSuccess(String location, long latencyMillis) {
+    Health health = cameras.computeIfAbsent(location, Health::new);
+    synchronized (health) {
+      if (health.consecutiveFailures >= failureThreshold)
+        System.out.println("✅ Camera " + location + " recovered after " + health.consecutiveFailures + " failures");
+      health.successes++;
+      health.latency(latencyMillis);
+      health.consecutiveFailures = 0;
+      health.quarantinedUntil = 0;
+      health.lastGoodFrameAt = System.currentTimeMillis();
+    }
+  }
+
+  public void recordFailure(String location, String error, long latencyMillis) {
+    Health health = cameras.computeIfAbsent(location, Health::new);
+    synchronized (health) {
+      long now = System.currentTimeMillis();
+      health.failures++;
+      health.latency(latencyMillis);
+      health.consecutiveFailures++;
+      health.lastFailureAt = now;
+      health.lastError = error;
+      if (health.consecutiveFailures >= failureThreshold) {
+        long backoff = backoff(health.consecutiveFailures - failureThreshold);
+        health.quarantinedUntil = now + backoff;
+        System.err.println(
+            "🚧 Quarantining camera " + location + " for " + backoff / 1000 + " s after "
+                + health.consecutiveFailures + " failures (" + error + ")");
+      }
+    }
+  }
+
+  // base * 2^n, capped, then scaled by a random factor in [1 - jitter, 1 + jitter]
+  private long backoff(int n) {
+    long delay = baseBackoffMillis << Math.min(n, 20);
+    if (delay <= 0 || delay > maxBackoffMillis)
+      delay = maxBackoffMillis;
+    double factor = 1 + jitter * (2 * ThreadLocalRandom.current().nextDouble() - 1);
+    return Math.max(1, Math.min(maxBackoffMillis, (long) (delay * factor)));
+  }
+
+  /**
+   * Lifts the quarantine of {@code location}, or of every camera when null, so the next tick
+   * probes it. The failure count is kept: another failure quarantines it again, for longer.
+   */
+  public int release(String location) {
+    int released = 0;
+    for (Health health : location != null ? listOf(cameras.get(location)) : new ArrayList<>(cameras.values())) {
+      synchronized (health) {
+        if (health.quarantinedUntil > System.currentTimeMillis())
+          released++;
+        health.quarantinedUntil = 0;
+      }
+    }
+    return released;
+  }
+
+  private static List<Health> listOf(Health health) {
+    return health != null ? List.of(health) : List.of();
+  }
+
+  /** Every tracked camera, quarantined first, then by consecutive failures. */
+  public List<CameraStatus> statuses() {
+    long now = System.currentTimeMillis();
+    List<CameraStatus> statuses = new ArrayList<>();
+    for (Health health : cameras.values()) {
+      synchronized (health) {
+        statuses.add(health.status(now));
+      }
+    }
+    statuses.sort(Comparator.comparing((CameraStatus s) -> !"quarantined".equals(s.state()))
+        .thenComparing(Comparator.comparingInt(CameraStatus::consecutiveFailures).reversed())
+        .thenComparing(CameraStatus::location));
+    return statuses;
+  }
+
+  public Map<String, Object> summary() {
+    Map<String, Object> summary = new LinkedHashMap<>();
+    long now = System.currentTimeMillis();
+    int healthy = 0;
+    int failing = 0;
+    int quarantined = 0;
+    for (Health health : cameras.values()) {
+      String state;
+      synchronized (health) {
+        state = health.state(now);
+      }
+      switch (state) {
+        case "quarantined" -> quarantined++;
+        case "failing" -> failing++;
+        default -> healthy++;
+      }
+    }
+    summary.put("tracked", cameras.size());
+    summary.put("healthy", healthy);
+    summary.put("failing", failing);
+    summary.put("quarantined", quarantined);
+    summary.put("skipped", skipped.get());
+    return summary;
+  }
+}
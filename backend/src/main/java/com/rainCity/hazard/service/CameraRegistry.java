@@ -0,0 +1,311 @@
+package com.rainCity.hazard.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import jakarta.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Camera metadata keyed by lowercase name and map id. Readers always see one immutable snapshot;
+ * a reload streams the source (classpath, file or URL), validates it and swaps it in atomically,
+ * keeping the previous snapshot if anything is wrong.
+ *
+ * <p>A camera may carry an optional {@code "roi"}: the road area the detector should look at,
+ * in coordinates relative to the frame (0..1). It is either a rectangle {@code [x1, y1, x2, y2]}
+ * or a polygon {@code [[x, y], [x, y], ...]} of at least three points.
+ */
+@Service
+public class CameraRegistry {
+
+  private static final JsonFactory JSON = new JsonFactory();
+
+  private final ResourceLoader resourceLoader;
+  private final String source;
+  private final boolean deferInit;
+
+  private final AtomicReference<Snapshot> current = new AtomicReference<>();
+  private volatile long sourceLastModified;
+
+  public record CameraInfo(
+      String name, String url, String mapId, double lat, double lon, String geoLocalArea, Roi roi) {
+  }
+
+  /** Region of interest as a polygon in relative frame coordinates; rectangles have four points. */
+  public record Roi(double[] xs, double[] ys, boolean rectangle) {
+    static Roi rectangle(double x1, double y1, double x2, double y2) {
+      return new Roi(new double[] {x1, x2, x2, x1}, new double[] {y1, y1, y2, y2}, true);
+    }
+  }
+
+  /** One loaded version of the registry; never mutated after construction. */
+  public record Snapshot(long version, List<CameraInfo> cameras, Map<String, CameraInfo> index) {
+    static final Snapshot EMPTY = new Snapshot(0, List.of(), Map.of());
+  }
+
+  public record ReloadResult(boolean swapped, long version, int cameras, long millis, String error) {
+  }
+
+  public CameraRegistry(
+      ResourceLoader resourceLoader,
+      @Value("${hazard.cameras.source:classpath:data.json}") String source,
+      @Value("${hazard.startup.defer-init:false}") boolean deferInit) {
+    this.resourceLoader = resourceLoader;
+    this.source = source;
+    this.deferInit = deferInit;
+  }
+
+  @PostConstruct
+  public void init() {
+    if (!deferInit)
+      snapshot();
+  }
+
+  /** Current snapshot, loading it on first use. */
+  public Snapshot snapshot() {
+    Snapshot s = current.get();
+    if (s == null) {
+      synchronized (this) {
+        s = current.get();
+        if (s == null) {
+          reload();
+          s = current.get();
+        }
+      }
+    }
+    return s;
+  }
+
+  public CameraInfo find(String locationId) {
+    return locationId == null ? null : snapshot().index().get(normalize(locationId));
+  }
+
+  /**
+   * Canonical identity for a client-supplied location: the camera's name when the string names a
+   * camera by name or map id in any case or spacing, otherwise the trimmed string itself. Two
+   * strings that reach the same camera always canonicalize to the same value.
+   */
+  public String canonicalize(String locationId) {
+    if (locationId == null)
+      return null;
+    CameraInfo camera = find(locationId);
+    return camera != null ? camera.name() : locationId.trim().replaceAll("\\s+", " ");
+  }
+
+  private static String normalize(String locationId) {
+    return locationId.trim().replaceAll("\\s+", " ").toLowerCase();
+  }
+
+  public List<CameraInfo> cameras() {
+    return snapshot().cameras();
+  }
+
+  public String source() {
+    return source;
+  }
+
+  /** Loads the source again and swaps it in if it parses and validates. */
+  public synchronized ReloadResult reload() {
+    long start = System.nanoTime();
+    Snapshot previous = current.get();
+    long version = previous != null ? previous.version() + 1 : 1;
+
+    try {
+      Resource resource = resourceLoader.getResource(source);
+      long lastModified = lastModified(resource);
+      List<CameraInfo> cameras;
+      try (InputStream in = resource.getInputStream()) {
+        cameras = parse(in);
+      }
+
+      Snapshot next = build(version, cameras);
+      current.set(next);
+      sourceLastModified = lastModified;
+
+      long millis = (System.nanoTime() - start) / 1_000_000;
+      System.out.println(
+          "Loaded " + cameras.size() + " cameras (" + next.index().size() + " camera entries) from "
+              + source + " in " + millis + " ms, version " + version);
+      return new ReloadResult(true, version, cameras.size(), millis, null);
+    } catch (Exception e) {
+      System.err.println(" Camera registry load error from " + source + ": " + e.getMessage());
+      if (previous == null)
+        current.set(Snapshot.EMPTY);
+      long millis = (System.nanoTime() - start) / 1_000_000;
+      Snapshot kept = current.get();
+      return new ReloadResult(false, kept.version(), kept.cameras().size(), millis, e.getMessage());
+    }
+  }
+
+  /** Reloads when the source reports a newer modification time. */
+  @Scheduled(
+      fixedDelayString = "${hazard.cameras.reload-check-ms:60000}",
+      initialDelayString = "${hazard.cameras.reload-check-ms:60000}")
+  public void reloadIfChanged() {
+    if (current.get() == null)
+      return;
+
+    long lastModified = lastModified(resourceLoader.getResource(source));
+    if (lastModified > 0 && lastModified != sourceLastModified) {
+      System.out.println("Camera source changed, reloading: " + source);
+      reload();
+    }
+  }
+
+  /**
+   * Streams a JSON array of camera objects, reading only the fields we keep. Unknown fields and
+   * nested objects such as {@code geom} are skipped without being materialized.
+   */
+  static List<CameraInfo> parse(InputStream in) throws IOException {
+    List<CameraInfo> cameras = new ArrayList<>();
+    try (JsonParser p = JSON.createParser(in)) {
+      if (p.nextToken() != JsonToken.START_ARRAY)
+        throw new IOException("Expected a JSON array of cameras");
+
+      while (p.nextToken() == JsonToken.START_OBJECT) {
+        String name = null;
+        String url = null;
+        String mapId = null;
+        String area = null;
+        double lat = Double.NaN;
+        double lon = Double.NaN;
+        Roi roi = null;
+
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+          String field = p.currentName();
+          JsonToken value = p.nextToken();
+          switch (field) {
+            case "name" -> name = p.getValueAsString();
+            case "url" -> url = p.getValueAsString();
+            case "mapid" -> mapId = p.getValueAsString();
+            case "geo_local_area" -> area = p.getValueAsString();
+            case "geo_point_2d" -> {
+              if (value != JsonToken.START_OBJECT) {
+                p.skipChildren();
+                break;
+              }
+              while (p.nextToken() == JsonToken.FIELD_NAME) {
+                String coord = p.currentName();
+                p.nextToken();
+                if ("lat".equals(coord))
+                  lat = p.getValueAsDouble(Double.NaN);
+                else if ("lon".equals(coord))
+                  lon = p.getValueAsDouble(Double.NaN);
+                else
+                  p.skipChildren();
+              }
+            }
+            case "roi" -> roi = parseRoi(p, name);
+            default -> p.skipChildren();
+          }
+        }
+        cameras.add(new CameraInfo(name, url, mapId, lat, lon, area, roi));
+      }
+    }
+    return cameras;
+  }
+
+  // Positioned on the value of "roi": [x1, y1, x2, y2] or [[x, y], ...]; null is allowed
+  private static Roi parseRoi(JsonParser p, String camera) throws IOException {
+    if (p.currentToken() == JsonToken.VALUE_NULL)
+      return null;
+    if (p.currentToken() != JsonToken.START_ARRAY)
+      throw new IOException("roi of " + camera + " must be an array");
+
+    List<double[]> points = new ArrayList<>();
+    List<Double> flat = new ArrayList<>();
+    while (p.nextToken() != JsonToken.END_ARRAY) {
+      if (p.currentToken() == JsonToken.START_ARRAY) {
+        double x = p.nextToken().isNumeric() ? p.getDoubleValue() : Double.NaN;
+        double y = p.nextToken().isNumeric() ? p.getDoubleValue() : Double.NaN;
+        if (p.nextToken() != JsonToken.END_ARRAY)
+          throw new IOException("roi point of " + camera + " must be [x, y]");
+        points.add(new double[] {x, y});
+      } else if (p.currentToken().isNumeric()) {
+        flat.add(p.getDoubleValue());
+      } else {
+        throw new IOException("roi of " + camera + " must hold numbers or [x, y] points");
+      }
+    }
+
+    if (points.isEmpty() && flat.size() == 4)
+      return Roi.rectangle(flat.get(0), flat.get(1), flat.get(2), flat.get(3));
+    if (!flat.isEmpty() || points.size() < 3)
+      throw new IOException("roi of " + camera + " must be [x1, y1, x2, y2] or at least three [x, y] points");
+    double[] xs = new double[points.size()];
+    double[] ys = new double[points.size()];
+    for (int i = 0; i < points.size(); i++) {
+      xs[i] = points.get(i)[0];
+      ys[i] = points.get(i)[1];
+    }
+    return new Roi(xs, ys, false);
+  }
+
+  /** Validates the parsed cameras and builds the lookup index. */
+  static Snapshot build(long version, List<CameraInfo> cameras) {
+    if (cameras.isEmpty())
+      throw new IllegalArgumentException("Camera source is empty");
+
+    Map<String, CameraInfo> index = new HashMap<>(cameras.size() * 4);
+    Set<String> mapIds = new HashSet<>(cameras.size() * 2);
+    for (int i = 0; i < cameras.size(); i++) {
+      CameraInfo c = cameras.get(i);
+      if (isBlank(c.name()) || isBlank(c.url()) || isBlank(c.mapId()))
+        throw new IllegalArgumentException("Camera #" + i + " is missing name, url or mapid");
+      if (!(c.lat() >= -90 && c.lat() <= 90 && c.lon() >= -180 && c.lon() <= 180))
+        throw new IllegalArgumentException("Camera " + c.mapId() + " has invalid coordinates");
+      if (c.roi() != null && !isValid(c.roi()))
+        throw new IllegalArgumentException("Camera " + c.mapId() + " has an roi outside 0..1 or with no area");
+      if (!mapIds.add(c.mapId().toLowerCase()))
+        throw new IllegalArgumentException("Duplicate mapid " + c.mapId());
+
+      index.put(normalize(c.name()), c);
+      index.put(normalize(c.mapId()), c);
+    }
+    return new Snapshot(version, Collections.unmodifiableList(new ArrayList<>(cameras)), Map.copyOf(index));
+  }
+
+  private static boolean isValid(Roi roi) {
+    double minX = 1;
+    double minY = 1;
+    double maxX = 0;
+    double maxY = 0;
+    for (int i = 0; i < roi.xs().length; i++) {
+      double x = roi.xs()[i];
+      double y = roi.ys()[i];
+      if (!(x >= 0 && x <= 1 && y >= 0 && y <= 1))
+        return false;
+      minX = Math.min(minX, x);
+      minY = Math.min(minY, y);
+      maxX = Math.max(maxX, x);
+      maxY = Math.max(maxY, y);
+    }
+    return maxX > minX && maxY > minY;
+  }
+
+  private static long lastModified(Resource resource) {
+    try {
+      return resource.lastModified();
+    } catch (IOException e) {
+      return 0;
+    }
+  }
+
+  private static boolean isBlank(String s) {
+    return s == null || s.isBlank();
+  }
+}
@@ -0,0 +1,217 @@
+package com.rainCity.hazard.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Records the inputs of each processed frame (camera bytes, historical baseline, detections and
+ * boxes, timestamps) so a production tick can be replayed offline with
+ * {@code bench.CaptureReplay}.
+ *
+ * <p>A capture file starts with {@link #MAGIC} and holds one record per frame in the same
+ * {@code length, payload, crc32} framing as the snapshot store; a torn tail is ignored on read.
+ * The labeled image is only stored when the model service returned one without boxes, since
+ * boxes are re-rendered on replay.
+ */
+@Service
+public class CaptureRecorder {
+
+  static final byte[] MAGIC = {'R', 'C', 'C', 'A', 'P', '1'};
+
+  @Value("${hazard.capture.enabled:false}")
+  private boolean enabled;
+
+  @Value("${hazard.capture.dir:data/capture}")
+  private Path dir;
+
+  private DataOutputStream out;
+  private Path file;
+  private long records;
+
+  /** One recorded frame. */
+  public record CapturedFrame(
+      String location,
+      long fetchedAt,
+      long detectMillis,
+      double averageScore,
+      byte[] rawImage,
+      byte[] labeledImage,
+      List<ExternalApiService.HazardTag> detections,
+      List<ExternalApiService.DetectionBox> boxes) {
+  }
+
+  @PostConstruct
+  public synchronized void open() {
+    if (!enabled)
+      return;
+    try {
+      Files.createDirectories(dir);
+      file = dir.resolve("capture-" + System.currentTimeMillis() + ".bin");
+      out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16));
+      out.write(MAGIC);
+      System.out.println("🎥 Capturing pipeline inputs to " + file);
+    } catch (IOException e) {
+      System.err.println("Capture disabled, cannot open " + dir + ": " + e.getMessage());
+      out = null;
+    }
+  }
+
+  public boolean isEnabled() {
+    return out != null;
+  }
+
+  /** Appends the frame's inputs; called once detection has finished. */
+  public void record(
+      PipelineItem item, ExternalApiService.HazardDetectionResult result, long detectMillis) {
+    if (out == null)
+      return;
+
+    byte[] labeled = result.boxes().isEmpty() && !Arrays.equals(result.labeledImage(), item.getRawImage())
+        ? result.labeledImage()
+        : new byte[0];
+    CapturedFrame frame = new CapturedFrame(
+        item.getLocationString(),
+        item.getFetchedAt(),
+        detectMillis,
+        item.getAverageScore(),
+        item.getRawImage(),
+        labeled,
+        result.detections(),
+        result.boxes());
+
+    try {
+      byte[] payload = encode(frame);
+      synchronized (this) {
+        if (out == null)
+          return;
+        out.writeInt(payload.length);
+        out.write(payload);
+        out.writeInt(crc(payload));
+        // Flush per frame so a killed process still leaves a usable capture
+        out.flush();
+        records++;
+      }
+    } catch (IOException e) {
+      System.err.println("Capture write failed for " + item.getLocationString() + ": " + e.getMessage());
+    }
+  }
+
+  public synchronized long recordCount() {
+    return records;
+  }
+
+  @PreDestroy
+  public synchronized void close() {
+    if (out == null)
+      return;
+    try {
+      out.close();
+      System.out.println("🎥 Captured " + records + " frames to " + file);
+    } catch (IOException e) {
+      System.err.println("Error closing capture: " + e.getMessage());
+    }
+    out = null;
+  }
+
+  /** Reads every complete record of a capture file, in recorded order. */
+  public static List<CapturedFrame> read(Path path) throws IOException {
+    List<CapturedFrame> frames = new ArrayList<>();
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 16))) {
+      byte[] magic = new byte[MAGIC.length];
+      in.readFully(magic);
+      if (!Arrays.equals(magic, MAGIC))
+        throw new IOException(path + " is not a capture file");
+
+      while (true) {
+        byte[] payload;
+        try {
+          payload = new byte[in.readInt()];
+          in.readFully(payload);
+          if (in.readInt() != crc(payload)) {
+            System.err.println("Capture " + path + ": bad checksum after " + frames.size() + " frames");
+            break;
+          }
+        } catch (EOFException e) {
+          break;
+        }
+        frames.add(decode(payload));
+      }
+    }
+    return frames;
+  }
+
+  private static byte[] encode(CapturedFrame f) throws IOException {
+    ByteArrayOutputStream buf = new ByteArrayOutputStream(f.rawImage().length + f.labeledImage().length + 256);
+    DataOutputStream data = new DataOutputStream(buf);
+    data.writeUTF(f.location());
+    data.writeLong(f.fetchedAt());
+    data.writeLong(f.detectMillis());
+    data.writeDouble(f.averageScore());
+    data.writeInt(f.rawImage().length);
+    data.write(f.rawImage());
+    data.writeInt(f.labeledImage().length);
+    data.write(f.labeledImage());
+    data.writeShort(f.detections().size());
+    for (ExternalApiService.HazardTag t : f.detections()) {
+      data.writeUTF(t.label());
+      data.writeFloat((float) t.confidence());
+    }
+    data.writeShort(f.boxes().size());
+    for (ExternalApiService.DetectionBox b : f.boxes()) {
+      data.writeUTF(b.label());
+      data.writeFloat((float) b.confidence());
+      data.writeFloat((float) b.x1());
+      data.writeFloat((float) b.y1());
+      data.writeFloat((float) b.x2());
+      data.writeFloat((float) b.y2());
+    }
+    return buf.toByteArray();
+  }
+
+  private static CapturedFrame decode(byte[] payload) throws IOException {
+    DataInputStream data = new DataInputStream(new ByteArrayInputStream(payload));
+    String location = data.readUTF();
+    long fetchedAt = data.readLong();
+    long detectMillis = data.readLong();
+    double averageScore = data.readDouble();
+    byte[] raw = new byte[data.readInt()];
+    data.readFully(raw);
+    byte[] labeled = new byte[data.readInt()];
+    data.readFully(labeled);
+
+    int tagCount = data.readUnsignedShort();
+    List<ExternalApiService.HazardTag> detections = new ArrayList<>(tagCount);
+    for (int i = 0; i < tagCount; i++)
+      detections.add(new ExternalApiService.HazardTag(data.readUTF(), data.readFloat()));
+
+    int boxCount = data.readUnsignedShort();
+    List<ExternalApiService.DetectionBox> boxes = new ArrayList<>(boxCount);
+    for (int i = 0; i < boxCount; i++) {
+      boxes.add(new ExternalApiService.DetectionBox(
+          data.readUTF(), data.readFloat(), data.readFloat(), data.readFloat(), data.readFloat(), data.readFloat()));
+    }
+    return new CapturedFrame(location, fetchedAt, detectMillis, averageScore, raw, labeled, detections, boxes);
+  }
+
+  private static int crc(byte[] payload) {
+    CRC32 crc = new CRC32();
+    crc.update(payload);
+    return (int) crc.getValue();
+  }
+}
@@ -0,0 +1,185 @@
+package com.rainCity.hazard.service;
+
+import jakarta.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Fallback frames for locations that are not cameras, loaded and validated once into an
+ * immutable pool. The source is {@code classpath:custom-images/*}, or {@code
+ * hazard.custom-images.dir} when set; each file is read once at load. Picks hand the frame to
+ * the model client as an array, so the pool holds plain heap copies rather than mapped files.
+ * A reload builds a new pool and swaps it in, keeping the old one if the new set is empty.
+ *
+ * <p>{@link #pick()} walks a seeded SplitMix64 sequence over the pool and returns the shared
+ * bytes, so a pick allocates nothing; set {@code hazard.custom-images.seed} for a repeatable
+ * sequence. Callers must not modify the returned array.
+ */
+@Service
+public class CustomImagePool {
+
+  private static final String CLASSPATH_PATTERN = "classpath:custom-images/*";
+  private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+  @Value("${hazard.custom-images.dir:}")
+  private String dir;
+
+  // 0 picks a random seed at startup
+  @Value("${hazard.custom-images.seed:0}")
+  private long seed;
+
+  private final AtomicReference<Pool> current = new AtomicReference<>(Pool.EMPTY);
+  private final AtomicLong sequence = new AtomicLong();
+  private volatile long dirLastModified;
+
+  public record Image(String name, byte[] data) {
+  }
+
+  /** One loaded version of the pool; never mutated after construction. */
+  public record Pool(long version, String source, List<Image> images, long bytes) {
+    static final Pool EMPTY = new Pool(0, "none", List.of(), 0);
+  }
+
+  public record ReloadResult(
+      boolean swapped, long version, int images, long bytes, long millis, String error) {
+  }
+
+  @PostConstruct
+  public void init() {
+    sequence.set(seed != 0 ? seed : System.nanoTime());
+    reload();
+  }
+
+  /** Next frame from the pool, or null if the pool is empty. */
+  public byte[] pick() {
+    List<Image> images = current.get().images();
+    if (images.isEmpty())
+      return null;
+    long z = sequence.addAndGet(GOLDEN_GAMMA);
+    z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+    z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+    z ^= z >>> 31;
+    return images.get((int) Math.floorMod(z, (long) images.size())).data();
+  }
+
+  public Pool pool() {
+    return current.get();
+  }
+
+  /** Loads the source again and swaps it in if it has at least one valid image. */
+  public synchronized ReloadResult reload() {
+    long start = System.nanoTime();
+    Pool previous = current.get();
+    long version = previous.version() + 1;
+
+    try {
+      boolean fromDir = dir != null && !dir.isBlank();
+      long lastModified = fromDir ? Files.getLastModifiedTime(Path.of(dir)).toMillis() : 0;
+      List<Image> images = fromDir ? loadDirectory(Path.of(dir)) : loadClasspath();
+      if (images.isEmpty())
+        throw new IllegalStateException("no valid images (.jpg, .jpeg, .png, .webp) found");
+
+      long bytes = images.stream().mapToLong(i -> i.data().length).sum();
+      Pool next = new Pool(version, fromDir ? dir : CLASSPATH_PATTERN, List.copyOf(images), bytes);
+      current.set(next);
+      dirLastModified = lastModified;
+
+      long millis = (System.nanoTime() - start) / 1_000_000;
+      System.out.println(
+          "Loaded " + images.size() + " custom images (" + bytes / 1024 + " KB) from "
+              + next.source() + " in " + millis + " ms, version " + version);
+      return new ReloadResult(true, version, images.size(), bytes, millis, null);
+    } catch (Exception e) {
+      System.err.println(" Custom image pool load error: " + e.getMessage());
+      long millis = (System.nanoTime() - start) / 1_000_000;
+      return new ReloadResult(
+          false, previous.version(), previous.images().size(), previous.bytes(), millis, e.getMessage());
+    }
+  }
+
+  /** Reloads a directory source when its modification time changes (files added or removed). */
+  @Scheduled(
+      fixedDelayString = "${hazard.custom-images.reload-check-ms:60000}",
+      initialDelayString = "${hazard.custom-images.reload-check-ms:60000}")
+  public void reloadIfChanged() {
+    if (dir == null || dir.isBlank())
+      return;
+    try {
+      long lastModified = Files.getLastModifiedTime(Path.of(dir)).toMillis();
+      if (lastModified != dirLastModified) {
+        System.out.println("Custom image directory changed, reloading: " + dir);
+        reload();
+      }
+    } catch (IOException e) {
+      System.err.println(" Custom image directory check failed: " + e.getMessage());
+    }
+  }
+
+  private List<Image> loadClasspath() throws IOException {
+    List<Image> images = new ArrayList<>();
+    for (Resource resource : new PathMatchingResourcePatternResolver().getResources(CLASSPATH_PATTERN)) {
+      String name = resource.getFilename();
+      if (name == null || !hasImageExtension(name))
+        continue;
+      try (InputStream in = resource.getInputStream()) {
+        addIfValid(images, name, in.readAllBytes());
+      }
+    }
+    images.sort(Comparator.comparing(Image::name));
+    return images;
+  }
+
+  private List<Image> loadDirectory(Path directory) throws IOException {
+    List<Path> files;
+    try (Stream<Path> listing = Files.list(directory)) {
+      files = listing
+          .filter(Files::isRegularFile)
+          .filter(p -> hasImageExtension(p.getFileName().toString()))
+          .sorted()
+          .toList();
+    }
+
+    List<Image> images = new ArrayList<>();
+    for (Path file : files) {
+      addIfValid(images, file.getFileName().toString(), Files.readAllBytes(file));
+    }
+    return images;
+  }
+
+  private static void addIfValid(List<Image> images, String name, byte[] data) {
+    if (isImage(data))
+      images.add(new Image(name, data));
+    else
+      System.err.println("   Skipping " + name + ": not a JPEG, PNG or WebP file");
+  }
+
+  private static boolean hasImageExtension(String name) {
+    String lower = name.toLowerCase(Locale.ROOT);
+    return lower.endsWith(".jpg") || lower.endsWith(".jpeg") || lower.endsWith(".png") || lower.endsWith(".webp");
+  }
+
+  // Checks magic bytes, so a renamed or truncated file never reaches the model
+  private static boolean isImage(byte[] d) {
+    if (d.length < 12)
+      return false;
+    boolean jpeg = (d[0] & 0xFF) == 0xFF && (d[1] & 0xFF) == 0xD8 && (d[2] & 0xFF) == 0xFF;
+    boolean png = (d[0] & 0xFF) == 0x89 && d[1] == 'P' && d[2] == 'N' && d[3] == 'G';
+    boolean webp = d[0] == 'R' && d[1] == 'I' && d[2] == 'F' && d[3] == 'F'
+        && d[8] == 'W' && d[9] == 'E' && d[10] == 'B' && d[11] == 'P';
+    return jpeg || png || webp;
+  }
+}
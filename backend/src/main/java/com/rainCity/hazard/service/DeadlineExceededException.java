@@ -0,0 +1,28 @@
+package com.rainCity.hazard.service;
+
+/**
+ * Thrown when a pipeline item's deadline passes before its work is done. The result would be
+ * stale by the time it arrived, so the item is dropped and counted as expired, not failed.
+ */
+public class DeadlineExceededException extends RuntimeException {
+
+  private final boolean inFlight;
+
+  public DeadlineExceededException(String message) {
+    this(message, false);
+  }
+
+  /** @param inFlight whether a remote call had already been sent when the deadline passed */
+  public DeadlineExceededException(String message, boolean inFlight) {
+    super(message);
+    this.inFlight = inFlight;
+  }
+
+  /**
+   * True when the deadline passed while waiting on a remote reply, so the remote side was too
+   * slow; false when it passed before the call, e.g. in a queue or behind a rate limit.
+   */
+  public boolean isInFlight() {
+    return inFlight;
+  }
+}
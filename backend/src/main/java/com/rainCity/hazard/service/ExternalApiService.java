@@ -3,15 +3,12 @@ package com.rainCity.hazard.service;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.rainCity.hazard.model.HazardModels.*;
-import jakarta.annotation.PostConstruct;
+import java.time.Duration;
 import java.util.*;
-import java.util.Random;
 import java.util.regex.*;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.io.ClassPathResource;
-import org.springframework.core.io.Resource;
-import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
-import org.springframework.core.io.support.ResourcePatternResolver;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
 import reactor.core.publisher.Mono;
@@ -37,47 +34,117 @@ public class ExternalApiService {
     @Value("${app.supabase.anon-key}")
     private String supabaseKey;
 
-    private final WebClient webClient = WebClient.builder()
-            .codecs(configurer -> configurer.defaultCodecs().maxInMemorySize(10 * 1024 * 1024))
-            .build();
+    // Skip eager setup at startup; warm up in the background once ready
+    @Value("${hazard.startup.defer-init:false}")
+    private boolean deferInit;
+
+    // Built on first use so the reactor-netty stack stays off the startup path
+    private volatile WebClient webClient;
 
     private final ObjectMapper objectMapper = new ObjectMapper();
-    private final Map<String, CameraInfo> cameraCache = new HashMap<>();
+    private final CameraRegistry cameraRegistry;
+    private final OverlayRenderer overlayRenderer;
+    private final HostRateLimiter rateLimiter;
+    private final CustomImagePool customImages;
+    private final CameraHealth cameraHealth;
     private final String CUSTOM_IMAGES_FOLDER = "custom-images";
 
     public record HazardTag(String label, double confidence) {
     }
 
-    public record HazardDetectionResult(byte[] labeledImage, List<HazardTag> detections) {
+    /** One box in frame pixel coordinates, as returned by the model service. */
+    public record DetectionBox(String label, double confidence, double x1, double y1, double x2, double y2) {
+    }
+
+    public record HazardDetectionResult(byte[] labeledImage, List<HazardTag> detections, List<DetectionBox> boxes) {
+        public HazardDetectionResult(byte[] labeledImage, List<HazardTag> detections) {
+            this(labeledImage, detections, List.of());
+        }
+    }
+
+    /** One location's input to {@link #generateDescriptions}; {@code key} identifies it in the reply. */
+    public record DescriptionRequest(String key, List<HazardTag> detections, boolean isSpike, double score) {
+    }
+
+    public ExternalApiService(
+            CameraRegistry cameraRegistry,
+            OverlayRenderer overlayRenderer,
+            HostRateLimiter rateLimiter,
+            CustomImagePool customImages,
+            CameraHealth cameraHealth) {
+        this.cameraRegistry = cameraRegistry;
+        this.overlayRenderer = overlayRenderer;
+        this.rateLimiter = rateLimiter;
+        this.customImages = customImages;
+        this.cameraHealth = cameraHealth;
     }
 
-    record CameraInfo(String name, String url, String mapId, double lat, double lon) {
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        if (!deferInit)
+            return;
+
+        Thread warmUp = new Thread(() -> {
+            cameraRegistry.snapshot();
+            webClient();
+        }, "hazard-warm-up");
+        warmUp.setDaemon(true);
+        warmUp.start();
     }
 
-    @PostConstruct
-    public void loadCameraData() {
+    private WebClient webClient() {
+        WebClient client = webClient;
+        if (client == null) {
+            synchronized (this) {
+                client = webClient;
+                if (client == null) {
+                    client = WebClient.builder()
+                            .codecs(configurer -> configurer.defaultCodecs().maxInMemorySize(10 * 1024 * 1024))
+                            .build();
+                    webClient = client;
+                }
+            }
+        }
+        return client;
+    }
+
+    /**
+     * Blocks for {@code mono}, giving up at {@code deadline} (epoch millis; 0 waits as long as the
+     * call takes), and ends {@code event} with the reply size and outcome.
+     */
+    private static <T> T block(Mono<T> mono, long deadline, ExternalCallEvent event) {
         try {
-            JsonNode root = objectMapper.readTree(new ClassPathResource("data.json").getInputStream());
-            for (JsonNode node : root) {
-                CameraInfo info = new CameraInfo(
-                        node.get("name").asText(),
-                        node.get("url").asText(),
-                        node.get("mapid").asText(),
-                        node.get("geo_point_2d").get("lat").asDouble(),
-                        node.get("geo_point_2d").get("lon").asDouble());
-
-                cameraCache.put(info.name().toLowerCase(), info);
-                cameraCache.put(info.mapId().toLowerCase(), info);
+            T result;
+            if (deadline <= 0) {
+                result = mono.block();
+            } else {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0)
+                    throw new DeadlineExceededException(event.call + ": deadline passed before the call");
+                result = mono
+                        .timeout(Duration.ofMillis(remaining),
+                                Mono.error(() -> new DeadlineExceededException(event.call + ": deadline passed", true)))
+                        .block();
             }
-            System.out.println("Loaded " + cameraCache.size() + " camera entries");
-        } catch (Exception e) {
-            System.err.println(" Load Error: " + e.getMessage());
-            e.printStackTrace();
+            event.finish(result);
+            return result;
+        } catch (RuntimeException e) {
+            event.fail(e);
+            event.finish();
+            throw e;
         }
     }
 
     public List<byte[]> fetchCameraImages(String locationId) {
-        CameraInfo camera = cameraCache.get(locationId.toLowerCase());
+        return fetchCameraImages(locationId, 0);
+    }
+
+    /**
+     * Camera frame for {@code locationId}, abandoning the downloads at {@code deadline} (0 for none).
+     * The outcome and latency are recorded in {@link CameraHealth}.
+     */
+    public List<byte[]> fetchCameraImages(String locationId, long deadline) {
+        CameraRegistry.CameraInfo camera = cameraRegistry.find(locationId);
 
         if (camera == null) {
             System.out.println(" Camera not found in data.json: " + locationId);
@@ -85,16 +152,18 @@ public class ExternalApiService {
             return fetchCustomImages(locationId);
         }
 
+        String healthKey = cameraRegistry.canonicalize(locationId);
+        long start = System.nanoTime();
         try {
             System.out.println(" Fetching camera: " + camera.name() + " from " + camera.url());
 
-            String html = webClient
+            rateLimiter.acquire(camera.url(), deadline);
+            String html = block(webClient()
                     .get()
                     .uri(camera.url())
                     .header("User-Agent", "Mozilla/5.0")
                     .retrieve()
-                    .bodyToMono(String.class)
-                    .block();
+                    .bodyToMono(String.class), deadline, ExternalCallEvent.start("camera_page", locationId));
 
             List<byte[]> images = new ArrayList<>();
             Matcher m = Pattern.compile("<img[^>]+src=['\"]([^'\"]+)['\"]").matcher(html);
@@ -106,14 +175,14 @@ public class ExternalApiService {
 
                 System.out.println(" Downloading image from: " + src);
 
-                byte[] img = webClient
+                rateLimiter.acquire(src, deadline);
+                byte[] img = block(webClient()
                         .get()
                         .uri(src)
                         .header("User-Agent", "Mozilla/5.0")
                         .header("Referer", "https://trafficcams.vancouver.ca/")
                         .retrieve()
-                        .bodyToMono(byte[].class)
-                        .block();
+                        .bodyToMono(byte[].class), deadline, ExternalCallEvent.start("camera_image", locationId));
 
                 if (img != null && img.length > 2000) {
                     images.add(img);
@@ -122,109 +191,93 @@ public class ExternalApiService {
             }
 
             System.out.println(" Fetched " + images.size() + " image(s)");
+            if (images.isEmpty())
+                cameraHealth.recordFailure(healthKey, "no frame on camera page", elapsedMillis(start));
+            else
+                cameraHealth.recordSuccess(healthKey, elapsedMillis(start));
             return images;
+        } catch (DeadlineExceededException e) {
+            // Only a request the camera left unanswered counts against it; running out before the
+            // request, e.g. behind the rate limiter, is a pipeline drop
+            if (e.isInFlight())
+                cameraHealth.recordFailure(healthKey, "timeout: " + e.getMessage(), elapsedMillis(start));
+            throw e;
         } catch (Exception e) {
             System.err.println(" Fetch error: " + e.getMessage());
             e.printStackTrace();
+            cameraHealth.recordFailure(healthKey, String.valueOf(e.getMessage()), elapsedMillis(start));
             return Collections.emptyList();
         }
     }
 
-    private List<byte[]> fetchCustomImages(String locationId) {
-        try {
-            System.out.println(
-                    " Location '" + locationId + "' not in data.json - fetching random custom image");
-
-            ResourcePatternResolver resolver = new PathMatchingResourcePatternResolver();
-            Resource[] resources = resolver.getResources("classpath:custom-images/*");
-
-            System.out.println(" Found " + resources.length + " total files in custom-images folder");
-
-            if (resources.length == 0) {
-                System.err.println(" No files found in custom-images folder");
-                System.err.println(" Place images in: src/main/resources/custom-images/");
-                System.err.println(" Supported formats: .jpg, .jpeg, .png, .webp");
-                return Collections.emptyList();
-            }
-
-            List<Resource> imageResources = new ArrayList<>();
-            for (Resource resource : resources) {
-                String filename = resource.getFilename();
-                System.out.println("   🔍 Checking file: " + filename);
-
-                if (filename != null) {
-                    String lowerFilename = filename.toLowerCase();
-                    if (lowerFilename.endsWith(".jpg")
-                            || lowerFilename.endsWith(".jpeg")
-                            || lowerFilename.endsWith(".png")
-                            || lowerFilename.endsWith(".webp")) {
-                        imageResources.add(resource);
-                        System.out.println("    Added image: " + filename);
-                    }
-                }
-            }
-
-            if (imageResources.isEmpty()) {
-                System.err.println(" No image files found in custom-images folder");
-                System.err.println(
-                        " Found "
-                                + resources.length
-                                + " files, but none were images (.jpg, .jpeg, .png, .webp)");
-
-                for (Resource r : resources) {
-                    System.err.println("   - " + r.getFilename());
-                }
-
-                return Collections.emptyList();
-            }
-
-            System.out.println(" Found " + imageResources.size() + " custom images");
-
-            Random random = new Random();
-            Resource randomResource = imageResources.get(random.nextInt(imageResources.size()));
-
-            System.out.println(" Randomly selected: " + randomResource.getFilename());
-
-            byte[] imageBytes = randomResource.getInputStream().readAllBytes();
-
-            System.out.println(" Loaded random custom image (" + imageBytes.length + " bytes)");
-            return List.of(imageBytes);
+    private static long elapsedMillis(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
 
-        } catch (Exception e) {
-            System.err.println(" Error fetching random custom image: " + e.getMessage());
-            e.printStackTrace();
+    private List<byte[]> fetchCustomImages(String locationId) {
+        System.out.println(
+                " Location '" + locationId + "' not in data.json - using a custom image");
+
+        byte[] imageBytes = customImages.pick();
+        if (imageBytes == null) {
+            System.err.println(" No custom images loaded");
+            System.err.println(" Place images in: src/main/resources/custom-images/ or hazard.custom-images.dir");
+            System.err.println(" Supported formats: .jpg, .jpeg, .png, .webp");
             return Collections.emptyList();
         }
+
+        System.out.println(" Picked custom image (" + imageBytes.length + " bytes)");
+        return List.of(imageBytes);
     }
 
     public HazardDetectionResult detectHazards(byte[] imageBytes) {
+        return detectHazards(imageBytes, null, 0);
+    }
+
+    public HazardDetectionResult detectHazards(byte[] imageBytes, long deadline) {
+        return detectHazards(imageBytes, null, deadline);
+    }
+
+    /**
+     * Runs the model on {@code imageBytes}, or on {@code crop} of it when the camera has a region
+     * of interest; boxes are returned and drawn in full-frame pixels either way. With a {@code
+     * deadline} (epoch millis, 0 for none) the calls are bounded by the remaining budget and
+     * polling stops once another attempt could not finish in time, throwing {@link
+     * DeadlineExceededException}.
+     */
+    public HazardDetectionResult detectHazards(byte[] imageBytes, RoiCropper.Crop crop, long deadline) {
         try {
+            byte[] modelInput = crop != null ? crop.image() : imageBytes;
             System.out.println(" Starting Gradio API call...");
-            System.out.println(" Image size: " + imageBytes.length + " bytes");
+            System.out.println(" Image size: " + modelInput.length + " bytes"
+                    + (crop != null ? " (ROI " + crop.width() + "x" + crop.height() + ")" : ""));
 
-            if (imageBytes.length > 500000) {
+            if (modelInput.length > 500000) {
                 System.out.println(
-                        " WARNING: Image is large (" + imageBytes.length + " bytes), this might cause issues");
+                        " WARNING: Image is large (" + modelInput.length + " bytes), this might cause issues");
             }
 
-            String base64Image = Base64.getEncoder().encodeToString(imageBytes);
-            String dataUrl = "data:image/jpeg;base64," + base64Image;
-            System.out.println(" Base64 encoded (length: " + base64Image.length() + ")");
+            // The data URL is base64-encoded straight into the request body, which is handed to
+            // the client as is; no intermediate string or second copy of the body is made
+            JpegDataUrl dataUrl = new JpegDataUrl(modelInput);
+            System.out.println(" Data URL length: " + dataUrl.length());
 
             Map<String, Object> imageDict = new HashMap<>();
             imageDict.put("path", null);
             imageDict.put("url", dataUrl);
-            imageDict.put("size", imageBytes.length);
+            imageDict.put("size", modelInput.length);
             imageDict.put("orig_name", "camera_image.jpg");
             imageDict.put("mime_type", "image/jpeg");
             imageDict.put("is_stream", false);
             imageDict.put("meta", Map.of("_type", "gradio.FileData"));
 
-            Map<String, Object> requestBody = Map.of("data", List.of(imageDict));
+            byte[] requestBody = objectMapper.writeValueAsBytes(Map.of("data", List.of(imageDict)));
 
             System.out.println(" Sending POST request to Gradio...");
 
-            String postResponse = webClient
+            ExternalCallEvent submit = ExternalCallEvent.start("gradio_submit");
+            submit.requestBytes = requestBody.length;
+            String postResponse = block(webClient()
                     .post()
                     .uri("https://sdl11-intersection-hazard-api.hf.space/gradio_api/call/detect_hazards")
                     .header("Content-Type", "application/json")
@@ -244,8 +297,7 @@ public class ExternalApiService {
                                                 return Mono.error(
                                                         new RuntimeException("Gradio API error: " + errorBody));
                                             }))
-                    .bodyToMono(String.class)
-                    .block();
+                    .bodyToMono(String.class), deadline, submit);
 
             if (postResponse == null || postResponse.trim().isEmpty()) {
                 System.err.println("❌ Empty response from Gradio POST");
@@ -270,52 +322,69 @@ public class ExternalApiService {
             int maxRetries = 10;
             int retryCount = 0;
 
-            while (retryCount < maxRetries) {
-                Thread.sleep(1000);
-
-                System.out.println("🔄 Attempt " + (retryCount + 1) + "/" + maxRetries);
-
-                try {
-                    getResponse = webClient
-                            .get()
-                            .uri(
-                                    "https://sdl11-intersection-hazard-api.hf.space/gradio_api/call/detect_hazards/"
-                                            + eventId)
-                            .retrieve()
-                            .onStatus(
-                                    status -> status.is4xxClientError() || status.is5xxServerError(),
-                                    clientResponse -> clientResponse
-                                            .bodyToMono(String.class)
-                                            .flatMap(
-                                                    errorBody -> {
-                                                        System.err.println(
-                                                                "❌ Gradio GET Error ("
-                                                                        + clientResponse.statusCode()
-                                                                        + "): "
-                                                                        + errorBody);
-                                                        return Mono.error(
-                                                                new RuntimeException("Gradio GET error: " + errorBody));
-                                                    }))
-                            .bodyToMono(String.class)
-                            .block();
-
-                    if (getResponse != null && getResponse.contains("data:")) {
-                        System.out.println("✅ Got response with data!");
-                        break;
+            ExternalCallEvent wait = ExternalCallEvent.start("gradio_wait");
+            wait.attempts = 0;
+            try {
+                while (retryCount < maxRetries) {
+                    if (deadline > 0 && System.currentTimeMillis() + 1000 >= deadline)
+                        throw new DeadlineExceededException(
+                                "Gradio result for " + eventId + " not ready within the deadline after "
+                                        + retryCount + " attempts", true);
+                    Thread.sleep(1000);
+                    wait.attempts++;
+
+                    System.out.println("🔄 Attempt " + (retryCount + 1) + "/" + maxRetries);
+
+                    try {
+                        getResponse = block(webClient()
+                                .get()
+                                .uri(
+                                        "https://sdl11-intersection-hazard-api.hf.space/gradio_api/call/detect_hazards/"
+                                                + eventId)
+                                .retrieve()
+                                .onStatus(
+                                        status -> status.is4xxClientError() || status.is5xxServerError(),
+                                        clientResponse -> clientResponse
+                                                .bodyToMono(String.class)
+                                                .flatMap(
+                                                        errorBody -> {
+                                                            System.err.println(
+                                                                    "❌ Gradio GET Error ("
+                                                                            + clientResponse.statusCode()
+                                                                            + "): "
+                                                                            + errorBody);
+                                                            return Mono.error(
+                                                                    new RuntimeException("Gradio GET error: " + errorBody));
+                                                        }))
+                                .bodyToMono(String.class), deadline, ExternalCallEvent.start("gradio_poll"));
+
+                        if (getResponse != null && getResponse.contains("data:")) {
+                            System.out.println("✅ Got response with data!");
+                            break;
+                        }
+
+                        System.out.println(
+                                "⏳ Still processing... (response: "
+                                        + (getResponse != null
+                                                ? getResponse.substring(0, Math.min(100, getResponse.length()))
+                                                : "null")
+                                        + ")");
+
+                    } catch (DeadlineExceededException e) {
+                        throw e;
+                    } catch (Exception e) {
+                        System.err.println("⚠️ GET attempt failed: " + e.getMessage());
                     }
 
-                    System.out.println(
-                            "⏳ Still processing... (response: "
-                                    + (getResponse != null
-                                            ? getResponse.substring(0, Math.min(100, getResponse.length()))
-                                            : "null")
-                                    + ")");
-
-                } catch (Exception e) {
-                    System.err.println("⚠️ GET attempt failed: " + e.getMessage());
+                    retryCount++;
                 }
-
-                retryCount++;
+            } catch (DeadlineExceededException e) {
+                wait.fail(e);
+                throw e;
+            } finally {
+                if ("ok".equals(wait.outcome) && (getResponse == null || !getResponse.contains("data:")))
+                    wait.outcome = "not_ready";
+                wait.finish(getResponse);
             }
 
             if (getResponse == null || !getResponse.contains("data:")) {
@@ -328,6 +397,7 @@ public class ExternalApiService {
                     " First 500 chars: " + getResponse.substring(0, Math.min(500, getResponse.length())));
 
             List<HazardTag> detections = new ArrayList<>();
+            List<DetectionBox> boxes = new ArrayList<>();
             byte[] labeledImage = imageBytes;
             String[] lines = getResponse.split("\n");
 
@@ -367,53 +437,70 @@ public class ExternalApiService {
                         if (eventData.isArray() && eventData.size() >= 2) {
                             System.out.println("✅ Found array with " + eventData.size() + " elements");
 
-                            JsonNode imageNode = eventData.get(0);
-                            System.out.println("🖼️ Image node type: " + imageNode.getNodeType());
-                            System.out.println(
-                                    "🖼️ Image node content: "
-                                            + imageNode
-                                                    .toString()
-                                                    .substring(0, Math.min(300, imageNode.toString().length())));
-
-                            if (imageNode != null && imageNode.has("url")) {
-                                String imageUrl = imageNode.get("url").asText();
-                                System.out.println("📥 Downloading labeled image from: " + imageUrl);
-
-                                byte[] downloadedImage = webClient.get().uri(imageUrl).retrieve()
-                                        .bodyToMono(byte[].class).block();
-
-                                if (downloadedImage != null && downloadedImage.length > 0) {
-                                    labeledImage = downloadedImage;
-                                    System.out.println(
-                                            "✅ Downloaded labeled image (" + labeledImage.length + " bytes)");
-                                }
-                            } else if (imageNode != null && imageNode.has("path")) {
-                                String path = imageNode.get("path").asText();
-                                System.out.println(
-                                        "🖼️ Image path: " + path.substring(0, Math.min(100, path.length())));
-
-                                if (path.startsWith("data:image")) {
-                                    String base64Data = path.split(",")[1];
-                                    labeledImage = Base64.getDecoder().decode(base64Data);
-                                    System.out.println(
-                                            "✅ Extracted labeled image from base64 (" + labeledImage.length
-                                                    + " bytes)");
-                                }
-                            }
-
                             JsonNode detectionData = eventData.get(1);
+                            int firstBox = boxes.size();
                             System.out.println("🎯 Detection node type: " + detectionData.getNodeType());
                             System.out.println("🎯 Detection data: " + detectionData.toString());
 
                             if (detectionData.isObject()) {
-                                parseDetectionResults(detectionData, detections);
+                                parseDetectionResults(detectionData, detections, boxes);
                             } else if (detectionData.isArray()) {
                                 System.out.println("📊 Processing " + detectionData.size() + " detection items");
                                 for (JsonNode item : detectionData) {
-                                    parseDetection(item, detections);
+                                    parseDetection(item, detections, boxes);
+                                }
+                            }
+
+                            if (crop != null)
+                                boxes.subList(firstBox, boxes.size()).replaceAll(b -> RoiCropper.toFrame(b, crop));
+
+                            // Draw boxes on the frame we already hold instead of fetching the
+                            // Space's rendered copy; only older replies without boxes need it
+                            // (and then show the cropped region)
+                            if (!boxes.isEmpty() || detections.isEmpty()) {
+                                labeledImage = overlayRenderer.render(imageBytes, boxes);
+                                System.out.println(
+                                        "✅ Rendered " + boxes.size() + " boxes locally (" + labeledImage.length
+                                                + " bytes)");
+                            } else {
+                                JsonNode imageNode = eventData.get(0);
+                                System.out.println("🖼️ Image node type: " + imageNode.getNodeType());
+                                System.out.println(
+                                        "🖼️ Image node content: "
+                                                + imageNode
+                                                        .toString()
+                                                        .substring(0, Math.min(300, imageNode.toString().length())));
+
+                                if (imageNode != null && imageNode.has("url")) {
+                                    String imageUrl = imageNode.get("url").asText();
+                                    System.out.println("📥 Downloading labeled image from: " + imageUrl);
+
+                                    byte[] downloadedImage = block(webClient().get().uri(imageUrl).retrieve()
+                                            .bodyToMono(byte[].class),
+                                            deadline, ExternalCallEvent.start("labeled_image"));
+
+                                    if (downloadedImage != null && downloadedImage.length > 0) {
+                                        labeledImage = downloadedImage;
+                                        System.out.println(
+                                                "✅ Downloaded labeled image (" + labeledImage.length + " bytes)");
+                                    }
+                                } else if (imageNode != null && imageNode.has("path")) {
+                                    String path = imageNode.get("path").asText();
+                                    System.out.println(
+                                            "🖼️ Image path: " + path.substring(0, Math.min(100, path.length())));
+
+                                    if (path.startsWith("data:image")) {
+                                        String base64Data = path.split(",")[1];
+                                        labeledImage = Base64.getDecoder().decode(base64Data);
+                                        System.out.println(
+                                                "✅ Extracted labeled image from base64 (" + labeledImage.length
+                                                        + " bytes)");
+                                    }
                                 }
                             }
                         }
+                    } catch (DeadlineExceededException e) {
+                        throw e;
                     } catch (Exception e) {
                         System.err.println("⚠️ Error parsing line: " + e.getMessage());
                         e.printStackTrace();
@@ -426,8 +513,10 @@ public class ExternalApiService {
                             + detections.size()
                             + " detections, image size: "
                             + labeledImage.length);
-            return new HazardDetectionResult(labeledImage, detections);
+            return new HazardDetectionResult(labeledImage, detections, boxes);
 
+        } catch (DeadlineExceededException e) {
+            throw e;
         } catch (Exception e) {
             System.err.println("❌ CRITICAL ERROR in detectHazards: " + e.getMessage());
             e.printStackTrace();
@@ -435,23 +524,23 @@ public class ExternalApiService {
         }
     }
 
-    private void parseDetectionResults(JsonNode node, List<HazardTag> detections) {
+    private void parseDetectionResults(JsonNode node, List<HazardTag> detections, List<DetectionBox> boxes) {
         if (node.has("predictions") && node.get("predictions").isArray()) {
             for (JsonNode pred : node.get("predictions")) {
-                parseDetection(pred, detections);
+                parseDetection(pred, detections, boxes);
             }
         } else if (node.has("detections") && node.get("detections").isArray()) {
             for (JsonNode det : node.get("detections")) {
-                parseDetection(det, detections);
+                parseDetection(det, detections, boxes);
             }
         } else if (node.isArray()) {
             for (JsonNode item : node) {
-                parseDetection(item, detections);
+                parseDetection(item, detections, boxes);
             }
         }
     }
 
-    private void parseDetection(JsonNode node, List<HazardTag> detections) {
+    private void parseDetection(JsonNode node, List<HazardTag> detections, List<DetectionBox> boxes) {
         String label = null;
         double confidence = 0.0;
 
@@ -472,12 +561,32 @@ public class ExternalApiService {
         if (label != null) {
             detections.add(new HazardTag(label, confidence));
             System.out.println("   ➡️ Detected: " + label + " (confidence: " + confidence + ")");
+
+            // Every box of this class as [x1, y1, x2, y2, confidence]
+            if (node.has("boxes") && node.get("boxes").isArray()) {
+                for (JsonNode b : node.get("boxes")) {
+                    if (b.isArray() && b.size() >= 4) {
+                        double boxConfidence = b.size() > 4 ? b.get(4).asDouble() : confidence;
+                        boxes.add(new DetectionBox(label, boxConfidence,
+                                b.get(0).asDouble(), b.get(1).asDouble(), b.get(2).asDouble(), b.get(3).asDouble()));
+                    }
+                }
+            }
         }
     }
 
     public double fetchHistoricalAverage(String locationId) {
+        return fetchHistoricalAverage(locationId, 0);
+    }
+
+    /**
+     * Mean of the location's recent scores in Supabase, 0 when there are none or the read fails.
+     *
+     * @throws DeadlineExceededException if the read does not complete by {@code deadline}
+     */
+    public double fetchHistoricalAverage(String locationId, long deadline) {
         try {
-            String response = webClient
+            String response = block(webClient()
                     .get()
                     .uri(
                             supabaseUrl
@@ -487,8 +596,7 @@ public class ExternalApiService {
                     .header("apikey", supabaseKey)
                     .header("Authorization", "Bearer " + supabaseKey)
                     .retrieve()
-                    .bodyToMono(String.class)
-                    .block();
+                    .bodyToMono(String.class), deadline, ExternalCallEvent.start("supabase_read", locationId));
 
             if (response == null)
                 return 0.0;
@@ -507,6 +615,9 @@ public class ExternalApiService {
             }
 
             return count > 0 ? sum / count : 0.0;
+        } catch (DeadlineExceededException e) {
+            // A baseline of 0 would turn the frame into a false spike; drop it instead
+            throw e;
         } catch (Exception e) {
             System.err.println("Historical fetch error: " + e.getMessage());
             return 0.0;
@@ -514,6 +625,11 @@ public class ExternalApiService {
     }
 
     public String generateDescription(List<HazardTag> detections, boolean isSpike, double score) {
+        return generateDescription(detections, isSpike, score, 0);
+    }
+
+    /** Falls back to a description built from the tags when DeepSeek fails or misses {@code deadline}. */
+    public String generateDescription(List<HazardTag> detections, boolean isSpike, double score, long deadline) {
         if (detections.isEmpty()) {
             return "No hazards detected at this location. Traffic conditions appear normal.";
         }
@@ -533,55 +649,137 @@ public class ExternalApiService {
                     + ". Provide a 2-3 sentence description for police officers. "
                     + "If spike detected, explain urgency. Be concise and actionable.";
 
-            Map<String, Object> body = Map.of(
-                    "model",
-                    "deepseek-ai/DeepSeek-V3",
-                    "prompt",
-                    prompt,
-                    "max_tokens",
-                    300,
-                    "temperature",
-                    0.7);
-
             System.out.println("🧠 Calling DeepSeek...");
+            String text = completeWithDeepSeek(prompt, 300, deadline);
+            if (text != null) {
+                return text;
+            }
 
-            String response = webClient
-                    .post()
-                    .uri(deepSeekUrl)
-                    .header("Content-Type", "application/json")
-                    .header("Authorization", "Bearer " + deepSeekToken)
-                    .bodyValue(body)
-                    .retrieve()
-                    .bodyToMono(String.class)
-                    .block();
+            return "Detected: " + tagsStr + ". Manual assessment recommended.";
 
-            if (response == null) {
-                System.err.println("❌ No response from DeepSeek");
-                return "Detected: " + tagsStr + ". Manual assessment recommended.";
-            }
+        } catch (Exception e) {
+            System.err.println("DeepSeek error: " + e.getMessage());
+            String tagsStr = detections.stream().map(HazardTag::label).reduce((a, b) -> a + ", " + b).orElse("none");
+            return "Detected: " + tagsStr + ". Score: " + score + (isSpike ? " (SPIKE ALERT)" : "");
+        }
+    }
 
-            System.out.println("📥 DeepSeek response received");
+    /**
+     * Describes several locations with one DeepSeek call. Each request is listed under its key and
+     * the model is asked for a JSON object mapping keys to descriptions. Locations the reply does
+     * not cover, or all of them if it cannot be parsed, fall back to {@link #generateDescription}.
+     *
+     * @return description per request key
+     */
+    public Map<String, String> generateDescriptions(List<DescriptionRequest> requests) {
+        return generateDescriptions(requests, 0);
+    }
 
-            JsonNode root = objectMapper.readTree(response);
+    /** As {@link #generateDescriptions(List)}, with every DeepSeek call bounded by {@code deadline}. */
+    public Map<String, String> generateDescriptions(List<DescriptionRequest> requests, long deadline) {
+        Map<String, String> descriptions = new LinkedHashMap<>();
+        List<DescriptionRequest> pending = new ArrayList<>();
+        for (DescriptionRequest r : requests) {
+            if (r.detections().isEmpty()) {
+                descriptions.put(r.key(), generateDescription(r.detections(), r.isSpike(), r.score(), deadline));
+            } else {
+                pending.add(r);
+            }
+        }
 
-            if (root.has("choices") && root.get("choices").size() > 0) {
-                JsonNode choice = root.get("choices").get(0);
-                if (choice.has("text")) {
-                    return choice.get("text").asText().trim();
+        if (pending.size() > 1) {
+            StringBuilder prompt = new StringBuilder("Analyze these traffic hazard detections for ")
+                    .append(pending.size())
+                    .append(" locations. For each key, provide a 2-3 sentence description for police officers. ")
+                    .append("If spike detected, explain urgency. Be concise and actionable.\n");
+            for (DescriptionRequest r : pending) {
+                String tagsStr = r.detections().stream()
+                        .map(t -> t.label() + " (" + String.format("%.2f", t.confidence()) + ")")
+                        .reduce((a, b) -> a + ", " + b)
+                        .orElse("none");
+                prompt.append(r.key())
+                        .append(": detections: ").append(tagsStr)
+                        .append(". Hazard Score: ").append(r.score())
+                        .append(". Spike detected: ").append(r.isSpike())
+                        .append(".\n");
+            }
+            prompt.append("Respond with only a JSON object whose keys are exactly the keys above ")
+                    .append("and whose values are the descriptions.");
+
+            try {
+                System.out.println("🧠 Calling DeepSeek for " + pending.size() + " locations...");
+                String text = completeWithDeepSeek(prompt.toString(), Math.min(4000, 200 * pending.size()), deadline);
+                int start = text != null ? text.indexOf('{') : -1;
+                int end = text != null ? text.lastIndexOf('}') : -1;
+                if (start >= 0 && end > start) {
+                    JsonNode reply = objectMapper.readTree(text.substring(start, end + 1));
+                    Iterator<DescriptionRequest> it = pending.iterator();
+                    while (it.hasNext()) {
+                        DescriptionRequest r = it.next();
+                        JsonNode value = reply.get(r.key());
+                        if (value != null && value.isTextual() && !value.asText().isBlank()) {
+                            descriptions.put(r.key(), value.asText().trim());
+                            it.remove();
+                        }
+                    }
+                } else {
+                    System.err.println("❌ DeepSeek batch reply was not JSON, describing one by one");
                 }
+            } catch (Exception e) {
+                System.err.println("DeepSeek batch error: " + e.getMessage());
             }
+        }
 
-            return "Detected: " + tagsStr + ". Manual assessment recommended.";
+        // Anything the batch did not cover gets its own request
+        for (DescriptionRequest r : pending) {
+            descriptions.put(r.key(), generateDescription(r.detections(), r.isSpike(), r.score(), deadline));
+        }
+        return descriptions;
+    }
 
-        } catch (Exception e) {
-            System.err.println("DeepSeek error: " + e.getMessage());
-            String tagsStr = detections.stream().map(HazardTag::label).reduce((a, b) -> a + ", " + b).orElse("none");
-            return "Detected: " + tagsStr + ". Score: " + score + (isSpike ? " (SPIKE ALERT)" : "");
+    // Completion text from DeepSeek, or null if the reply had none
+    private String completeWithDeepSeek(String prompt, int maxTokens, long deadline) throws Exception {
+        Map<String, Object> body = Map.of(
+                "model",
+                "deepseek-ai/DeepSeek-V3",
+                "prompt",
+                prompt,
+                "max_tokens",
+                maxTokens,
+                "temperature",
+                0.7);
+
+        ExternalCallEvent event = ExternalCallEvent.start("deepseek");
+        event.requestBytes = prompt.length();
+        String response = block(webClient()
+                .post()
+                .uri(deepSeekUrl)
+                .header("Content-Type", "application/json")
+                .header("Authorization", "Bearer " + deepSeekToken)
+                .bodyValue(body)
+                .retrieve()
+                .bodyToMono(String.class), deadline, event);
+
+        if (response == null) {
+            System.err.println("❌ No response from DeepSeek");
+            return null;
         }
+
+        System.out.println("📥 DeepSeek response received");
+
+        JsonNode root = objectMapper.readTree(response);
+
+        if (root.has("choices") && root.get("choices").size() > 0) {
+            JsonNode choice = root.get("choices").get(0);
+            if (choice.has("text")) {
+                return choice.get("text").asText().trim();
+            }
+        }
+        return null;
     }
 
     public Coordinates getCameraCoordinates(String locationId) {
-        CameraInfo camera = cameraCache.get(locationId.toLowerCase());
+        CameraRegistry.CameraInfo camera = cameraRegistry.find(locationId);
         if (camera != null) {
             return Coordinates.builder().lat(camera.lat()).lng(camera.lon()).build();
         }
@@ -589,6 +787,11 @@ public class ExternalApiService {
     }
 
     public void saveHazardRecord(HazardResponse hazard) {
+        saveHazardRecord(hazard, 0);
+    }
+
+    /** Upserts the location's row; a failure, including a missed {@code deadline}, is logged and skipped. */
+    public void saveHazardRecord(HazardResponse hazard, long deadline) {
         try {
             Map<String, Object> payload = new LinkedHashMap<>();
             payload.put("location_id", hazard.getLocationString());
@@ -599,7 +802,7 @@ public class ExternalApiService {
             System.out.println(
                     "💾 Syncing: " + hazard.getLocationString() + " with score: " + hazard.getScore());
 
-            String response = webClient
+            String response = block(webClient()
                     .post()
                     .uri(supabaseUrl + "/hazards?on_conflict=location_id")
                     .header("apikey", supabaseKey)
@@ -616,14 +819,15 @@ public class ExternalApiService {
                                             errorBody -> Mono.error(
                                                     new RuntimeException(
                                                             "Supabase rejected data: " + errorBody))))
-                    .bodyToMono(String.class)
-                    .block();
+                    .bodyToMono(String.class),
+                    deadline, ExternalCallEvent.start("supabase_write", hazard.getLocationString()));
 
             if (response != null) {
                 JsonNode responseJson = objectMapper.readTree(response);
                 if (responseJson.isArray() && !responseJson.isEmpty()) {
                     String dbUuid = responseJson.get(0).get("id").asText();
-                    hazard.setId(dbUuid);
+                    // The frame keeps its own id; the row is upserted per location
+                    hazard.setDbId(dbUuid);
                     System.out.println("✅ DB Synced! UUID: " + dbUuid + ", Score: " + hazard.getScore());
                 }
             }
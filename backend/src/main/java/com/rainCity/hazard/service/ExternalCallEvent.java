@@ -0,0 +1,79 @@
+package com.rainCity.hazard.service;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event for one remote call made by {@link ExternalApiService}: camera page and image,
+ * Gradio submit, poll and wait, labeled image download, DeepSeek and Supabase. Disabled unless
+ * a recording turns it on ({@code jfr/raincity.jfc}).
+ */
+@Name("rainCity.ExternalCall")
+@Label("External Call")
+@Category({"RainCity", "External"})
+@Description("One call to a camera page, the model Space, DeepSeek or Supabase")
+@Enabled(false)
+@StackTrace(false)
+public class ExternalCallEvent extends Event {
+
+  @Label("Call")
+  String call;
+
+  @Label("Location")
+  String location;
+
+  @Label("Request Bytes")
+  @DataAmount
+  long requestBytes;
+
+  @Label("Response Bytes")
+  @DataAmount
+  long responseBytes;
+
+  @Label("Attempts")
+  int attempts = 1;
+
+  @Label("Outcome")
+  @Description("ok, empty, not_ready, expired or error")
+  String outcome = "ok";
+
+  /** Starts a call on behalf of the pipeline step running on this thread. */
+  static ExternalCallEvent start(String call) {
+    return start(call, PipelineStageEvent.currentLocation());
+  }
+
+  static ExternalCallEvent start(String call, String location) {
+    ExternalCallEvent event = new ExternalCallEvent();
+    event.call = call;
+    event.location = location;
+    event.begin();
+    return event;
+  }
+
+  void fail(Throwable e) {
+    outcome = e instanceof DeadlineExceededException ? "expired" : "error";
+  }
+
+  void finish() {
+    end();
+    if (shouldCommit())
+      commit();
+  }
+
+  /** Records the size of a String or byte[] reply ({@code empty} if null) and ends the call. */
+  void finish(Object response) {
+    if (response instanceof byte[] bytes)
+      responseBytes = bytes.length;
+    else if (response instanceof String text)
+      responseBytes = text.length();
+    else if (response == null && "ok".equals(outcome))
+      outcome = "empty";
+    finish();
+  }
+}
@@ -0,0 +1,149 @@
+package com.rainCity.hazard.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rainCity.hazard.model.HazardModels.HazardResponse;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Service;
+import org.springframework.util.MimeTypeUtils;
+
+/**
+ * Sends hazard responses to STOMP clients. Each response is serialized to JSON bytes once; the
+ * broker hands the same payload to every subscriber instead of converting per destination.
+ * The value itself travels alongside in {@link #SOURCE_HEADER}, so sessions that negotiated a
+ * binary encoding get it without parsing the JSON back.
+ */
+@Service
+public class FanoutService {
+
+  public static final String ALERTS_TOPIC = "/topic/traffic-alerts";
+  public static final String USER_ALERTS_QUEUE = "/queue/traffic-alerts";
+  /** Late LLM descriptions for alerts already sent, keyed by the alert's id. */
+  public static final String ALERT_UPDATES_TOPIC = "/topic/traffic-alert-updates";
+  /** Native header carrying the alert's location, used to conflate messages for slow clients. */
+  public static final String LOCATION_HEADER = "location";
+  /** In-process header holding the {@link Source} of a payload; never written to the wire. */
+  public static final String SOURCE_HEADER = "hazardSource";
+
+  private final SimpMessagingTemplate messagingTemplate;
+  private final ObjectMapper objectMapper = new ObjectMapper();
+
+  private final AtomicLong broadcasts = new AtomicLong();
+  private final AtomicLong bytesSerialized = new AtomicLong();
+
+  public FanoutService(SimpMessagingTemplate messagingTemplate) {
+    this.messagingTemplate = messagingTemplate;
+  }
+
+  /** Description pushed after the alert itself; clients patch the alert with the same id. */
+  public record AlertUpdate(String id, String location, String description) {
+  }
+
+  /**
+   * The value a message was serialized from. The broker copies headers onto each subscriber's
+   * message, so every copy shares one instance and another encoding, or a subscription filter's
+   * verdict, is computed at most once.
+   */
+  public static final class Source {
+    private final Object value;
+    private volatile byte[] encoded;
+    private Map<Object, Boolean> verdicts;
+
+    Source(Object value) {
+      this.value = value;
+    }
+
+    public Object value() {
+      return value;
+    }
+
+    /** The value encoded by {@code encoder}, computed on first use; callers use one encoder. */
+    public byte[] encoded(Function<Object, byte[]> encoder) {
+      byte[] bytes = encoded;
+      if (bytes == null) {
+        synchronized (this) {
+          bytes = encoded;
+          if (bytes == null)
+            encoded = bytes = encoder.apply(value);
+        }
+      }
+      return bytes;
+    }
+
+    /** {@code filter} applied to the value, evaluated once per distinct {@code key}. */
+    public synchronized boolean matches(Object key, Predicate<Object> filter) {
+      if (verdicts == null)
+        verdicts = new HashMap<>(4);
+      return verdicts.computeIfAbsent(key, k -> filter.test(value));
+    }
+  }
+
+  public void broadcast(HazardResponse response) {
+    Message<byte[]> message = toMessage(response, response.getLocationString(), null);
+    if (message == null)
+      return;
+    messagingTemplate.send(ALERTS_TOPIC, message);
+    broadcasts.incrementAndGet();
+  }
+
+  /** Sends to one session's user queue; clients connect without a Principal, so by session id. */
+  public void sendToSession(String sessionId, HazardResponse response) {
+    Message<byte[]> message = toMessage(response, response.getLocationString(), sessionId);
+    if (message == null)
+      return;
+    messagingTemplate.send("/user/" + sessionId + USER_ALERTS_QUEUE, message);
+  }
+
+  public void broadcastUpdate(HazardResponse response) {
+    AlertUpdate update =
+        new AlertUpdate(response.getId(), response.getLocationString(), response.getDescription());
+    Message<byte[]> message = toMessage(update, null, null);
+    if (message != null)
+      messagingTemplate.send(ALERT_UPDATES_TOPIC, message);
+  }
+
+  /** Sends any other payload (e.g. correlated incidents) to a topic, serialized the same way. */
+  public void publish(String destination, Object payload) {
+    Message<byte[]> message = toMessage(payload, null, null);
+    if (message != null)
+      messagingTemplate.send(destination, message);
+  }
+
+  public long broadcastCount() {
+    return broadcasts.get();
+  }
+
+  public long bytesSerialized() {
+    return bytesSerialized.get();
+  }
+
+  private Message<byte[]> toMessage(Object value, String location, String sessionId) {
+    byte[] payload;
+    try {
+      payload = objectMapper.writeValueAsBytes(value);
+    } catch (JsonProcessingException e) {
+      System.err.println("Error serializing message for " + location + ": " + e.getMessage());
+      return null;
+    }
+    bytesSerialized.addAndGet(payload.length);
+
+    SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+    accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+    accessor.setHeader(SOURCE_HEADER, new Source(value));
+    if (location != null)
+      accessor.setNativeHeader(LOCATION_HEADER, location);
+    if (sessionId != null)
+      accessor.setSessionId(sessionId);
+    accessor.setLeaveMutable(true);
+    return MessageBuilder.createMessage(payload, accessor.getMessageHeaders());
+  }
+}
@@ -0,0 +1,427 @@
+package com.rainCity.hazard.service;
+
+import com.rainCity.hazard.model.HazardModels.HazardResponse;
+import jakarta.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Runs {@link ProcessingService} as five stages (fetch, detect, describe, persist, broadcast),
+ * each on its own worker pool with a bounded queue. Between stages a full queue blocks the
+ * upstream worker, so camera fetches for the next locations run ahead of inference only as far as
+ * the detect queue allows. Submission itself never blocks the scheduler: when the fetch queue is
+ * full, the remaining locations are deferred to the next tick and go first then.
+ *
+ * <p>LLM descriptions run in a sixth, off-path enrich stage after the alert has been broadcast.
+ * That stage drops work instead of blocking when full, so a slow LLM never holds up alerts. In
+ * batch mode, items wait up to {@code batch.linger-ms} so a tick's worth of locations share one
+ * DeepSeek call.
+ *
+ * <p>Each location gets a deadline of one refresh interval from submission. Fetch, detect,
+ * describe and persist check it before starting and the model call is bounded by what remains;
+ * an item that runs out is dropped and counted as expired in the stage where it ran out, so
+ * workers move on to the next tick's frames instead of finishing stale ones.
+ */
+@Service
+public class HazardPipeline {
+
+  private final ProcessingService processingService;
+  private final CameraHealth cameraHealth;
+
+  private final Stage fetchStage;
+  private final Stage detectStage;
+  private final Stage describeStage;
+  private final Stage persistStage;
+  private final Stage broadcastStage;
+  private final Stage enrichStage;
+
+  // Locations that are somewhere in the pipeline; a new tick does not resubmit them
+  private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+  // Locations turned away by a full fetch queue; the next tick submits them first
+  private final Set<String> deferred = ConcurrentHashMap.newKeySet();
+
+  @Value("${hazard.enrichment.batch.enabled:true}")
+  private boolean batchEnabled;
+
+  @Value("${hazard.enrichment.batch.linger-ms:2000}")
+  private long batchLingerMillis;
+
+  @Value("${hazard.enrichment.batch.max-size:16}")
+  private int batchMaxSize;
+
+  // Items waiting for the next batched description call
+  private final Queue<Enrichment> pendingEnrichment = new ConcurrentLinkedQueue<>();
+  private final AtomicBoolean flushScheduled = new AtomicBoolean();
+  private final ScheduledExecutorService batchTimer = Executors.newSingleThreadScheduledExecutor(r -> {
+    Thread t = new Thread(r, "hazard-enrich-batch");
+    t.setDaemon(true);
+    return t;
+  });
+
+  private record Enrichment(PipelineItem item, Consumer<HazardResponse> updates) {
+  }
+
+  public HazardPipeline(
+      ProcessingService processingService,
+      CameraHealth cameraHealth,
+      @Value("${hazard.pipeline.fetch-threads:4}") int fetchThreads,
+      @Value("${hazard.pipeline.detect-threads:2}") int detectThreads,
+      @Value("${hazard.pipeline.describe-threads:2}") int describeThreads,
+      @Value("${hazard.pipeline.persist-threads:2}") int persistThreads,
+      @Value("${hazard.pipeline.enrich-threads:2}") int enrichThreads,
+      @Value("${hazard.pipeline.queue-capacity:16}") int queueCapacity,
+      @Value("${hazard.pipeline.fetch-queue-capacity:128}") int fetchQueueCapacity) {
+    this.processingService = processingService;
+    this.cameraHealth = cameraHealth;
+    this.fetchStage = new Stage("fetch", fetchThreads, fetchQueueCapacity, Overflow.DEFER);
+    this.detectStage = new Stage("detect", detectThreads, queueCapacity, Overflow.BLOCK);
+    this.describeStage = new Stage("describe", describeThreads, queueCapacity, Overflow.BLOCK);
+    this.persistStage = new Stage("persist", persistThreads, queueCapacity, Overflow.BLOCK);
+    this.broadcastStage = new Stage("broadcast", 1, queueCapacity, Overflow.BLOCK);
+    this.enrichStage = new Stage("enrich", enrichThreads, queueCapacity, Overflow.DROP);
+  }
+
+  /**
+   * Queues every location that is not already in flight or quarantined by {@link CameraHealth}.
+   * Never blocks: once the fetch queue is full, the rest are deferred and lead the next call.
+   * {@code sink} receives each response as soon as it is scored; {@code updates} receives the same
+   * response again once its LLM description is ready.
+   *
+   * @return number of locations accepted
+   */
+  public int submitAll(
+      Collection<String> locations,
+      Consumer<HazardResponse> sink,
+      Consumer<HazardResponse> updates) {
+    // Last tick's deferred locations first, so a full queue does not starve the tail of the list
+    Set<String> ordered = new LinkedHashSet<>();
+    for (String loc : locations) {
+      if (deferred.contains(loc))
+        ordered.add(loc);
+    }
+    ordered.addAll(locations);
+    deferred.retainAll(ordered);
+
+    int accepted = 0;
+    for (String loc : ordered) {
+      if (submit(loc, sink, updates))
+        accepted++;
+    }
+    return accepted;
+  }
+
+  /** @return false when the location is skipped, in flight, or deferred by a full fetch queue */
+  public boolean submit(
+      String locationStr, Consumer<HazardResponse> sink, Consumer<HazardResponse> updates) {
+    if (cameraHealth.isQuarantined(locationStr) || !inFlight.add(locationStr))
+      return false;
+
+    try {
+      long deadline = processingService.newDeadline();
+      boolean queued = fetchStage.execute(locationStr, () -> {
+        PipelineItem item = processingService.fetch(locationStr, deadline);
+        if (item == null) {
+          inFlight.remove(locationStr);
+          return;
+        }
+        detectStage.execute(locationStr, () -> {
+          processingService.detect(item);
+          describeStage.execute(locationStr, () -> {
+            processingService.describe(item);
+            persistStage.execute(locationStr, () -> {
+              processingService.persist(item);
+              broadcastStage.execute(locationStr, () -> {
+                try {
+                  sink.accept(item.getResponse());
+                } finally {
+                  inFlight.remove(locationStr);
+                }
+                if (item.isEnrich())
+                  enqueueEnrichment(new Enrichment(item, updates));
+              });
+            });
+          });
+        });
+      });
+      if (!queued) {
+        inFlight.remove(locationStr);
+        deferred.add(locationStr);
+        return false;
+      }
+      deferred.remove(locationStr);
+      return true;
+    } catch (RejectedExecutionException e) {
+      inFlight.remove(locationStr);
+      System.err.println("Pipeline rejected " + locationStr + ": " + e.getMessage());
+      return false;
+    }
+  }
+
+  /**
+   * Marks a location as in flight for a caller that processes it outside the stages, so a tick
+   * does not fetch it again meanwhile. Pair with {@link #release}.
+   *
+   * @return false when the location is already in flight
+   */
+  public boolean claim(String locationStr) {
+    return inFlight.add(locationStr);
+  }
+
+  public void release(String locationStr) {
+    inFlight.remove(locationStr);
+  }
+
+  /**
+   * Queues an already broadcast item for the (batched) LLM description; {@code updates} receives
+   * the described response.
+   */
+  public void enrichLater(PipelineItem item, Consumer<HazardResponse> updates) {
+    enqueueEnrichment(new Enrichment(item, updates));
+  }
+
+  private void enqueueEnrichment(Enrichment enrichment) {
+    if (!batchEnabled) {
+      enrichStage.execute(enrichment.item().getLocationString(), () -> enrich(List.of(enrichment)));
+      return;
+    }
+
+    pendingEnrichment.add(enrichment);
+    if (pendingEnrichment.size() >= batchMaxSize)
+      flushEnrichment();
+    else if (flushScheduled.compareAndSet(false, true))
+      batchTimer.schedule(this::flushEnrichment, batchLingerMillis, TimeUnit.MILLISECONDS);
+  }
+
+  private void flushEnrichment() {
+    flushScheduled.set(false);
+    List<Enrichment> batch = new ArrayList<>();
+    Enrichment next;
+    while (batch.size() < batchMaxSize && (next = pendingEnrichment.poll()) != null)
+      batch.add(next);
+    if (batch.isEmpty())
+      return;
+
+    enrichStage.execute("description batch", () -> enrich(batch));
+    if (!pendingEnrichment.isEmpty() && flushScheduled.compareAndSet(false, true))
+      batchTimer.schedule(this::flushEnrichment, batchLingerMillis, TimeUnit.MILLISECONDS);
+  }
+
+  private void enrich(List<Enrichment> batch) {
+    Map<PipelineItem, Consumer<HazardResponse>> sinks = new LinkedHashMap<>();
+    for (Enrichment e : batch)
+      sinks.put(e.item(), e.updates());
+    for (PipelineItem item : processingService.enrichAll(new ArrayList<>(sinks.keySet())))
+      sinks.get(item).accept(item.getResponse());
+  }
+
+  public int inFlightCount() {
+    return inFlight.size();
+  }
+
+  /** Locations currently waiting for room in the fetch queue. */
+  public int deferredCount() {
+    return deferred.size();
+  }
+
+  /** Items dropped across all stages because their deadline passed. */
+  public long expiredCount() {
+    long total = 0;
+    for (StageStats s : stageStats())
+      total += s.expired();
+    return total;
+  }
+
+  public List<StageStats> stageStats() {
+    return List.of(
+        fetchStage.stats(),
+        detectStage.stats(),
+        describeStage.stats(),
+        persistStage.stats(),
+        broadcastStage.stats(),
+        enrichStage.stats());
+  }
+
+  public Map<String, Integer> queueDepths() {
+    Map<String, Integer> depths = new LinkedHashMap<>();
+    for (StageStats s : stageStats())
+      depths.put(s.name(), s.queued());
+    return depths;
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    batchTimer.shutdownNow();
+    for (Stage stage :
+        List.of(fetchStage, detectStage, describeStage, persistStage, broadcastStage, enrichStage))
+      stage.shutdown();
+  }
+
+  public record StageStats(
+      String name,
+      int threads,
+      int active,
+      int queued,
+      int capacity,
+      int maxQueued,
+      long completed,
+      long failed,
+      long dropped,
+      long deferred,
+      long expired,
+      double avgMillis) {
+  }
+
+  // What a stage does with work that finds its queue full
+  private enum Overflow {
+    // Wait for room: backpressure between worker stages
+    BLOCK,
+    // Refuse it and let the caller retry later: the fetch stage, fed by the scheduler thread
+    DEFER,
+    // Discard it: off-path work that is not worth waiting for
+    DROP
+  }
+
+  /**
+   * One worker pool with a bounded queue; {@link #execute} blocks, refuses or drops work that
+   * finds it full, depending on the stage's {@link Overflow}.
+   */
+  private final class Stage {
+    private final String name;
+    private final int capacity;
+    private final Overflow overflow;
+    private final ThreadPoolExecutor executor;
+    private final AtomicInteger maxQueued = new AtomicInteger();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong deferred = new AtomicLong();
+    private final AtomicLong expired = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+
+    Stage(String name, int threads, int capacity, Overflow overflow) {
+      this.name = name;
+      this.capacity = capacity;
+      this.overflow = overflow;
+      AtomicInteger counter = new AtomicInteger();
+      this.executor = new ThreadPoolExecutor(
+          threads,
+          threads,
+          0L,
+          TimeUnit.MILLISECONDS,
+          new ArrayBlockingQueue<>(capacity),
+          r -> {
+            Thread t = new Thread(r, "hazard-" + name + "-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+          },
+          (r, pool) -> {
+            if (pool.isShutdown())
+              throw new RejectedExecutionException(name + " stage is shut down");
+            switch (overflow) {
+              case DROP -> {
+                dropped.incrementAndGet();
+                return;
+              }
+              case DEFER -> {
+                deferred.incrementAndGet();
+                throw new DeferredException();
+              }
+              default -> {
+              }
+            }
+            // Backpressure: wait for room instead of dropping or running on the caller
+            try {
+              pool.getQueue().put(r);
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+              throw new RejectedExecutionException(name + " stage interrupted", e);
+            }
+          });
+    }
+
+    /** @return false if a {@link Overflow#DEFER} stage was full and refused the work */
+    boolean execute(String locationStr, Runnable work) {
+      try {
+        run(locationStr, work);
+      } catch (DeferredException e) {
+        return false;
+      }
+      maxQueued.accumulateAndGet(executor.getQueue().size(), Math::max);
+      return true;
+    }
+
+    private void run(String locationStr, Runnable work) {
+      executor.execute(() -> {
+        long start = System.nanoTime();
+        try {
+          work.run();
+          completed.incrementAndGet();
+        } catch (DeadlineExceededException e) {
+          expired.incrementAndGet();
+          inFlight.remove(locationStr);
+          System.out.println("⌛ Dropped stale work in " + name + " stage: " + e.getMessage());
+        } catch (Exception e) {
+          failed.incrementAndGet();
+          inFlight.remove(locationStr);
+          System.err.println(
+              "Error in " + name + " stage for location " + locationStr + ": " + e.getMessage());
+        } finally {
+          totalNanos.addAndGet(System.nanoTime() - start);
+        }
+      });
+    }
+
+    StageStats stats() {
+      long done = completed.get() + failed.get() + expired.get();
+      return new StageStats(
+          name,
+          executor.getMaximumPoolSize(),
+          executor.getActiveCount(),
+          executor.getQueue().size(),
+          capacity,
+          maxQueued.get(),
+          completed.get(),
+          failed.get(),
+          dropped.get(),
+          deferred.get(),
+          expired.get(),
+          done > 0 ? totalNanos.get() / 1_000_000.0 / done : 0.0);
+    }
+
+    void shutdown() {
+      executor.shutdownNow();
+    }
+  }
+
+  // Thrown by a full DEFER stage's rejection handler; never escapes Stage.execute
+  private static final class DeferredException extends RejectedExecutionException {
+    DeferredException() {
+      super("queue full");
+    }
+
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+      return this;
+    }
+  }
+}
@@ -0,0 +1,226 @@
+package com.rainCity.hazard.service;
+
+import com.rainCity.hazard.model.HazardModels.HazardResponse;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * City-wide hazard overview on a fixed grid over the camera coordinates in the registry. Each
+ * cell keeps the latest score and spike flag of its cameras; a new response only recomputes its
+ * own cell, and the grid's version moves only when a cell's maximum, spike count or reporting
+ * count actually changes. {@link #snapshot()} is built at most once per version and shared, so
+ * an overview map polls one small payload instead of subscribing to every location.
+ *
+ * <p>Cells are {@code cell-meters} square, anchored at the south-west corner of the cameras'
+ * bounding box; only cells containing a camera are listed. Locations that are not cameras have
+ * no coordinates in the registry and are left out.
+ *
+ * <p>Nothing is built at startup: the grid is laid out and seeded from the restored latest state
+ * on the first {@link #snapshot()} or {@link #update}, so a deferred camera registry stays
+ * unloaded until something needs it.
+ */
+@Service
+public class HeatmapGrid {
+
+  private static final double METERS_PER_DEGREE_LAT = 111_320;
+
+  private final CameraRegistry cameraRegistry;
+  private final LatestStateStore latestState;
+
+  @Value("${hazard.heatmap.cell-meters:1000}")
+  private double cellMeters = 1000;
+
+  private Layout layout;
+  private final Map<String, Reading> readings = new HashMap<>();
+  private final Map<Integer, Aggregate> aggregates = new HashMap<>();
+  private long version;
+  private Heatmap cached;
+
+  /** One cell with at least one camera; {@code lat}/{@code lng} is the cell's centre. */
+  public record Cell(
+      int row,
+      int col,
+      double lat,
+      double lng,
+      int cameras,
+      int reporting,
+      double maxScore,
+      String maxLocation,
+      int spikes) {
+  }
+
+  public record Heatmap(
+      long version,
+      double cellMeters,
+      double originLat,
+      double originLng,
+      double latStep,
+      double lngStep,
+      int rows,
+      int cols,
+      List<Cell> cells) {
+  }
+
+  private record Reading(double score, boolean spike) {
+  }
+
+  // Grid geometry for one registry version; cell index is row * cols + col
+  private record Layout(
+      long registryVersion,
+      double originLat,
+      double originLng,
+      double latStep,
+      double lngStep,
+      int rows,
+      int cols,
+      Map<String, Integer> cellOf,
+      Map<Integer, List<String>> members) {
+  }
+
+  // Aggregate of one cell, recomputed from its members' readings
+  private record Aggregate(int reporting, double maxScore, String maxLocation, int spikes) {
+    static final Aggregate EMPTY = new Aggregate(0, 0, null, 0);
+  }
+
+  public HeatmapGrid(CameraRegistry cameraRegistry, LatestStateStore latestState) {
+    this.cameraRegistry = cameraRegistry;
+    this.latestState = latestState;
+  }
+
+  /** Folds a new response into its cell. */
+  public synchronized void update(HazardResponse response) {
+    if (response == null || response.getLocationString() == null)
+      return;
+    refreshLayout();
+    apply(response);
+  }
+
+  // Builds the grid on first use, seeded from the restored latest state so the overview is
+  // populated before every camera has reported again; later calls only follow registry reloads
+  private void refreshLayout() {
+    boolean first = layout == null;
+    layoutFromRegistry();
+    if (first) {
+      for (HazardResponse response : latestState.peekAll(new ArrayList<>(layout.cellOf().keySet())))
+        apply(response);
+    }
+  }
+
+  private void apply(HazardResponse response) {
+    String location = cameraRegistry.canonicalize(response.getLocationString());
+    Integer cell = layout.cellOf().get(location);
+    if (cell == null)
+      return;
+    Reading reading = new Reading(response.getScore(), response.isSpike());
+    if (reading.equals(readings.put(location, reading)))
+      return;
+    recompute(cell);
+  }
+
+  private void recompute(int cell) {
+    int reporting = 0;
+    int spikes = 0;
+    double max = 0;
+    String maxLocation = null;
+    for (String location : layout.members().get(cell)) {
+      Reading r = readings.get(location);
+      if (r == null)
+        continue;
+      reporting++;
+      if (r.spike())
+        spikes++;
+      if (maxLocation == null || r.score() > max) {
+        max = r.score();
+        maxLocation = location;
+      }
+    }
+    Aggregate next = new Aggregate(reporting, max, maxLocation, spikes);
+    if (!next.equals(aggregates.getOrDefault(cell, Aggregate.EMPTY))) {
+      aggregates.put(cell, next);
+      version++;
+    }
+  }
+
+  // Rebuilds the geometry when the registry has been reloaded, keeping readings of cameras that remain
+  private void layoutFromRegistry() {
+    CameraRegistry.Snapshot snapshot = cameraRegistry.snapshot();
+    if (layout != null && layout.registryVersion() == snapshot.version())
+      return;
+
+    double minLat = Double.MAX_VALUE;
+    double minLng = Double.MAX_VALUE;
+    double maxLat = -Double.MAX_VALUE;
+    double maxLng = -Double.MAX_VALUE;
+    for (CameraRegistry.CameraInfo c : snapshot.cameras()) {
+      minLat = Math.min(minLat, c.lat());
+      minLng = Math.min(minLng, c.lon());
+      maxLat = Math.max(maxLat, c.lat());
+      maxLng = Math.max(maxLng, c.lon());
+    }
+    if (snapshot.cameras().isEmpty()) {
+      minLat = minLng = maxLat = maxLng = 0;
+    }
+
+    // Square cells in metres: a degree of longitude shrinks with the cosine of the latitude
+    double latStep = cellMeters / METERS_PER_DEGREE_LAT;
+    double lngStep = cellMeters / (METERS_PER_DEGREE_LAT * Math.cos(Math.toRadians((minLat + maxLat) / 2)));
+    int rows = (int) Math.floor((maxLat - minLat) / latStep) + 1;
+    int cols = (int) Math.floor((maxLng - minLng) / lngStep) + 1;
+
+    Map<String, Integer> cellOf = new HashMap<>();
+    Map<Integer, List<String>> members = new HashMap<>();
+    for (CameraRegistry.CameraInfo c : snapshot.cameras()) {
+      int row = (int) Math.floor((c.lat() - minLat) / latStep);
+      int col = (int) Math.floor((c.lon() - minLng) / lngStep);
+      int cell = row * cols + col;
+      cellOf.put(c.name(), cell);
+      members.computeIfAbsent(cell, k -> new ArrayList<>()).add(c.name());
+    }
+
+    layout = new Layout(snapshot.version(), minLat, minLng, latStep, lngStep, rows, cols, cellOf, members);
+    readings.keySet().retainAll(cellOf.keySet());
+    aggregates.clear();
+    for (Integer cell : members.keySet())
+      recompute(cell);
+    version++;
+  }
+
+  public synchronized long version() {
+    return version;
+  }
+
+  /** The grid at its current version; the same instance until something changes. */
+  public synchronized Heatmap snapshot() {
+    refreshLayout();
+    if (cached != null && cached.version() == version)
+      return cached;
+
+    Layout l = layout;
+    List<Cell> cells = new ArrayList<>(l.members().size());
+    for (Map.Entry<Integer, List<String>> e : l.members().entrySet()) {
+      int row = e.getKey() / l.cols();
+      int col = e.getKey() % l.cols();
+      Aggregate a = aggregates.getOrDefault(e.getKey(), Aggregate.EMPTY);
+      cells.add(new Cell(
+          row,
+          col,
+          l.originLat() + (row + 0.5) * l.latStep(),
+          l.originLng() + (col + 0.5) * l.lngStep(),
+          e.getValue().size(),
+          a.reporting(),
+          a.maxScore(),
+          a.maxLocation(),
+          a.spikes()));
+    }
+    cells.sort(Comparator.comparingInt(Cell::row).thenComparingInt(Cell::col));
+    cached = new Heatmap(
+        version, cellMeters, l.originLat(), l.originLng(), l.latStep(), l.lngStep(), l.rows(), l.cols(),
+        List.copyOf(cells));
+    return cached;
+  }
+}
@@ -0,0 +1,109 @@
+package com.rainCity.hazard.service;
+
+import java.net.URI;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Token bucket per upstream host, so camera fetches stay within a polite request rate however
+ * many locations are monitored. {@link #acquire} reserves a token and sleeps until it is due;
+ * callers on the fetch stage simply slow down, which backs up the pipeline like any other full
+ * stage. A caller with a deadline is refused up front, without taking a token, when the wait
+ * would run past it. Hosts not listed in {@code hazard.camera-fetch.rate-limited-hosts} are not
+ * limited.
+ */
+@Component
+public class HostRateLimiter {
+
+  @Value("${hazard.camera-fetch.rate-limited-hosts:trafficcams.vancouver.ca}")
+  private List<String> limitedHosts;
+
+  @Value("${hazard.camera-fetch.requests-per-second:4}")
+  private double requestsPerSecond;
+
+  @Value("${hazard.camera-fetch.burst:8}")
+  private int burst;
+
+  private final Map<String, Bucket> buckets = new ConcurrentHashMap<>();
+
+  public record HostStats(String host, long requests, long throttled, long refused, long waitedMillis) {
+  }
+
+  private final class Bucket {
+    final String host;
+    double tokens = burst;
+    long lastRefill = System.nanoTime();
+    final AtomicLong requests = new AtomicLong();
+    final AtomicLong throttled = new AtomicLong();
+    final AtomicLong refused = new AtomicLong();
+    final AtomicLong waitedNanos = new AtomicLong();
+
+    Bucket(String host) {
+      this.host = host;
+    }
+
+    /**
+     * Takes a token, possibly going into debt, unless waiting for it would take longer than
+     * {@code maxWaitNanos}.
+     *
+     * @return how long the caller must wait for the token, or -1 if none was taken
+     */
+    synchronized long reserve(long maxWaitNanos) {
+      long now = System.nanoTime();
+      tokens = Math.min(burst, tokens + (now - lastRefill) / 1e9 * requestsPerSecond);
+      lastRefill = now;
+      long wait = tokens >= 1 ? 0 : (long) ((1 - tokens) / requestsPerSecond * 1e9);
+      if (wait > maxWaitNanos)
+        return -1;
+      tokens -= 1;
+      return wait;
+    }
+  }
+
+  /** Blocks until a request to {@code url}'s host is allowed. */
+  public void acquire(String url) throws InterruptedException {
+    acquire(url, 0);
+  }
+
+  /**
+   * Blocks until a request to {@code url}'s host is allowed.
+   *
+   * @param deadline epoch millis the request must start by, or 0 for none
+   * @throws DeadlineExceededException without waiting or taking a token, if the request could
+   *     not start before {@code deadline}
+   */
+  public void acquire(String url, long deadline) throws InterruptedException {
+    String host = URI.create(url).getHost();
+    if (host == null || !limitedHosts.contains(host.toLowerCase()))
+      return;
+
+    Bucket bucket = buckets.computeIfAbsent(host.toLowerCase(), Bucket::new);
+    bucket.requests.incrementAndGet();
+    long maxWaitNanos = deadline > 0 ? (deadline - System.currentTimeMillis()) * 1_000_000 : Long.MAX_VALUE;
+    long waitNanos = maxWaitNanos >= 0 ? bucket.reserve(maxWaitNanos) : -1;
+    if (waitNanos < 0) {
+      bucket.refused.incrementAndGet();
+      throw new DeadlineExceededException(
+          "rate limit for " + host + " would delay the request past its deadline");
+    }
+    if (waitNanos > 0) {
+      bucket.throttled.incrementAndGet();
+      bucket.waitedNanos.addAndGet(waitNanos);
+      Thread.sleep(waitNanos / 1_000_000, (int) (waitNanos % 1_000_000));
+    }
+  }
+
+  public Map<String, HostStats> stats() {
+    Map<String, HostStats> stats = new LinkedHashMap<>();
+    for (Bucket b : buckets.values()) {
+      stats.put(b.host, new HostStats(
+          b.host, b.requests.get(), b.throttled.get(), b.refused.get(), b.waitedNanos.get() / 1_000_000));
+    }
+    return stats;
+  }
+}
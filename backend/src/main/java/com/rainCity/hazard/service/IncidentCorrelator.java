@@ -0,0 +1,387 @@
+package com.rainCity.hazard.service;
+
+import com.rainCity.hazard.model.HazardModels.HazardResponse;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Groups spikes from neighbouring cameras into incidents.
+ *
+ * <p>Neighbour lists are built once per camera registry version using a grid, not by comparing
+ * every pair: cameras within {@code radius-m} of each other, or within {@code area-radius-m} when
+ * they share a {@code geo_local_area}. Each result then only touches the
+ * camera's neighbours: a new spike joins or merges the clusters of spiking neighbours, and a
+ * camera that stops spiking only re-checks connectivity inside its own cluster. Clusters with
+ * at least {@code min-cameras} cameras are published on {@code /topic/incidents}.
+ *
+ * <p>A registry reload removes cameras that no longer exist from their clusters, and every
+ * cluster is re-checked against the new neighbour lists, splitting or resolving as needed.
+ */
+@Service
+public class IncidentCorrelator {
+
+  public static final String INCIDENTS_TOPIC = "/topic/incidents";
+
+  private static final double EARTH_RADIUS_M = 6_371_000;
+
+  private final CameraRegistry cameraRegistry;
+  private final FanoutService fanoutService;
+
+  @Value("${hazard.correlation.enabled:true}")
+  private boolean enabled;
+
+  @Value("${hazard.correlation.radius-m:800}")
+  private double radiusMeters;
+
+  @Value("${hazard.correlation.area-radius-m:1500}")
+  private double areaRadiusMeters;
+
+  @Value("${hazard.correlation.window-ms:60000}")
+  private long windowMillis;
+
+  @Value("${hazard.correlation.min-cameras:2}")
+  private int minCameras;
+
+  private long neighborsVersion = -1;
+  private Map<String, List<String>> neighbors = Map.of();
+  private Map<String, CameraRegistry.CameraInfo> camerasById = Map.of();
+
+  // Spiking cameras by map id, and the clusters they belong to
+  private final Map<String, ActiveCamera> active = new HashMap<>();
+  private final Map<String, Cluster> clusters = new HashMap<>();
+
+  public enum Status {
+    ACTIVE, RESOLVED
+  }
+
+  /** Published incident state; {@code id} stays stable while the cluster grows or shrinks. */
+  public record Incident(
+      String id,
+      Status status,
+      List<String> cameras,
+      List<String> locations,
+      Set<String> areas,
+      double lat,
+      double lng,
+      double maxScore,
+      long firstSeen,
+      long updatedAt) {
+  }
+
+  private static final class ActiveCamera {
+    CameraRegistry.CameraInfo camera;
+    String location;
+    double score;
+    long lastSpike;
+    Cluster cluster;
+
+    ActiveCamera(CameraRegistry.CameraInfo camera) {
+      this.camera = camera;
+    }
+  }
+
+  private static final class Cluster {
+    final String id;
+    final long firstSeen;
+    final Set<String> members = new LinkedHashSet<>();
+    boolean published;
+
+    Cluster(String id, long firstSeen) {
+      this.id = id;
+      this.firstSeen = firstSeen;
+    }
+  }
+
+  public IncidentCorrelator(CameraRegistry cameraRegistry, FanoutService fanoutService) {
+    this.cameraRegistry = cameraRegistry;
+    this.fanoutService = fanoutService;
+  }
+
+  /** Feeds one result; publishes any incident it creates, changes or resolves. */
+  public synchronized void onResult(HazardResponse response) {
+    if (!enabled || response == null)
+      return;
+
+    CameraRegistry.CameraInfo camera = cameraRegistry.find(response.getLocationString());
+    if (camera == null)
+      return;
+
+    long now = System.currentTimeMillis();
+    Set<Cluster> touched = new HashSet<>(refreshNeighbors());
+    if (response.isSpike())
+      touched.add(spike(camera, response, now));
+    else
+      touched.addAll(clear(camera.mapId()));
+
+    publish(touched, now);
+  }
+
+  /** Expires cameras that have not spiked within the window. */
+  @Scheduled(fixedDelayString = "${hazard.correlation.sweep-ms:5000}")
+  public synchronized void expire() {
+    if (!enabled || active.isEmpty())
+      return;
+
+    long now = System.currentTimeMillis();
+    Set<Cluster> touched = new HashSet<>();
+    for (ActiveCamera a : new ArrayList<>(active.values())) {
+      if (now - a.lastSpike > windowMillis)
+        touched.addAll(clear(a.camera.mapId()));
+    }
+    publish(touched, now);
+  }
+
+  public synchronized List<Incident> activeIncidents() {
+    long now = System.currentTimeMillis();
+    List<Incident> incidents = new ArrayList<>();
+    for (Cluster c : clusters.values()) {
+      if (c.members.size() >= minCameras)
+        incidents.add(toIncident(c, Status.ACTIVE, now));
+    }
+    incidents.sort(Comparator.comparingDouble(Incident::maxScore).reversed());
+    return incidents;
+  }
+
+  private Cluster spike(CameraRegistry.CameraInfo camera, HazardResponse response, long now) {
+    ActiveCamera a = active.get(camera.mapId());
+    if (a == null) {
+      a = new ActiveCamera(camera);
+      active.put(camera.mapId(), a);
+    }
+    a.location = response.getLocationString();
+    a.score = response.getScore();
+    a.lastSpike = now;
+    if (a.cluster != null)
+      return a.cluster;
+
+    // Join the oldest neighbouring cluster and fold any other neighbouring clusters into it
+    Set<Cluster> adjacent = new LinkedHashSet<>();
+    for (String n : neighbors.getOrDefault(camera.mapId(), List.of())) {
+      ActiveCamera na = active.get(n);
+      if (na != null && na.cluster != null)
+        adjacent.add(na.cluster);
+    }
+
+    Cluster target = adjacent.stream().min(Comparator.comparingLong(c -> c.firstSeen)).orElse(null);
+    if (target == null) {
+      target = new Cluster(UUID.randomUUID().toString(), now);
+      clusters.put(target.id, target);
+    }
+    for (Cluster other : adjacent) {
+      if (other == target)
+        continue;
+      for (String m : other.members) {
+        active.get(m).cluster = target;
+        target.members.add(m);
+      }
+      clusters.remove(other.id);
+      if (other.published)
+        fanoutService.publish(INCIDENTS_TOPIC, toIncident(other, Status.RESOLVED, now));
+    }
+    target.members.add(camera.mapId());
+    a.cluster = target;
+    return target;
+  }
+
+  // Removes a camera and splits its cluster if it was the only link between parts
+  private Collection<Cluster> clear(String mapId) {
+    ActiveCamera a = active.remove(mapId);
+    if (a == null || a.cluster == null)
+      return List.of();
+
+    Cluster cluster = a.cluster;
+    cluster.members.remove(mapId);
+    if (cluster.members.isEmpty()) {
+      clusters.remove(cluster.id);
+      return List.of(cluster);
+    }
+    return split(cluster);
+  }
+
+  // Splits a cluster into its connected parts; the largest keeps the id
+  private List<Cluster> split(Cluster cluster) {
+    List<Set<String>> components = components(cluster.members);
+    if (components.size() == 1)
+      return List.of(cluster);
+
+    components.sort(Comparator.comparingInt((Set<String> c) -> c.size()).reversed());
+    List<Cluster> result = new ArrayList<>();
+    cluster.members.retainAll(components.get(0));
+    result.add(cluster);
+    for (Set<String> part : components.subList(1, components.size())) {
+      Cluster split = new Cluster(UUID.randomUUID().toString(), cluster.firstSeen);
+      split.members.addAll(part);
+      for (String m : part)
+        active.get(m).cluster = split;
+      clusters.put(split.id, split);
+      result.add(split);
+    }
+    return result;
+  }
+
+  private List<Set<String>> components(Set<String> members) {
+    List<Set<String>> components = new ArrayList<>();
+    Set<String> seen = new HashSet<>();
+    for (String start : members) {
+      if (!seen.add(start))
+        continue;
+      Set<String> component = new LinkedHashSet<>();
+      Deque<String> queue = new ArrayDeque<>();
+      queue.add(start);
+      while (!queue.isEmpty()) {
+        String m = queue.poll();
+        component.add(m);
+        for (String n : neighbors.getOrDefault(m, List.of())) {
+          if (members.contains(n) && seen.add(n))
+            queue.add(n);
+        }
+      }
+      components.add(component);
+    }
+    return components;
+  }
+
+  private void publish(Set<Cluster> touched, long now) {
+    for (Cluster c : touched) {
+      boolean live = clusters.containsKey(c.id) && c.members.size() >= minCameras;
+      if (live) {
+        c.published = true;
+        fanoutService.publish(INCIDENTS_TOPIC, toIncident(c, Status.ACTIVE, now));
+      } else if (c.published) {
+        c.published = false;
+        fanoutService.publish(INCIDENTS_TOPIC, toIncident(c, Status.RESOLVED, now));
+      }
+    }
+  }
+
+  private Incident toIncident(Cluster c, Status status, long now) {
+    List<String> cameras = new ArrayList<>();
+    List<String> locations = new ArrayList<>();
+    Set<String> areas = new TreeSet<>();
+    double lat = 0;
+    double lng = 0;
+    double maxScore = 0;
+    for (String m : c.members) {
+      ActiveCamera a = active.get(m);
+      if (a == null)
+        continue;
+      cameras.add(m);
+      locations.add(a.location);
+      if (a.camera.geoLocalArea() != null)
+        areas.add(a.camera.geoLocalArea());
+      lat += a.camera.lat();
+      lng += a.camera.lon();
+      maxScore = Math.max(maxScore, a.score);
+    }
+    int n = Math.max(1, cameras.size());
+    return new Incident(
+        c.id, status, cameras, locations, areas, lat / n, lng / n, maxScore, c.firstSeen, now);
+  }
+
+  /**
+   * Rebuilds neighbour lists when the registry has been reloaded.
+   *
+   * @return clusters changed by the reload
+   */
+  private Collection<Cluster> refreshNeighbors() {
+    CameraRegistry.Snapshot snapshot = cameraRegistry.snapshot();
+    if (snapshot.version() == neighborsVersion)
+      return List.of();
+
+    // Grid cells one (largest) radius tall and as many degrees wide. A degree of longitude
+    // shrinks with cos(latitude), so the columns searched either side grow toward the poles
+    double reach = Math.max(radiusMeters, areaRadiusMeters);
+    double cellLat = Math.toDegrees(reach / EARTH_RADIUS_M);
+    Map<Long, List<CameraRegistry.CameraInfo>> grid = new HashMap<>();
+    Map<String, CameraRegistry.CameraInfo> byId = new HashMap<>();
+    for (CameraRegistry.CameraInfo c : snapshot.cameras()) {
+      grid.computeIfAbsent(cell(c.lat(), c.lon(), cellLat), k -> new ArrayList<>()).add(c);
+      byId.put(c.mapId(), c);
+    }
+
+    Map<String, List<String>> next = new HashMap<>();
+    for (CameraRegistry.CameraInfo c : snapshot.cameras()) {
+      List<String> list = new ArrayList<>();
+      long row = (long) Math.floor(c.lat() / cellLat);
+      long col = (long) Math.floor(c.lon() / cellLat);
+      long span = columnSpan(c.lat(), cellLat);
+      for (long dr = -1; dr <= 1; dr++) {
+        for (long dc = -span; dc <= span; dc++) {
+          for (CameraRegistry.CameraInfo o : grid.getOrDefault(key(row + dr, col + dc), List.of())) {
+            if (o != c && isNeighbor(c, o))
+              list.add(o.mapId());
+          }
+        }
+      }
+      next.put(c.mapId(), list);
+    }
+
+    neighbors = next;
+    camerasById = byId;
+    neighborsVersion = snapshot.version();
+
+    // Cameras that no longer exist leave their clusters; the rest pick up moved coordinates
+    Set<Cluster> touched = new HashSet<>();
+    for (ActiveCamera a : new ArrayList<>(active.values())) {
+      CameraRegistry.CameraInfo updated = camerasById.get(a.camera.mapId());
+      if (updated == null)
+        touched.addAll(clear(a.camera.mapId()));
+      else
+        a.camera = updated;
+    }
+    // Links between the remaining members may have changed too
+    for (Cluster c : new ArrayList<>(clusters.values())) {
+      List<Cluster> parts = split(c);
+      if (parts.size() > 1)
+        touched.addAll(parts);
+    }
+    return touched;
+  }
+
+  private boolean isNeighbor(CameraRegistry.CameraInfo a, CameraRegistry.CameraInfo b) {
+    double d = distanceMeters(a, b);
+    if (d <= radiusMeters)
+      return true;
+    return d <= areaRadiusMeters
+        && a.geoLocalArea() != null
+        && a.geoLocalArea().equals(b.geoLocalArea());
+  }
+
+  // Columns either side that cover the radius, measured at the row edge nearest the pole
+  private static long columnSpan(double lat, double cellDeg) {
+    double edge = Math.toRadians(Math.min(89, Math.abs(lat) + cellDeg));
+    return (long) Math.ceil(1 / Math.cos(edge));
+  }
+
+  private static long cell(double lat, double lon, double cellDeg) {
+    return key((long) Math.floor(lat / cellDeg), (long) Math.floor(lon / cellDeg));
+  }
+
+  private static long key(long row, long col) {
+    return (row << 32) ^ (col & 0xffffffffL);
+  }
+
+  private static double distanceMeters(CameraRegistry.CameraInfo a, CameraRegistry.CameraInfo b) {
+    double lat1 = Math.toRadians(a.lat());
+    double lat2 = Math.toRadians(b.lat());
+    double dLat = lat2 - lat1;
+    double dLon = Math.toRadians(b.lon() - a.lon());
+    double h = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+        + Math.cos(lat1) * Math.cos(lat2) * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+    return 2 * EARTH_RADIUS_M * Math.asin(Math.sqrt(h));
+  }
+}
@@ -0,0 +1,72 @@
+package com.rainCity.hazard.service;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+
+/**
+ * JPEG decode/encode helpers shared by the overlay renderer and the rendition cache.
+ *
+ * <p>Streams are memory-cached explicitly; {@code ImageIO}'s default would spool every frame
+ * through a temporary file. Encodes write into a per-thread buffer that keeps its largest size,
+ * so each encode makes exactly one copy, the returned array.
+ */
+final class JpegCodec {
+
+  private static final ThreadLocal<Buffer> BUFFER = ThreadLocal.withInitial(Buffer::new);
+
+  /** A {@link ByteArrayOutputStream} that is reset and reused instead of reallocated. */
+  private static final class Buffer extends ByteArrayOutputStream {
+    Buffer() {
+      super(64 * 1024);
+    }
+
+    byte[] copy() {
+      return Arrays.copyOf(buf, count);
+    }
+  }
+
+  private JpegCodec() {
+  }
+
+  /** Decodes to an RGB image that Graphics2D can draw on, or null if the bytes are unreadable. */
+  static BufferedImage decodeRgb(byte[] jpeg) throws IOException {
+    BufferedImage image = ImageIO.read(new MemoryCacheImageInputStream(new ByteArrayInputStream(jpeg)));
+    if (image == null)
+      return null;
+    // JPEG has no alpha; convert only when the decoder produced something else
+    if (image.getType() == BufferedImage.TYPE_3BYTE_BGR || image.getType() == BufferedImage.TYPE_INT_RGB)
+      return image;
+    BufferedImage rgb = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
+    Graphics2D g = rgb.createGraphics();
+    g.drawImage(image, 0, 0, null);
+    g.dispose();
+    return rgb;
+  }
+
+  static byte[] encode(BufferedImage image, float quality) throws IOException {
+    ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+    Buffer out = BUFFER.get();
+    out.reset();
+    try (ImageOutputStream ios = new MemoryCacheImageOutputStream(out)) {
+      ImageWriteParam param = writer.getDefaultWriteParam();
+      param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+      param.setCompressionQuality(quality);
+      writer.setOutput(ios);
+      writer.write(null, new IIOImage(image, null, null), param);
+    } finally {
+      writer.dispose();
+    }
+    return out.copy();
+  }
+}
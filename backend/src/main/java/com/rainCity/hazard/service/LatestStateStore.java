@@ -0,0 +1,143 @@
+package com.rainCity.hazard.service;
+
+import com.rainCity.hazard.model.HazardModels.HazardResponse;
+import com.rainCity.hazard.model.HazardModels.JpegDataUrl;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.springframework.stereotype.Service;
+
+/**
+ * Latest processed response per location, seeded from the local snapshot at startup. Lets a new
+ * subscriber render immediately instead of waiting for the next pipeline pass.
+ *
+ * <p>The snapshot keeps the full labeled frame. A restored response is re-encoded through
+ * {@link RenditionService} the first time it is read, so it carries the inline rendition and
+ * {@code /api/frames} links that resolve, like a live alert, without decoding every frame at
+ * startup. The rendered response is a new instance: the restored one is never modified, so a
+ * reader holding it never sees a half-rendered frame.
+ */
+@Service
+public class LatestStateStore {
+
+  private final RenditionService renditionService;
+  // Live or rendered responses, ready to hand out
+  private final Map<String, HazardResponse> latest = new ConcurrentHashMap<>();
+  // Restored responses whose renditions have not been rebuilt yet
+  private final Map<String, HazardResponse> restored = new ConcurrentHashMap<>();
+
+  public LatestStateStore(SnapshotStore snapshotStore, RenditionService renditionService) {
+    this.renditionService = renditionService;
+    restored.putAll(snapshotStore.latestResults());
+  }
+
+  public void put(HazardResponse response) {
+    if (response != null && response.getLocationString() != null) {
+      latest.put(response.getLocationString(), response);
+      restored.remove(response.getLocationString());
+    }
+  }
+
+  /**
+   * Swaps in {@code updated} only while {@code current} is still the location's latest response.
+   *
+   * @return false once a newer response has been put
+   */
+  public boolean replace(HazardResponse current, HazardResponse updated) {
+    return latest.replace(current.getLocationString(), current, updated);
+  }
+
+  public HazardResponse get(String locationStr) {
+    return rendered(locationStr);
+  }
+
+  /** Cached responses for the given locations, skipping any that have not been processed yet. */
+  public List<HazardResponse> getAll(Collection<String> locations) {
+    List<HazardResponse> found = new ArrayList<>(locations.size());
+    for (String loc : locations) {
+      HazardResponse response = rendered(loc);
+      if (response != null)
+        found.add(response);
+    }
+    return found;
+  }
+
+  /**
+   * Like {@link #getAll} but without rebuilding restored renditions, for readers that only need
+   * the scores.
+   */
+  public List<HazardResponse> peekAll(Collection<String> locations) {
+    List<HazardResponse> found = new ArrayList<>(locations.size());
+    for (String loc : locations) {
+      HazardResponse response = latest.get(loc);
+      if (response == null)
+        response = restored.get(loc);
+      if (response != null)
+        found.add(response);
+    }
+    return found;
+  }
+
+  public int size() {
+    int size = latest.size();
+    for (String loc : restored.keySet()) {
+      if (!latest.containsKey(loc))
+        size++;
+    }
+    return size;
+  }
+
+  private HazardResponse rendered(String location) {
+    HazardResponse ready = latest.get(location);
+    if (ready != null)
+      return ready;
+    HazardResponse original = restored.get(location);
+    if (original == null)
+      return latest.get(location);
+    // Only this store holds the restored instance, so it doubles as the per-location lock
+    synchronized (original) {
+      ready = latest.get(location);
+      if (ready == null) {
+        HazardResponse copy = render(original);
+        // A live put in the meantime wins over the restored frame
+        ready = latest.putIfAbsent(location, copy);
+        if (ready == null)
+          ready = copy;
+      }
+      // Dropped only once the rendered copy is in place, so no reader falls through to nothing
+      restored.remove(location, original);
+      return ready;
+    }
+  }
+
+  private HazardResponse render(HazardResponse response) {
+    String location = response.getLocationString();
+    JpegDataUrl full = response.getImage();
+    Long version = frameVersion(response);
+    if (full == null || version == null)
+      return response.toBuilder().imageUrls(null).build();
+
+    RenditionService.Frame frame = renditionService.restore(location, version, full.data());
+    if (frame.version() != version) {
+      // A live frame got there first; this response is about to be replaced and has no URLs left
+      return response.toBuilder().imageUrls(null).build();
+    }
+    return response.toBuilder()
+        .image(new JpegDataUrl(frame.get(renditionService.inlineRendition())))
+        .imageUrls(renditionService.urls(location, version))
+        .build();
+  }
+
+  // Frames are versioned by capture time, which is also the response timestamp
+  private static Long frameVersion(HazardResponse response) {
+    try {
+      return response.getTimestamp() != null ? Instant.parse(response.getTimestamp()).toEpochMilli() : null;
+    } catch (DateTimeParseException e) {
+      return null;
+    }
+  }
+}
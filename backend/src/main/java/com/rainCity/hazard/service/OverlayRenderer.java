@@ -0,0 +1,99 @@
+package com.rainCity.hazard.service;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.List;
+import java.util.Locale;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Draws detection boxes onto the raw camera frame, replacing the labeled image the model service
+ * used to render and send back. Boxes are drawn directly on the decoded frame and encoded through
+ * the codec's reusable buffer, so the only other allocation is the returned JPEG.
+ */
+@Component
+public class OverlayRenderer {
+
+  // Same look as the model's own plot(): one colour per class, label chip above the box
+  private static final Color[] PALETTE = {
+    new Color(0xFF3838), new Color(0xFF9D97), new Color(0xFF701F), new Color(0xFFB21D),
+    new Color(0xCFD231), new Color(0x48F90A), new Color(0x92CC17), new Color(0x3DDB86),
+    new Color(0x1A9334), new Color(0x00D4BB), new Color(0x2C99A8), new Color(0x00C2FF),
+    new Color(0x344593), new Color(0x6473FF), new Color(0x0018EC), new Color(0x8438FF),
+  };
+
+  @Value("${hazard.overlay.jpeg-quality:0.85}")
+  private float jpegQuality = 0.85f;
+
+  /**
+   * @return the frame as JPEG with boxes drawn on it, or {@code frame} unchanged if it cannot be
+   *     decoded or there is nothing to draw
+   */
+  public byte[] render(byte[] frame, List<ExternalApiService.DetectionBox> boxes) {
+    if (boxes.isEmpty())
+      return frame;
+
+    try {
+      BufferedImage image = JpegCodec.decodeRgb(frame);
+      if (image == null) {
+        System.err.println("Overlay: unreadable frame (" + frame.length + " bytes)");
+        return frame;
+      }
+
+      draw(image, boxes);
+      return JpegCodec.encode(image, jpegQuality);
+    } catch (IOException e) {
+      System.err.println("Overlay rendering failed: " + e.getMessage());
+      return frame;
+    }
+  }
+
+  private void draw(BufferedImage image, List<ExternalApiService.DetectionBox> boxes) {
+    int w = image.getWidth();
+    int h = image.getHeight();
+    int line = Math.max(2, Math.round((w + h) / 2f * 0.003f));
+
+    Graphics2D g = image.createGraphics();
+    try {
+      g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+      g.setStroke(new BasicStroke(line));
+      g.setFont(new Font(Font.SANS_SERIF, Font.BOLD, Math.max(11, line * 5)));
+      FontMetrics fm = g.getFontMetrics();
+
+      for (ExternalApiService.DetectionBox b : boxes) {
+        int x1 = clamp(b.x1(), w);
+        int y1 = clamp(b.y1(), h);
+        int x2 = clamp(b.x2(), w);
+        int y2 = clamp(b.y2(), h);
+        if (x2 <= x1 || y2 <= y1)
+          continue;
+
+        Color color = PALETTE[Math.floorMod(b.label().hashCode(), PALETTE.length)];
+        g.setColor(color);
+        g.drawRect(x1, y1, x2 - x1, y2 - y1);
+
+        String text = b.label() + " " + String.format(Locale.ROOT, "%.2f", b.confidence());
+        int tw = fm.stringWidth(text) + 4;
+        int th = fm.getHeight();
+        // Chip above the box, or inside it when the box touches the top edge
+        int ty = y1 - th >= 0 ? y1 - th : y1;
+        g.fillRect(x1, ty, tw, th);
+        g.setColor(Color.WHITE);
+        g.drawString(text, x1 + 2, ty + fm.getAscent());
+      }
+    } finally {
+      g.dispose();
+    }
+  }
+
+  private static int clamp(double v, int max) {
+    return (int) Math.max(0, Math.min(max - 1, Math.round(v)));
+  }
+}
@@ -0,0 +1,49 @@
+package com.rainCity.hazard.service;
+
+import com.rainCity.hazard.model.HazardModels.DetailedTags;
+import com.rainCity.hazard.model.HazardModels.HazardResponse;
+import java.util.List;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Work item carried through the processing stages for a single location. Each stage fills in
+ * its own fields and hands the item to the next one.
+ *
+ * <p>Items are compared by identity: the pipeline keys pending descriptions by item while the
+ * enrich step is still replacing its response.
+ */
+@Getter
+@Setter
+public class PipelineItem {
+  private final String locationString;
+
+  // Epoch millis after which the result is stale and the item should be dropped; 0 for none
+  private long deadline;
+
+  // fetch stage; fetchedAt is the epoch millis at which the frame was fetched
+  private long fetchedAt;
+  private double averageScore;
+  private byte[] rawImage;
+
+  // detect stage
+  private List<ExternalApiService.HazardTag> detections;
+  private byte[] labeledImage;
+  private DetailedTags details;
+  private double currentScore;
+  private double delta;
+  private boolean spike;
+
+  // describe stage; enrich is whether the template description should be replaced by an LLM
+  // one after broadcast
+  private HazardResponse response;
+  private boolean enrich;
+
+  public PipelineItem(String locationString) {
+    this.locationString = locationString;
+  }
+
+  public boolean isExpired() {
+    return deadline > 0 && System.currentTimeMillis() >= deadline;
+  }
+}
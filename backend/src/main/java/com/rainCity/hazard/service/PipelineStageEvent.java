@@ -0,0 +1,71 @@
+package com.rainCity.hazard.service;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event for one {@link ProcessingService} step. Disabled unless a recording turns it on
+ * ({@code jfr/raincity.jfc}); a disabled event is never committed and costs a few nanoseconds.
+ *
+ * <p>While a step runs, its location is visible to {@link ExternalCallEvent}s on the same thread.
+ */
+@Name("rainCity.PipelineStage")
+@Label("Pipeline Stage")
+@Category({"RainCity", "Pipeline"})
+@Description("One processing step (fetch, detect, describe, persist, enrich) for a location")
+@Enabled(false)
+@StackTrace(false)
+public class PipelineStageEvent extends Event {
+
+  private static final ThreadLocal<String> LOCATION = new ThreadLocal<>();
+
+  @Label("Stage")
+  String stage;
+
+  @Label("Location")
+  String location;
+
+  @Label("Bytes In")
+  @DataAmount
+  long bytesIn;
+
+  @Label("Bytes Out")
+  @DataAmount
+  long bytesOut;
+
+  @Label("Outcome")
+  @Description("ok, no_image, skipped, expired or error")
+  String outcome = "ok";
+
+  static PipelineStageEvent start(String stage, String location) {
+    PipelineStageEvent event = new PipelineStageEvent();
+    event.stage = stage;
+    event.location = location;
+    LOCATION.set(location);
+    event.begin();
+    return event;
+  }
+
+  /** Location of the step running on this thread, or null. */
+  static String currentLocation() {
+    return LOCATION.get();
+  }
+
+  void fail(Throwable e) {
+    outcome = e instanceof DeadlineExceededException ? "expired" : "error";
+  }
+
+  /** Ends the step; call from {@code finally}. */
+  void finish() {
+    LOCATION.remove();
+    end();
+    if (shouldCommit())
+      commit();
+  }
+}
@@ -2,95 +2,366 @@ package com.rainCity.hazard.service;
 
 import com.rainCity.hazard.model.HazardModels.*;
 import java.time.Instant;
-import java.util.Base64;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 @Service
 public class ProcessingService {
 
   private final ExternalApiService apiService;
+  private final SnapshotStore snapshotStore;
+  private final LatestStateStore latestState;
+  private final ScoreHistoryStore historyStore;
+  private final RenditionService renditionService;
+  private final CaptureRecorder captureRecorder;
+  private final RoiCropper roiCropper;
+  private final HeatmapGrid heatmap;
 
-  public ProcessingService(ExternalApiService apiService) {
+  // LLM descriptions are generated after broadcast, and only for spikes or scores this high
+  @Value("${hazard.enrichment.enabled:true}")
+  private boolean enrichmentEnabled;
+
+  @Value("${hazard.enrichment.min-score:50}")
+  private double enrichMinScore;
+
+  // A frame that is not scored within one refresh interval is superseded by the next tick's
+  @Value("${hazard.pipeline.deadline-ms:${hazard.refresh-rate-ms:10000}}")
+  private long deadlineMillis = 10000;
+
+  public ProcessingService(
+      ExternalApiService apiService,
+      SnapshotStore snapshotStore,
+      LatestStateStore latestState,
+      ScoreHistoryStore historyStore,
+      RenditionService renditionService,
+      CaptureRecorder captureRecorder,
+      RoiCropper roiCropper,
+      HeatmapGrid heatmap) {
     this.apiService = apiService;
+    this.snapshotStore = snapshotStore;
+    this.latestState = latestState;
+    this.historyStore = historyStore;
+    this.renditionService = renditionService;
+    this.captureRecorder = captureRecorder;
+    this.roiCropper = roiCropper;
+    this.heatmap = heatmap;
   }
 
+  /**
+   * Runs every step for one location within a deadline of one refresh interval.
+   *
+   * @throws DeadlineExceededException if the result would arrive after the next tick
+   */
   public HazardResponse processLocation(String locationStr) {
-    System.out.println("🚀 Processing location: " + locationStr);
+    PipelineItem item = fetch(locationStr, newDeadline());
+    if (item == null)
+      return null;
 
-    // 1. Fetch historical average FIRST (before current detection)
-    double averageScore = apiService.fetchHistoricalAverage(locationStr);
-    System.out.println("📊 Historical average score: " + averageScore);
+    detect(item);
+    describe(item);
+    persist(item);
+    if (item.isEnrich())
+      enrich(item);
+    return item.getResponse();
+  }
 
-    // 2. Fetch images from the Vancouver camera or custom images
-    List<byte[]> images = apiService.fetchCameraImages(locationStr);
-    if (images.isEmpty()) {
-      System.out.println("⚠️ No images found for: " + locationStr);
-      return null;
+  /** Deadline for a pass starting now, in epoch millis; 0 when deadlines are disabled. */
+  public long newDeadline() {
+    return deadlineMillis > 0 ? System.currentTimeMillis() + deadlineMillis : 0;
+  }
+
+  /** Throws if {@code item}'s deadline has passed before {@code step} starts. */
+  public void checkDeadline(PipelineItem item, String step) {
+    if (item.isExpired()) {
+      throw new DeadlineExceededException(
+          item.getLocationString() + " expired "
+              + (System.currentTimeMillis() - item.getDeadline()) + " ms before " + step);
     }
+  }
 
-    // 3. Use the first image for analysis
-    byte[] rawImage = images.get(0);
-    System.out.println("📸 Got raw image: " + rawImage.length + " bytes");
-
-    // 4. Get detections AND labeled image from Hugging Face Gradio Space
-    ExternalApiService.HazardDetectionResult result = apiService.detectHazards(rawImage);
-    List<ExternalApiService.HazardTag> detections = result.detections();
-    byte[] labeledImage = result.labeledImage();
-
-    System.out.println("🎯 Got " + detections.size() + " detections");
-    System.out.println("🖼️ Labeled image size: " + labeledImage.length + " bytes");
-
-    // 5. Transform tags and calculate current score
-    DetailedTags details = analyzeTags(detections);
-    double currentScore = calculateHazardScore(details);
-    System.out.println("📊 Current hazard score: " + currentScore);
-
-    // 6. Calculate delta and spike detection
-    double delta = Math.max(0, currentScore - averageScore);
-    boolean isSpike = delta > (averageScore * 0.2) && currentScore > 10;
-
-    System.out.println("📈 Score Analysis:");
-    System.out.println("   Current: " + currentScore);
-    System.out.println("   Average: " + averageScore);
-    System.out.println("   Delta: " + delta);
-    System.out.println("   Spike: " + isSpike);
-
-    // 7. AI Description logic (DeepSeek)
-    String description = apiService.generateDescription(detections, isSpike, currentScore);
-
-    // 8. Prepare LABELED Image for Frontend (with bounding boxes)
-    String base64Image = "data:image/jpeg;base64," + Base64.getEncoder().encodeToString(labeledImage);
-    System.out.println("✅ Base64 image prepared for frontend");
-
-    // 9. Build final response
-    HazardResponse response = HazardResponse.builder()
-        .id(locationStr)
-        .locationString(locationStr)
-        .coords(apiService.getCameraCoordinates(locationStr))
-        .score(currentScore)
-        .avg(averageScore)
-        .delta(delta)
-        .spike(isSpike)
-        .description(description)
-        .timestamp(Instant.now().toString())
-        .imageBase64(base64Image)
-        .info(details)
-        .build();
+  public PipelineItem fetch(String locationStr) {
+    return fetch(locationStr, 0);
+  }
 
-    // 10. DATABASE UPDATE: Persist the results to Supabase
-    apiService.saveHazardRecord(response);
+  /** Steps 1-3: historical baseline and the raw camera frame (network bound). */
+  public PipelineItem fetch(String locationStr, long deadline) {
+    PipelineStageEvent event = PipelineStageEvent.start("fetch", locationStr);
+    try {
+      System.out.println("🚀 Processing location: " + locationStr);
+      PipelineItem item = new PipelineItem(locationStr);
+      item.setDeadline(deadline);
+      checkDeadline(item, "fetch");
+      item.setFetchedAt(System.currentTimeMillis());
 
-    System.out.println("✅ Processing complete for: " + locationStr);
-    System.out.println(
-        "   Final response - Score: "
-            + response.getScore()
-            + ", Avg: "
-            + response.getAvg()
-            + ", Delta: "
-            + response.getDelta());
-
-    return response;
+      // 1. Fetch historical average FIRST (before current detection)
+      double averageScore = apiService.fetchHistoricalAverage(locationStr, deadline);
+      System.out.println("📊 Historical average score: " + averageScore);
+      item.setAverageScore(averageScore);
+
+      // 2. Fetch images from the Vancouver camera or custom images
+      List<byte[]> images = apiService.fetchCameraImages(locationStr, deadline);
+      if (images.isEmpty()) {
+        System.out.println("⚠️ No images found for: " + locationStr);
+        event.outcome = "no_image";
+        return null;
+      }
+
+      // 3. Use the first image for analysis
+      byte[] rawImage = images.get(0);
+      System.out.println("📸 Got raw image: " + rawImage.length + " bytes");
+      item.setRawImage(rawImage);
+      event.bytesOut = rawImage.length;
+      return item;
+    } catch (RuntimeException e) {
+      event.fail(e);
+      throw e;
+    } finally {
+      event.finish();
+    }
+  }
+
+  /** Steps 4-6: model inference, tag analysis and spike detection. */
+  public void detect(PipelineItem item) {
+    PipelineStageEvent event = PipelineStageEvent.start("detect", item.getLocationString());
+    try {
+      checkDeadline(item, "detect");
+
+      // 4. Get detections AND labeled image from Hugging Face Gradio Space, looking only at the
+      // camera's region of interest when it has one
+      long detectStart = System.nanoTime();
+      RoiCropper.Crop crop = roiCropper.crop(item.getLocationString(), item.getRawImage());
+      ExternalApiService.HazardDetectionResult result =
+          apiService.detectHazards(item.getRawImage(), crop, item.getDeadline());
+      captureRecorder.record(item, result, (System.nanoTime() - detectStart) / 1_000_000);
+      List<ExternalApiService.HazardTag> detections = result.detections();
+      byte[] labeledImage = result.labeledImage();
+
+      System.out.println("🎯 Got " + detections.size() + " detections");
+      System.out.println("🖼️ Labeled image size: " + labeledImage.length + " bytes");
+
+      // 5. Transform tags and calculate current score
+      DetailedTags details = analyzeTags(detections);
+      double currentScore = calculateHazardScore(details);
+      System.out.println("📊 Current hazard score: " + currentScore);
+
+      // 6. Calculate delta and spike detection
+      double averageScore = item.getAverageScore();
+      double delta = Math.max(0, currentScore - averageScore);
+      boolean isSpike = delta > (averageScore * 0.2) && currentScore > 10;
+
+      System.out.println("📈 Score Analysis:");
+      System.out.println("   Current: " + currentScore);
+      System.out.println("   Average: " + averageScore);
+      System.out.println("   Delta: " + delta);
+      System.out.println("   Spike: " + isSpike);
+
+      item.setDetections(detections);
+      item.setLabeledImage(labeledImage);
+      item.setDetails(details);
+      item.setCurrentScore(currentScore);
+      item.setDelta(delta);
+      item.setSpike(isSpike);
+      event.bytesIn = crop != null ? crop.image().length : item.getRawImage().length;
+      event.bytesOut = labeledImage.length;
+    } catch (RuntimeException e) {
+      event.fail(e);
+      throw e;
+    } finally {
+      event.finish();
+    }
+  }
+
+  /** Steps 7-9: template description and the final response; no LLM call on this path. */
+  public void describe(PipelineItem item) {
+    PipelineStageEvent event = PipelineStageEvent.start("describe", item.getLocationString());
+    try {
+      checkDeadline(item, "describe");
+      String locationStr = item.getLocationString();
+
+      // 7. Template description now; the LLM one follows via enrich() when worth the wait
+      String description = templateDescription(item);
+      item.setEnrich(
+          enrichmentEnabled
+              && !item.getDetections().isEmpty()
+              && (item.isSpike() || item.getCurrentScore() >= enrichMinScore));
+
+      // 8. Prepare LABELED Image renditions for Frontend (with bounding boxes); only the inline
+      // size travels with the alert, the others are linked by versioned URL
+      Instant now = Instant.now();
+      RenditionService.Frame frame =
+          renditionService.put(locationStr, now.toEpochMilli(), item.getLabeledImage());
+      // The rendition bytes are shared; base64 is only produced while the message is serialized
+      JpegDataUrl inlineImage = new JpegDataUrl(frame.get(renditionService.inlineRendition()));
+      System.out.println("✅ Inline image prepared for frontend (" + inlineImage.data().length + " bytes)");
+
+      // 9. Build final response; the id is per frame so a later description update can target it
+      HazardResponse response = HazardResponse.builder()
+          .id(locationStr + "@" + now.toEpochMilli())
+          .locationString(locationStr)
+          .coords(apiService.getCameraCoordinates(locationStr))
+          .score(item.getCurrentScore())
+          .avg(item.getAverageScore())
+          .delta(item.getDelta())
+          .spike(item.isSpike())
+          .description(description)
+          .timestamp(now.toString())
+          .image(inlineImage)
+          .imageUrls(renditionService.urls(locationStr, frame.version()))
+          .info(item.getDetails())
+          .build();
+      item.setResponse(response);
+      event.bytesIn = item.getLabeledImage().length;
+      event.bytesOut = inlineImage.data().length;
+    } catch (RuntimeException e) {
+      event.fail(e);
+      throw e;
+    } finally {
+      event.finish();
+    }
+  }
+
+  /**
+   * Replaces the template description with a DeepSeek one and re-saves the result. Skipped when
+   * a newer frame for the location has already been processed.
+   *
+   * @return true if the description was updated
+   */
+  public boolean enrich(PipelineItem item) {
+    return !enrichAll(List.of(item)).isEmpty();
+  }
+
+  /**
+   * Batch form of {@link #enrich}: every current item is described by one DeepSeek call.
+   *
+   * @return the items whose description was updated
+   */
+  public List<PipelineItem> enrichAll(List<PipelineItem> items) {
+    PipelineStageEvent event = PipelineStageEvent.start(
+        "enrich", items.size() == 1 ? items.get(0).getLocationString() : items.size() + " locations");
+    try {
+      List<PipelineItem> current = new ArrayList<>();
+      for (PipelineItem item : items) {
+        if (isCurrent(item))
+          current.add(item);
+      }
+      if (current.isEmpty()) {
+        event.outcome = "skipped";
+        return current;
+      }
+
+      // Keys follow location order, so the same set of locations always gets the same prompt
+      current.sort(Comparator.comparing(PipelineItem::getLocationString));
+      List<ExternalApiService.DescriptionRequest> requests = new ArrayList<>();
+      for (int i = 0; i < current.size(); i++) {
+        PipelineItem item = current.get(i);
+        requests.add(new ExternalApiService.DescriptionRequest(
+            "L" + (i + 1), item.getDetections(), item.isSpike(), item.getCurrentScore()));
+      }
+      // Enrichment runs after the alert is out, past the frame's deadline; it gets a fresh one
+      long deadline = newDeadline();
+      Map<String, String> descriptions = apiService.generateDescriptions(requests, deadline);
+
+      // A newer frame may have been persisted while the LLM was answering
+      List<PipelineItem> updated = new ArrayList<>();
+      for (int i = 0; i < current.size(); i++) {
+        PipelineItem item = current.get(i);
+        if (!isCurrent(item))
+          continue;
+        // The broadcast response is shared with the store and subscribers; describe a copy
+        HazardResponse sent = item.getResponse();
+        HazardResponse described = sent.toBuilder().description(descriptions.get("L" + (i + 1))).build();
+
+        apiService.saveHazardRecord(described, deadline);
+        if (!latestState.replace(sent, described)) {
+          System.out.println("⏭️ Skipping stale description for: " + sent.getId());
+          continue;
+        }
+        item.setResponse(described);
+        snapshotStore.recordDescription(described.getLocationString(), described.getId(), described.getDescription());
+        System.out.println("📝 Description ready for: " + described.getId());
+        updated.add(item);
+      }
+      return updated;
+    } catch (RuntimeException e) {
+      event.fail(e);
+      throw e;
+    } finally {
+      event.finish();
+    }
+  }
+
+  // False once a newer frame for the location has been persisted
+  private boolean isCurrent(PipelineItem item) {
+    HazardResponse latest = latestState.get(item.getLocationString());
+    if (latest == null || item.getResponse().getId().equals(latest.getId()))
+      return true;
+    System.out.println("⏭️ Skipping stale description for: " + item.getResponse().getId());
+    return false;
+  }
+
+  /** Step 10: persist the results to Supabase; past this point the result is always broadcast. */
+  public void persist(PipelineItem item) {
+    PipelineStageEvent event = PipelineStageEvent.start("persist", item.getLocationString());
+    try {
+      checkDeadline(item, "persist");
+      HazardResponse response = item.getResponse();
+
+      // 10. DATABASE UPDATE: Persist the results to Supabase
+      apiService.saveHazardRecord(response, item.getDeadline());
+
+      // Keep a local copy so new subscribers and restarts are served before the next pass
+      latestState.put(response);
+      snapshotStore.recordResult(response, item.getLabeledImage());
+      historyStore.append(response);
+      heatmap.update(response);
+      event.bytesIn = item.getLabeledImage().length;
+
+      System.out.println("✅ Processing complete for: " + item.getLocationString());
+      System.out.println(
+          "   Final response - Score: "
+              + response.getScore()
+              + ", Avg: "
+              + response.getAvg()
+              + ", Delta: "
+              + response.getDelta());
+    } catch (RuntimeException e) {
+      event.fail(e);
+      throw e;
+    } finally {
+      event.finish();
+    }
+  }
+
+  private String templateDescription(PipelineItem item) {
+    DetailedTags tags = item.getDetails();
+    if (item.getDetections().isEmpty())
+      return "No hazards detected at this location. Traffic conditions appear normal.";
+
+    List<String> found = new ArrayList<>();
+    if (tags.isAccident())
+      found.add("possible accident");
+    if (tags.isPersonLaying())
+      found.add("person lying on the road");
+    if (tags.isFallenTree())
+      found.add("fallen tree");
+    if (tags.getNumberOfDebrisItems() > 0)
+      found.add(tags.getNumberOfDebrisItems() + " debris item(s)");
+    if (tags.isCones())
+      found.add("traffic cones");
+    if (tags.getPedestrianAmount() > 0)
+      found.add(tags.getPedestrianAmount() + " pedestrian(s)");
+    if (found.isEmpty())
+      found.add(String.join(", ", tags.getRawTags()));
+
+    String text = "Detected: " + String.join(", ", found)
+        + ". Hazard score " + Math.round(item.getCurrentScore()) + ".";
+    if (item.isSpike())
+      text += " Spike of +" + Math.round(item.getDelta()) + " over the usual level; assess urgently.";
+    return text;
   }
 
   private DetailedTags analyzeTags(List<ExternalApiService.HazardTag> detections) {
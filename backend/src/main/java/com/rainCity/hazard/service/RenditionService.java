@@ -0,0 +1,161 @@
+package com.rainCity.hazard.service;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Thumbnail, medium and full renditions of each labeled frame, encoded once when the frame is
+ * produced and cached by location and frame version. Broadcasts inline one configured rendition
+ * and link the others as versioned {@code /api/frames} URLs, so a client that only shows a small
+ * preview never has to download or decode the full frame.
+ *
+ * <p>Only the latest frame per location is kept; older versions answer 404.
+ */
+@Service
+public class RenditionService {
+
+  public enum Rendition {
+    THUMB, MEDIUM, FULL;
+
+    public String key() {
+      return name().toLowerCase(Locale.ROOT);
+    }
+
+    /** @return the rendition named {@code key}, or null if there is none */
+    public static Rendition of(String key) {
+      for (Rendition r : values()) {
+        if (r.key().equalsIgnoreCase(key))
+          return r;
+      }
+      return null;
+    }
+  }
+
+  /** All renditions of one frame; {@code version} is the frame's capture time in epoch millis. */
+  public record Frame(long version, Map<Rendition, byte[]> images) {
+    public byte[] get(Rendition rendition) {
+      return images.get(rendition);
+    }
+  }
+
+  @Value("${hazard.renditions.thumb-width:160}")
+  private int thumbWidth = 160;
+
+  @Value("${hazard.renditions.thumb-quality:0.6}")
+  private float thumbQuality = 0.6f;
+
+  @Value("${hazard.renditions.medium-width:480}")
+  private int mediumWidth = 480;
+
+  @Value("${hazard.renditions.medium-quality:0.75}")
+  private float mediumQuality = 0.75f;
+
+  // Rendition sent inline as "img" in alerts; the rest are fetched by URL on demand
+  @Value("${hazard.renditions.inline:medium}")
+  private String inline = "medium";
+
+  private final Map<String, Frame> frames = new ConcurrentHashMap<>();
+
+  /** Encodes the renditions of a new frame and makes them the latest for the location. */
+  public Frame put(String locationStr, long version, byte[] full) {
+    Frame frame = encode(locationStr, version, full);
+    frames.put(locationStr, frame);
+    return frame;
+  }
+
+  /**
+   * Re-encodes a frame restored from the snapshot, unless a newer frame for the location has
+   * been produced in the meantime.
+   *
+   * @return the frame now cached for the location, which may be the newer one
+   */
+  public Frame restore(String locationStr, long version, byte[] full) {
+    Frame current = frames.get(locationStr);
+    if (current != null && current.version() >= version)
+      return current;
+    return frames.merge(
+        locationStr, encode(locationStr, version, full),
+        (existing, restored) -> existing.version() >= restored.version() ? existing : restored);
+  }
+
+  private Frame encode(String locationStr, long version, byte[] full) {
+    Map<Rendition, byte[]> images = new EnumMap<>(Rendition.class);
+    images.put(Rendition.FULL, full);
+    try {
+      BufferedImage source = JpegCodec.decodeRgb(full);
+      if (source != null) {
+        images.put(Rendition.MEDIUM, scale(source, mediumWidth, mediumQuality, full));
+        images.put(Rendition.THUMB, scale(source, thumbWidth, thumbQuality, full));
+      }
+    } catch (IOException e) {
+      System.err.println("Rendition encoding failed for " + locationStr + ": " + e.getMessage());
+    }
+    // Undecodable frames are served as-is at every size
+    images.putIfAbsent(Rendition.MEDIUM, full);
+    images.putIfAbsent(Rendition.THUMB, full);
+    return new Frame(version, images);
+  }
+
+  /**
+   * @param version frame version, or null for whatever is latest
+   * @return the cached frame, or null if it is not (or no longer) cached
+   */
+  public Frame get(String locationStr, Long version) {
+    Frame frame = frames.get(locationStr);
+    if (frame == null || (version != null && frame.version() != version))
+      return null;
+    return frame;
+  }
+
+  public Rendition inlineRendition() {
+    Rendition r = Rendition.of(inline);
+    return r != null ? r : Rendition.MEDIUM;
+  }
+
+  /** Versioned URL per rendition; each URL always returns the same bytes, so clients can cache it. */
+  public Map<String, String> urls(String locationStr, long version) {
+    String query = "?location=" + URLEncoder.encode(locationStr, StandardCharsets.UTF_8) + "&v=" + version;
+    Map<String, String> urls = new LinkedHashMap<>();
+    for (Rendition r : Rendition.values())
+      urls.put(r.key(), "/api/frames/" + r.key() + query);
+    return urls;
+  }
+
+  private static byte[] scale(BufferedImage source, int width, float quality, byte[] full)
+      throws IOException {
+    if (source.getWidth() <= width)
+      return full;
+
+    // Halve repeatedly before the last step; a single bilinear pass aliases at 4-5x reductions
+    BufferedImage current = source;
+    while (current.getWidth() / 2 >= width)
+      current = resize(current, current.getWidth() / 2, Math.max(1, current.getHeight() / 2));
+    int height = Math.max(1, Math.round(source.getHeight() * (width / (float) source.getWidth())));
+    BufferedImage scaled = current.getWidth() == width ? current : resize(current, width, height);
+    return JpegCodec.encode(scaled, quality);
+  }
+
+  private static BufferedImage resize(BufferedImage source, int width, int height) {
+    BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+    Graphics2D g = scaled.createGraphics();
+    try {
+      g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+      g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+      g.drawImage(source, 0, 0, width, height, null);
+    } finally {
+      g.dispose();
+    }
+    return scaled;
+  }
+}
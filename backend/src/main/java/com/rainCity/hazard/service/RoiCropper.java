@@ -0,0 +1,117 @@
+package com.rainCity.hazard.service;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Polygon;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Cuts a camera frame down to the camera's region of interest before it is sent to the model.
+ * The frame is cropped to the ROI's bounding box; for polygons, pixels outside the polygon are
+ * filled with the detector's neutral letterbox grey so sky, buildings and timestamp banners
+ * produce neither work nor false positives. Boxes found on the crop are shifted back by
+ * {@link Crop#x()} and {@link Crop#y()} to full-frame pixels.
+ */
+@Component
+public class RoiCropper {
+
+  // YOLO pads letterboxed inputs with this grey, so the model treats it as "nothing here"
+  private static final Color MASK = new Color(114, 114, 114);
+
+  private final CameraRegistry cameraRegistry;
+
+  @Value("${hazard.roi.enabled:true}")
+  private boolean enabled = true;
+
+  @Value("${hazard.roi.jpeg-quality:0.9}")
+  private float jpegQuality = 0.9f;
+
+  // Crops that keep nearly the whole frame are not worth a re-encode
+  @Value("${hazard.roi.min-saving:0.1}")
+  private double minSaving = 0.1;
+
+  private final AtomicLong cropped = new AtomicLong();
+  private final AtomicLong pixelsIn = new AtomicLong();
+  private final AtomicLong pixelsOut = new AtomicLong();
+
+  /** The model's input and where it sits in the full frame. */
+  public record Crop(byte[] image, int x, int y, int width, int height) {
+  }
+
+  public RoiCropper(CameraRegistry cameraRegistry) {
+    this.cameraRegistry = cameraRegistry;
+  }
+
+  /** @return the cropped frame, or null when the camera has no ROI or the frame is unreadable */
+  public Crop crop(String locationStr, byte[] frame) {
+    if (!enabled)
+      return null;
+    CameraRegistry.CameraInfo camera = cameraRegistry.find(locationStr);
+    if (camera == null || camera.roi() == null)
+      return null;
+
+    try {
+      BufferedImage image = JpegCodec.decodeRgb(frame);
+      if (image == null)
+        return null;
+
+      CameraRegistry.Roi roi = camera.roi();
+      int w = image.getWidth();
+      int h = image.getHeight();
+      Polygon polygon = new Polygon();
+      for (int i = 0; i < roi.xs().length; i++)
+        polygon.addPoint((int) Math.round(roi.xs()[i] * w), (int) Math.round(roi.ys()[i] * h));
+
+      Rectangle bounds = polygon.getBounds().intersection(new Rectangle(0, 0, w, h));
+      if (bounds.isEmpty())
+        return null;
+      long area = (long) bounds.width * bounds.height;
+      if (roi.rectangle() && area > (1 - minSaving) * w * h)
+        return null;
+
+      BufferedImage out = new BufferedImage(bounds.width, bounds.height, BufferedImage.TYPE_INT_RGB);
+      Graphics2D g = out.createGraphics();
+      try {
+        if (!roi.rectangle()) {
+          g.setColor(MASK);
+          g.fillRect(0, 0, bounds.width, bounds.height);
+          polygon.translate(-bounds.x, -bounds.y);
+          g.setClip(polygon);
+        }
+        g.drawImage(image, -bounds.x, -bounds.y, null);
+      } finally {
+        g.dispose();
+      }
+
+      cropped.incrementAndGet();
+      pixelsIn.addAndGet((long) w * h);
+      pixelsOut.addAndGet(area);
+      return new Crop(JpegCodec.encode(out, jpegQuality), bounds.x, bounds.y, bounds.width, bounds.height);
+    } catch (IOException e) {
+      System.err.println("ROI crop failed for " + locationStr + ": " + e.getMessage());
+      return null;
+    }
+  }
+
+  /** Translates boxes found on {@code crop} to full-frame pixels. */
+  public static ExternalApiService.DetectionBox toFrame(ExternalApiService.DetectionBox b, Crop crop) {
+    return new ExternalApiService.DetectionBox(
+        b.label(), b.confidence(), b.x1() + crop.x(), b.y1() + crop.y(), b.x2() + crop.x(), b.y2() + crop.y());
+  }
+
+  public Map<String, Object> stats() {
+    Map<String, Object> stats = new LinkedHashMap<>();
+    stats.put("enabled", enabled);
+    stats.put("cropped", cropped.get());
+    long in = pixelsIn.get();
+    stats.put("pixelsKept", in > 0 ? (double) pixelsOut.get() / in : 1.0);
+    return stats;
+  }
+}
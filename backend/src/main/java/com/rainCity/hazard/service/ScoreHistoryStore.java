@@ -0,0 +1,758 @@
+package com.rainCity.hazard.service;
+
+import com.rainCity.hazard.model.HazardModels.DetailedTags;
+import com.rainCity.hazard.model.HazardModels.HazardResponse;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Embedded, append-only score history in memory-mapped primitive columns.
+ *
+ * <p>Raw samples are stored as four columns (timestamp, location id, score, tag bitmask) and
+ * rolled up into minute and hour buckets (count, sum, max, OR of tags, spike count). Every table
+ * is a sequence of fixed-size segments, one mapped file per column and segment, so a table grows
+ * without remapping and old data is retired by deleting whole segments: raw rows after
+ * {@code raw-retention-days}, minute buckets after {@code minute-retention-days}, since the
+ * coarser rollups still cover those ranges.
+ *
+ * <p>Samples are stamped with the frame's own timestamp, so queued or replayed frames land in
+ * the bucket they were captured in; per location, timestamps are kept non-decreasing. Each
+ * segment keeps the row offsets of every location, so a query reads only its own location's rows
+ * in the segments overlapping the range. Queries do not take the writer's lock: a row is
+ * published after its columns are written, and the row count is the only thing readers wait on.
+ * Buckets still open are served from memory and rebuilt from the raw tail after a restart.
+ */
+@Service
+public class ScoreHistoryStore {
+
+  // Tag bitmask bits
+  public static final int TAG_PERSON_LAYING = 1;
+  public static final int TAG_ACCIDENT = 1 << 1;
+  public static final int TAG_FALLEN_TREE = 1 << 2;
+  public static final int TAG_CONES = 1 << 3;
+  public static final int TAG_DEBRIS = 1 << 4;
+  public static final int TAG_PEDESTRIANS = 1 << 5;
+  public static final int TAG_SPIKE = 1 << 6;
+
+  public static final long MINUTE_MS = 60_000L;
+  public static final long HOUR_MS = 3_600_000L;
+  private static final long DAY_MS = 24 * HOUR_MS;
+
+  // Meta file slots (longs): rows written and first retained row of each table, then watermarks
+  private static final int META_RAW = 0;
+  private static final int META_MINUTE = 2;
+  private static final int META_HOUR = 4;
+  private static final int META_MINUTE_WATERMARK = 6;
+  private static final int META_HOUR_WATERMARK = 7;
+  private static final int META_SEGMENT_ROWS = 8;
+
+  @Value("${hazard.history.enabled:true}")
+  private boolean enabled;
+
+  @Value("${hazard.history.dir:data/history}")
+  private Path dir;
+
+  // Rows per segment file; fixed when the store is created
+  @Value("${hazard.history.segment-rows:1048576}")
+  private int segmentRows = 1 << 20;
+
+  // 0 keeps a table forever
+  @Value("${hazard.history.raw-retention-days:7}")
+  private int rawRetentionDays = 7;
+
+  @Value("${hazard.history.minute-retention-days:90}")
+  private int minuteRetentionDays = 90;
+
+  @Value("${hazard.history.hour-retention-days:0}")
+  private int hourRetentionDays = 0;
+
+  private FileChannel metaChannel;
+  private MappedByteBuffer meta;
+
+  private Table raw;
+  private Rollup minutes;
+  private Rollup hours;
+
+  private final Map<String, Integer> locationIds = new ConcurrentHashMap<>();
+  private final List<String> locationNames = new ArrayList<>();
+  private BufferedWriter locationLog;
+
+  // Latest timestamp per location id; later samples are never stamped before it
+  private final Map<Integer, Long> lastTimestamps = new HashMap<>();
+
+  public enum Resolution {
+    RAW, MINUTE, HOUR
+  }
+
+  /** One point of a history series; raw samples have {@code count == 1}. */
+  public record HistoryPoint(long t, int count, double avg, double max, int tags, int spikes) {
+
+    // Two rows for the same bucket, e.g. when a late frame reopened a bucket already written
+    HistoryPoint merge(HistoryPoint o) {
+      return new HistoryPoint(
+          t, count + o.count, (avg * count + o.avg * o.count) / (count + o.count), Math.max(max, o.max),
+          tags | o.tags, spikes + o.spikes);
+    }
+  }
+
+  private static final class Bucket {
+    final long start;
+    int count;
+    double sum;
+    double max = Double.NEGATIVE_INFINITY;
+    int tags;
+    int spikes;
+
+    Bucket(long start) {
+      this.start = start;
+    }
+
+    void add(double score, int mask) {
+      count++;
+      sum += score;
+      max = Math.max(max, score);
+      tags |= mask;
+      if ((mask & TAG_SPIKE) != 0)
+        spikes++;
+    }
+
+    HistoryPoint toPoint() {
+      return new HistoryPoint(start, count, sum / count, max, tags, spikes);
+    }
+  }
+
+  @PostConstruct
+  public synchronized void open() {
+    if (!enabled)
+      return;
+
+    try {
+      Files.createDirectories(dir);
+      metaChannel = FileChannel.open(
+          dir.resolve("history.meta"), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+      meta = metaChannel.map(FileChannel.MapMode.READ_WRITE, 0, 128);
+
+      // Row numbers map to segments by the size the store was created with
+      long stored = meta.getLong(META_SEGMENT_ROWS * 8);
+      if (stored > 0) {
+        if (stored != segmentRows)
+          System.out.println(" Score history keeps its existing segment size of " + stored + " rows");
+        segmentRows = (int) stored;
+      } else {
+        segmentRows = Math.max(1, Math.min(segmentRows, Integer.MAX_VALUE / 8));
+        meta.putLong(META_SEGMENT_ROWS * 8, segmentRows);
+      }
+
+      raw = new Table("raw", META_RAW, new int[] {8, 4, 8, 4});
+      minutes = new Rollup(new Table("minute", META_MINUTE, new int[] {8, 4, 4, 8, 8, 4, 4}), MINUTE_MS, META_MINUTE_WATERMARK);
+      hours = new Rollup(new Table("hour", META_HOUR, new int[] {8, 4, 4, 8, 8, 4, 4}), HOUR_MS, META_HOUR_WATERMARK);
+
+      Path names = dir.resolve("locations.txt");
+      if (Files.exists(names)) {
+        for (String name : Files.readAllLines(names, StandardCharsets.UTF_8)) {
+          locationIds.put(name, locationNames.size());
+          locationNames.add(name);
+        }
+      }
+      locationLog = Files.newBufferedWriter(
+          names, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+
+      seedLastTimestamps();
+      minutes.rebuildOpenBuckets();
+      hours.rebuildOpenBuckets();
+
+      System.out.println(
+          "📈 Score history: " + sampleCount() + " samples, " + minutes.table.retainedRows() + " minute and "
+              + hours.table.retainedRows() + " hour buckets, " + locationNames.size() + " locations");
+    } catch (IOException e) {
+      System.err.println(" Score history unavailable: " + e.getMessage());
+      enabled = false;
+    }
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /** Records a response at the time its frame was captured. */
+  public void append(HazardResponse response) {
+    if (response == null)
+      return;
+    append(response.getLocationString(), capturedAt(response), response.getScore(), tagMask(response));
+  }
+
+  // The response timestamp is the frame's capture time; the clock is only a fallback
+  private static long capturedAt(HazardResponse response) {
+    try {
+      if (response.getTimestamp() != null)
+        return Instant.parse(response.getTimestamp()).toEpochMilli();
+    } catch (DateTimeParseException e) {
+      // fall through
+    }
+    return System.currentTimeMillis();
+  }
+
+  public synchronized void append(String location, long timestamp, double score, int tags) {
+    if (!enabled || location == null)
+      return;
+
+    try {
+      int loc = locationId(location);
+      // A location's rows stay sorted, so its offsets in a segment can be binary searched
+      long t = Math.max(timestamp, lastTimestamps.getOrDefault(loc, Long.MIN_VALUE));
+      lastTimestamps.put(loc, t);
+
+      Table.Append row = raw.append();
+      row.segment().putLong(0, row.offset(), t);
+      row.segment().putInt(1, row.offset(), loc);
+      row.segment().putDouble(2, row.offset(), score);
+      row.segment().putInt(3, row.offset(), tags);
+      raw.commit(row, loc, t);
+
+      minutes.add(loc, t, score, tags);
+      hours.add(loc, t, score, tags);
+    } catch (IOException e) {
+      System.err.println(" Score history write error: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Series for one location between {@code from} and {@code to} (epoch millis, inclusive start,
+   * exclusive end) at the given resolution, oldest first. Reads only that location's rows and
+   * does not wait for appends.
+   */
+  public List<HistoryPoint> query(String location, long from, long to, Resolution resolution) {
+    List<HistoryPoint> points = new ArrayList<>();
+    Integer loc = location != null ? locationIds.get(location) : null;
+    if (!enabled || loc == null || to <= from)
+      return points;
+
+    if (resolution == Resolution.RAW) {
+      raw.scan(loc, from, to, (segment, offset, t) -> {
+        double score = segment.getDouble(2, offset);
+        int tags = segment.getInt(3, offset);
+        points.add(new HistoryPoint(t, 1, score, score, tags, (tags & TAG_SPIKE) != 0 ? 1 : 0));
+      });
+      return points;
+    }
+    return (resolution == Resolution.MINUTE ? minutes : hours).query(loc, from, to);
+  }
+
+  /**
+   * Picks the finest resolution that keeps a range to a chart-sized number of points and is still
+   * retained at {@code from}.
+   */
+  public Resolution resolutionFor(long from, long to) {
+    long span = to - from;
+    long now = System.currentTimeMillis();
+    if (span <= 6 * HOUR_MS && covers(rawRetentionDays, from, now))
+      return Resolution.RAW;
+    if (span <= 7 * DAY_MS && covers(minuteRetentionDays, from, now))
+      return Resolution.MINUTE;
+    return Resolution.HOUR;
+  }
+
+  private static boolean covers(int retentionDays, long from, long now) {
+    return retentionDays <= 0 || from >= now - retentionDays * DAY_MS;
+  }
+
+  public long sampleCount() {
+    return enabled ? raw.retainedRows() : 0;
+  }
+
+  /** Deletes segments whose newest row is older than the table's retention. */
+  @Scheduled(
+      fixedDelayString = "${hazard.history.retention-check-ms:3600000}",
+      initialDelayString = "${hazard.history.retention-check-ms:3600000}")
+  public synchronized void applyRetention() {
+    if (!enabled)
+      return;
+    long now = System.currentTimeMillis();
+    try {
+      int dropped = raw.retain(rawRetentionDays, now)
+          + minutes.table.retain(minuteRetentionDays, now)
+          + hours.table.retain(hourRetentionDays, now);
+      if (dropped > 0)
+        System.out.println("📈 Score history retired " + dropped + " segments, " + sampleCount() + " samples kept");
+    } catch (IOException e) {
+      System.err.println(" Score history retention error: " + e.getMessage());
+    }
+  }
+
+  @PreDestroy
+  public synchronized void close() {
+    if (!enabled)
+      return;
+    try {
+      raw.force();
+      minutes.table.force();
+      hours.table.force();
+      meta.force();
+      locationLog.close();
+      metaChannel.close();
+      raw.close();
+      minutes.table.close();
+      hours.table.close();
+    } catch (IOException e) {
+      System.err.println(" Score history close error: " + e.getMessage());
+    }
+  }
+
+  public static int tagMask(HazardResponse response) {
+    int mask = response.isSpike() ? TAG_SPIKE : 0;
+    DetailedTags tags = response.getInfo();
+    if (tags == null)
+      return mask;
+    if (tags.isPersonLaying())
+      mask |= TAG_PERSON_LAYING;
+    if (tags.isAccident())
+      mask |= TAG_ACCIDENT;
+    if (tags.isFallenTree())
+      mask |= TAG_FALLEN_TREE;
+    if (tags.isCones())
+      mask |= TAG_CONES;
+    if (tags.getNumberOfDebrisItems() > 0)
+      mask |= TAG_DEBRIS;
+    if (tags.getPedestrianAmount() > 0)
+      mask |= TAG_PEDESTRIANS;
+    return mask;
+  }
+
+  private int locationId(String location) throws IOException {
+    Integer id = locationIds.get(location);
+    if (id != null)
+      return id;
+    int next = locationNames.size();
+    locationNames.add(location);
+    locationLog.write(location.replace('\n', ' '));
+    locationLog.newLine();
+    locationLog.flush();
+    locationIds.put(location, next);
+    return next;
+  }
+
+  // Locations seen in the newest raw segment; older ones start again from their next sample
+  private void seedLastTimestamps() {
+    Segment last = raw.last();
+    if (last == null)
+      return;
+    last.index().forEach((loc, rows) -> {
+      int size = rows.size();
+      if (size > 0)
+        lastTimestamps.put(loc, last.getLong(0, rows.offsets()[size - 1]));
+    });
+  }
+
+  /** Minute or hour buckets: one open bucket per location in memory, closed ones in a table. */
+  private final class Rollup {
+    final Table table;
+    final long width;
+    final int watermarkSlot;
+    // Open bucket per location id; guarded by itself, since queries read it without the writer lock
+    final Map<Integer, Bucket> open = new HashMap<>();
+    // Bumped after each write, so a query can tell a bucket moved from memory to the table under it
+    volatile long flushes;
+
+    Rollup(Table table, long width, int watermarkSlot) {
+      this.table = table;
+      this.width = width;
+      this.watermarkSlot = watermarkSlot;
+    }
+
+    // Buckets before the watermark are written out; the bucket at the watermark is still open
+    long watermark() {
+      return meta.getLong(watermarkSlot * 8);
+    }
+
+    void add(int loc, long t, double score, int tags) throws IOException {
+      long start = t - Math.floorMod(t, width);
+      synchronized (open) {
+        if (start > watermark()) {
+          // The clock has passed every open bucket before this one
+          List<Map.Entry<Integer, Bucket>> closed = new ArrayList<>();
+          for (Map.Entry<Integer, Bucket> e : open.entrySet()) {
+            if (e.getValue().start < start)
+              closed.add(e);
+          }
+          closed.sort((a, b) -> Long.compare(a.getValue().start, b.getValue().start));
+          for (Map.Entry<Integer, Bucket> e : closed) {
+            write(e.getKey(), e.getValue());
+            open.remove(e.getKey());
+          }
+          meta.putLong(watermarkSlot * 8, start);
+        }
+
+        // A location's earlier bucket, e.g. one a late frame reopened behind the watermark
+        Bucket current = open.get(loc);
+        if (current != null && current.start < start) {
+          write(loc, current);
+          open.remove(loc);
+        }
+        open.computeIfAbsent(loc, k -> new Bucket(start)).add(score, tags);
+      }
+    }
+
+    private void write(int loc, Bucket b) throws IOException {
+      Table.Append row = table.append();
+      Segment s = row.segment();
+      int o = row.offset();
+      s.putLong(0, o, b.start);
+      s.putInt(1, o, loc);
+      s.putInt(2, o, b.count);
+      s.putDouble(3, o, b.sum);
+      s.putDouble(4, o, b.max);
+      s.putInt(5, o, b.tags);
+      s.putInt(6, o, b.spikes);
+      table.commit(row, loc, b.start);
+      flushes++;
+    }
+
+    List<HistoryPoint> query(int loc, long from, long to) {
+      while (true) {
+        long seen = flushes;
+        HistoryPoint pending;
+        synchronized (open) {
+          Bucket b = open.get(loc);
+          pending = b != null ? b.toPoint() : null;
+        }
+
+        List<HistoryPoint> points = new ArrayList<>();
+        table.scan(loc, from, to, (segment, offset, t) -> {
+          int count = segment.getInt(2, offset);
+          mergeInto(points, new HistoryPoint(
+              t, count, segment.getDouble(3, offset) / count, segment.getDouble(4, offset),
+              segment.getInt(5, offset), segment.getInt(6, offset)));
+        });
+        if (pending != null && pending.t() >= from && pending.t() < to)
+          mergeInto(points, pending);
+        // Retry if the open bucket was written out while the table was being read
+        if (flushes == seen)
+          return points;
+      }
+    }
+
+    private static void mergeInto(List<HistoryPoint> points, HistoryPoint p) {
+      int last = points.size() - 1;
+      if (last >= 0 && points.get(last).t() == p.t())
+        points.set(last, points.get(last).merge(p));
+      else
+        points.add(p);
+    }
+
+    // Raw samples at or after the watermark belong to buckets that had not been written yet
+    void rebuildOpenBuckets() {
+      long watermark = watermark();
+      for (Segment s : raw.segments) {
+        if (s.maxTime() < watermark)
+          continue;
+        long end = Math.min(s.base + segmentRows, raw.published);
+        for (int o = 0; s.base + o < end; o++) {
+          long t = s.getLong(0, o);
+          if (t < watermark)
+            continue;
+          long start = t - Math.floorMod(t, width);
+          open.computeIfAbsent(s.getInt(1, o), k -> new Bucket(start)).add(s.getDouble(2, o), s.getInt(3, o));
+        }
+      }
+    }
+  }
+
+  @FunctionalInterface
+  private interface RowVisitor {
+    void visit(Segment segment, int offset, long t);
+  }
+
+  /**
+   * Fixed-width columns split into segments of {@code segmentRows} rows. Row numbers are global
+   * and never reused; the row count and first retained row live in the meta file. One writer
+   * appends under the store's lock; readers see rows up to {@link #published}.
+   */
+  private final class Table {
+    final String name;
+    final int metaSlot;
+    final int[] widths;
+    volatile List<Segment> segments;
+    volatile long published;
+
+    record Append(Segment segment, long row, int offset) {
+    }
+
+    Table(String name, int metaSlot, int[] widths) throws IOException {
+      this.name = name;
+      this.metaSlot = metaSlot;
+      this.widths = widths;
+      long rows = meta.getLong(metaSlot * 8);
+      long first = meta.getLong((metaSlot + 1) * 8);
+      List<Segment> loaded = new ArrayList<>();
+      for (long index = first / segmentRows; index * segmentRows < rows; index++)
+        loaded.add(new Segment(this, index));
+      segments = List.copyOf(loaded);
+      published = rows;
+      // The newest segment is indexed by the writer from here on
+      if (!loaded.isEmpty())
+        last().index();
+    }
+
+    Segment last() {
+      List<Segment> s = segments;
+      return s.isEmpty() ? null : s.get(s.size() - 1);
+    }
+
+    long retainedRows() {
+      List<Segment> s = segments;
+      return s.isEmpty() ? 0 : published - s.get(0).base;
+    }
+
+    // Where the next row goes, opening a new segment when the current one is full
+    Append append() throws IOException {
+      long row = published;
+      Segment segment = last();
+      if (segment == null || row >= segment.base + segmentRows) {
+        segment = new Segment(this, row / segmentRows);
+        segment.index();
+        List<Segment> grown = new ArrayList<>(segments);
+        grown.add(segment);
+        segments = List.copyOf(grown);
+        if (grown.size() == 1)
+          meta.putLong((metaSlot + 1) * 8, segment.base);
+      }
+      return new Append(segment, row, (int) (row - segment.base));
+    }
+
+    // Written after the row's columns, so a torn append is never visible
+    void commit(Append row, int loc, long t) {
+      row.segment().widen(t);
+      meta.putLong(metaSlot * 8, row.row() + 1);
+      published = row.row() + 1;
+      row.segment().indexRow(loc, row.offset());
+    }
+
+    void scan(int loc, long from, long to, RowVisitor visitor) {
+      long limit = published;
+      for (Segment segment : segments) {
+        if (segment.maxTime() < from || segment.minTime() >= to)
+          continue;
+        RowList rows = segment.index().get(loc);
+        if (rows == null)
+          continue;
+        // Size before offsets: the array read afterwards always holds at least that many
+        int size = rows.size();
+        int[] offsets = rows.offsets();
+
+        int lo = 0;
+        int hi = size;
+        while (lo < hi) {
+          int mid = (lo + hi) >>> 1;
+          if (segment.getLong(0, offsets[mid]) < from)
+            lo = mid + 1;
+          else
+            hi = mid;
+        }
+        for (int i = lo; i < size; i++) {
+          if (segment.base + offsets[i] >= limit)
+            break;
+          long t = segment.getLong(0, offsets[i]);
+          if (t >= to)
+            break;
+          visitor.visit(segment, offsets[i], t);
+        }
+      }
+    }
+
+    /** @return how many segments were deleted */
+    int retain(int retentionDays, long now) throws IOException {
+      if (retentionDays <= 0)
+        return 0;
+      long cutoff = now - retentionDays * DAY_MS;
+      List<Segment> kept = new ArrayList<>(segments);
+      int dropped = 0;
+      // The newest segment stays, so appends always have somewhere to go
+      while (kept.size() > 1 && kept.get(0).maxTime() < cutoff) {
+        Segment old = kept.remove(0);
+        segments = List.copyOf(kept);
+        meta.putLong((metaSlot + 1) * 8, kept.get(0).base);
+        // Readers still holding the segment keep its mapping until they are done
+        old.delete();
+        dropped++;
+      }
+      return dropped;
+    }
+
+    void force() {
+      for (Segment s : segments)
+        s.force();
+    }
+
+    void close() throws IOException {
+      for (Segment s : segments)
+        s.close();
+    }
+  }
+
+  /**
+   * One segment of a table: a mapped file per column plus its time bounds. The row offsets of
+   * each location are indexed on first use, and kept up to date by the writer after that.
+   */
+  private final class Segment {
+    final Table table;
+    final long base;
+    final Path[] files;
+    final FileChannel[] channels;
+    final MappedByteBuffer[] columns;
+    final Path boundsFile;
+    final FileChannel boundsChannel;
+    // Lowest and highest timestamp written; only ever widened
+    final MappedByteBuffer bounds;
+    private volatile Map<Integer, RowList> index;
+
+    Segment(Table table, long number) throws IOException {
+      this.table = table;
+      this.base = number * segmentRows;
+      String prefix = table.name + "-" + String.format("%08d", number);
+      files = new Path[table.widths.length];
+      channels = new FileChannel[table.widths.length];
+      columns = new MappedByteBuffer[table.widths.length];
+      for (int c = 0; c < table.widths.length; c++) {
+        files[c] = dir.resolve(prefix + "." + c + ".col");
+        channels[c] = openFile(files[c]);
+        columns[c] = channels[c].map(FileChannel.MapMode.READ_WRITE, 0, (long) segmentRows * table.widths[c]);
+      }
+      boundsFile = dir.resolve(prefix + ".bounds");
+      boundsChannel = openFile(boundsFile);
+      boolean fresh = boundsChannel.size() < 16;
+      bounds = boundsChannel.map(FileChannel.MapMode.READ_WRITE, 0, 16);
+      if (fresh) {
+        bounds.putLong(0, Long.MAX_VALUE);
+        bounds.putLong(8, Long.MIN_VALUE);
+      }
+    }
+
+    private FileChannel openFile(Path file) throws IOException {
+      return FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    long minTime() {
+      return bounds.getLong(0);
+    }
+
+    long maxTime() {
+      return bounds.getLong(8);
+    }
+
+    void widen(long t) {
+      if (t < minTime())
+        bounds.putLong(0, t);
+      if (t > maxTime())
+        bounds.putLong(8, t);
+    }
+
+    Map<Integer, RowList> index() {
+      Map<Integer, RowList> built = index;
+      if (built == null) {
+        synchronized (this) {
+          built = index;
+          if (built == null) {
+            built = new ConcurrentHashMap<>();
+            long end = Math.min(base + segmentRows, table.published);
+            for (int o = 0; base + o < end; o++)
+              built.computeIfAbsent(getInt(1, o), k -> new RowList()).add(o);
+            index = built;
+          }
+        }
+      }
+      return built;
+    }
+
+    // Only the newest segment gets rows, and its index is always built before the first one
+    void indexRow(int loc, int offset) {
+      index.computeIfAbsent(loc, k -> new RowList()).add(offset);
+    }
+
+    long getLong(int c, int offset) {
+      return columns[c].getLong(offset * 8);
+    }
+
+    double getDouble(int c, int offset) {
+      return columns[c].getDouble(offset * 8);
+    }
+
+    int getInt(int c, int offset) {
+      return columns[c].getInt(offset * 4);
+    }
+
+    void putLong(int c, int offset, long v) {
+      columns[c].putLong(offset * 8, v);
+    }
+
+    void putDouble(int c, int offset, double v) {
+      columns[c].putDouble(offset * 8, v);
+    }
+
+    void putInt(int c, int offset, int v) {
+      columns[c].putInt(offset * 4, v);
+    }
+
+    void force() {
+      for (MappedByteBuffer column : columns)
+        column.force();
+      bounds.force();
+    }
+
+    void close() throws IOException {
+      for (FileChannel channel : channels)
+        channel.close();
+      boundsChannel.close();
+    }
+
+    void delete() throws IOException {
+      close();
+      for (Path file : files)
+        Files.deleteIfExists(file);
+      Files.deleteIfExists(boundsFile);
+    }
+  }
+
+  /** Row offsets of one location in a segment; one writer appends, readers see a prefix. */
+  private static final class RowList {
+    private volatile int[] offsets = new int[16];
+    private volatile int size;
+
+    // Element, then array, then size: a reader that saw the size finds every offset below it
+    void add(int offset) {
+      int[] a = offsets;
+      int n = size;
+      if (n == a.length)
+        a = Arrays.copyOf(a, n * 2);
+      a[n] = offset;
+      offsets = a;
+      size = n + 1;
+    }
+
+    int size() {
+      return size;
+    }
+
+    int[] offsets() {
+      return offsets;
+    }
+  }
+}
@@ -0,0 +1,333 @@
+package com.rainCity.hazard.service;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.rainCity.hazard.model.HazardModels.HazardResponse;
+import com.rainCity.hazard.model.HazardModels.JpegDataUrl;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Append-only local snapshot of the monitored locations and the latest result per location
+ * (response metadata plus the labeled frame), so a restarted backend can serve data before its
+ * first pipeline pass.
+ *
+ * <p>Each record is {@code type, length, payload, crc32}. Replaying the file keeps the last
+ * result per location; a torn record at the tail is truncated away. The file is rewritten with
+ * only the live entries once it has grown {@code hazard.snapshot.compact-after-bytes} since the
+ * last rewrite. A description that arrives after the result is a small record of its own rather
+ * than a second copy of the frame.
+ */
+@Service
+public class SnapshotStore {
+
+  private static final byte MONITOR = 1;
+  private static final byte RESULT = 2;
+  private static final byte DESCRIPTION = 3;
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+
+  // The image travels separately as raw bytes; keep it out of the JSON without ever encoding it
+  private final ObjectWriter metadataWriter = new ObjectMapper()
+      .addMixIn(HazardResponse.class, WithoutImage.class)
+      .writerFor(HazardResponse.class);
+
+  @JsonIgnoreProperties("img")
+  private abstract static class WithoutImage {
+  }
+
+  @Value("${hazard.snapshot.enabled:true}")
+  private boolean enabled;
+
+  @Value("${hazard.snapshot.path:data/hazard-snapshot.bin}")
+  private Path path;
+
+  @Value("${hazard.snapshot.compact-after-bytes:67108864}")
+  private long compactAfterBytes;
+
+  // Live state mirrored from the file; guarded by this
+  private final Set<String> monitored = new LinkedHashSet<>();
+  private final Map<String, StoredResult> results = new LinkedHashMap<>();
+
+  private DataOutputStream out;
+  private long fileBytes;
+  // Live entries alone may exceed the threshold, so compaction is measured from the last rewrite
+  private long compactedBytes;
+
+  private record StoredResult(byte[] metadata, byte[] image) {
+  }
+
+  @PostConstruct
+  public synchronized void restore() {
+    if (!enabled)
+      return;
+
+    try {
+      if (path.getParent() != null)
+        Files.createDirectories(path.getParent());
+
+      long validBytes = 0;
+      if (Files.exists(path)) {
+        validBytes = replay();
+        long size = Files.size(path);
+        if (validBytes < size) {
+          System.err.println(
+              " Snapshot has a torn tail, truncating " + (size - validBytes) + " bytes");
+          try (FileChannel ch = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            ch.truncate(validBytes);
+          }
+        }
+      }
+
+      fileBytes = validBytes;
+      openForAppend();
+      System.out.println(
+          "💾 Restored snapshot: " + monitored.size() + " monitored locations, "
+              + results.size() + " results (" + fileBytes + " bytes)");
+
+      if (fileBytes - compactedBytes > compactAfterBytes)
+        compact();
+    } catch (IOException e) {
+      System.err.println(" Snapshot restore error: " + e.getMessage());
+      enabled = false;
+    }
+  }
+
+  /** Locations that were being monitored when the snapshot was last written. */
+  public synchronized Set<String> monitoredLocations() {
+    return new LinkedHashSet<>(monitored);
+  }
+
+  /** Latest stored response per location, with the labeled frame restored as a data URL. */
+  public synchronized Map<String, HazardResponse> latestResults() {
+    Map<String, HazardResponse> latest = new LinkedHashMap<>();
+    for (Map.Entry<String, StoredResult> e : results.entrySet()) {
+      try {
+        latest.put(e.getKey(), toResponse(e.getValue()));
+      } catch (IOException ex) {
+        System.err.println(" Skipping unreadable snapshot entry " + e.getKey() + ": " + ex.getMessage());
+      }
+    }
+    return Collections.unmodifiableMap(latest);
+  }
+
+  public synchronized void recordMonitored(String location) {
+    if (!enabled || !monitored.add(location))
+      return;
+
+    try {
+      ByteArrayOutputStream buf = new ByteArrayOutputStream();
+      new DataOutputStream(buf).writeUTF(location);
+      append(MONITOR, buf.toByteArray());
+    } catch (IOException e) {
+      System.err.println(" Snapshot write error: " + e.getMessage());
+    }
+  }
+
+  public synchronized void recordResult(HazardResponse response, byte[] labeledImage) {
+    if (!enabled || response == null)
+      return;
+
+    try {
+      StoredResult stored = new StoredResult(metadataOf(response), labeledImage != null ? labeledImage : new byte[0]);
+      results.put(response.getLocationString(), stored);
+      append(RESULT, encodeResult(response.getLocationString(), stored));
+
+      if (fileBytes - compactedBytes > compactAfterBytes)
+        compact();
+    } catch (IOException e) {
+      System.err.println(" Snapshot write error: " + e.getMessage());
+    }
+  }
+
+  /** Sets the description of the stored result, if it is still the frame with this id. */
+  public synchronized void recordDescription(String location, String id, String description) {
+    if (!enabled || location == null || id == null)
+      return;
+
+    try {
+      if (!describe(location, id, description))
+        return;
+      ByteArrayOutputStream buf = new ByteArrayOutputStream();
+      DataOutputStream data = new DataOutputStream(buf);
+      data.writeUTF(location);
+      data.writeUTF(id);
+      data.writeUTF(description != null ? description : "");
+      append(DESCRIPTION, buf.toByteArray());
+    } catch (IOException e) {
+      System.err.println(" Snapshot write error: " + e.getMessage());
+    }
+  }
+
+  @PreDestroy
+  public synchronized void close() {
+    if (out == null)
+      return;
+    try {
+      out.close();
+    } catch (IOException e) {
+      System.err.println(" Snapshot close error: " + e.getMessage());
+    }
+    out = null;
+  }
+
+  private long replay() throws IOException {
+    long offset = 0;
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+      while (true) {
+        byte type;
+        try {
+          type = in.readByte();
+        } catch (EOFException e) {
+          break;
+        }
+
+        byte[] payload;
+        try {
+          int length = in.readInt();
+          if (length < 0 || length > 64 * 1024 * 1024)
+            break;
+          payload = new byte[length];
+          in.readFully(payload);
+          int crc = in.readInt();
+          if (crc != crc(type, payload))
+            break;
+        } catch (EOFException e) {
+          break;
+        }
+
+        apply(type, payload);
+        offset += 1 + 4 + payload.length + 4;
+      }
+    }
+    return offset;
+  }
+
+  private void apply(byte type, byte[] payload) throws IOException {
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+    if (type == MONITOR) {
+      monitored.add(in.readUTF());
+    } else if (type == RESULT) {
+      String location = in.readUTF();
+      byte[] metadata = new byte[in.readInt()];
+      in.readFully(metadata);
+      byte[] image = new byte[in.readInt()];
+      in.readFully(image);
+      results.put(location, new StoredResult(metadata, image));
+    } else if (type == DESCRIPTION) {
+      describe(in.readUTF(), in.readUTF(), in.readUTF());
+    }
+  }
+
+  // Rewrites only the metadata; the frame bytes are kept as they are
+  private boolean describe(String location, String id, String description) throws IOException {
+    StoredResult stored = results.get(location);
+    if (stored == null)
+      return false;
+    HazardResponse response = objectMapper.readValue(stored.metadata(), HazardResponse.class);
+    if (!id.equals(response.getId()))
+      return false;
+    response.setDescription(description);
+    results.put(location, new StoredResult(metadataOf(response), stored.image()));
+    return true;
+  }
+
+  private void compact() throws IOException {
+    Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+    close();
+
+    long written = 0;
+    try (DataOutputStream tmpOut = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+      for (String location : monitored) {
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        new DataOutputStream(buf).writeUTF(location);
+        written += writeRecord(tmpOut, MONITOR, buf.toByteArray());
+      }
+      for (Map.Entry<String, StoredResult> e : results.entrySet()) {
+        written += writeRecord(tmpOut, RESULT, encodeResult(e.getKey(), e.getValue()));
+      }
+    }
+
+    Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    System.out.println("💾 Compacted snapshot: " + fileBytes + " -> " + written + " bytes");
+    fileBytes = written;
+    compactedBytes = written;
+    openForAppend();
+  }
+
+  private void openForAppend() throws IOException {
+    OutputStream file = Files.newOutputStream(path, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    out = new DataOutputStream(new BufferedOutputStream(file));
+  }
+
+  private void append(byte type, byte[] payload) throws IOException {
+    if (out == null)
+      openForAppend();
+    fileBytes += writeRecord(out, type, payload);
+    out.flush();
+  }
+
+  private static long writeRecord(DataOutputStream target, byte type, byte[] payload) throws IOException {
+    target.writeByte(type);
+    target.writeInt(payload.length);
+    target.write(payload);
+    target.writeInt(crc(type, payload));
+    return 1 + 4 + payload.length + 4;
+  }
+
+  private static int crc(byte type, byte[] payload) {
+    CRC32 crc = new CRC32();
+    crc.update(type);
+    crc.update(payload);
+    return (int) crc.getValue();
+  }
+
+  private static byte[] encodeResult(String location, StoredResult stored) throws IOException {
+    ByteArrayOutputStream buf = new ByteArrayOutputStream(stored.image().length + stored.metadata().length + 64);
+    DataOutputStream data = new DataOutputStream(buf);
+    data.writeUTF(location);
+    data.writeInt(stored.metadata().length);
+    data.write(stored.metadata());
+    data.writeInt(stored.image().length);
+    data.write(stored.image());
+    return buf.toByteArray();
+  }
+
+  private byte[] metadataOf(HazardResponse response) throws IOException {
+    return metadataWriter.writeValueAsBytes(response);
+  }
+
+  private HazardResponse toResponse(StoredResult stored) throws IOException {
+    HazardResponse response;
+    try (InputStream in = new ByteArrayInputStream(stored.metadata())) {
+      response = objectMapper.readValue(in, HazardResponse.class);
+    }
+    if (stored.image().length > 0)
+      response.setImage(new JpegDataUrl(stored.image()));
+    return response;
+  }
+}
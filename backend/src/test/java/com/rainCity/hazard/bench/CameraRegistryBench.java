@@ -0,0 +1,121 @@
+package com.rainCity.hazard.bench;
+
+import com.rainCity.hazard.service.CameraRegistry;
+import java.io.BufferedWriter;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import org.springframework.core.io.DefaultResourceLoader;
+
+/**
+ * Loads synthetic camera datasets in the {@code data.json} format and reports load time, heap
+ * growth, and lookup throughput while another thread keeps reloading the registry.
+ *
+ * <p>Lives with the tests so it stays out of the application jar. Run with {@code java -cp
+ * target/test-classes:target/classes:<test deps> com.rainCity.hazard.bench.CameraRegistryBench
+ * [sizes...]}; sizes default to 1000 10000 100000.
+ */
+public class CameraRegistryBench {
+
+  public static void main(String[] args) throws Exception {
+    int[] sizes = args.length > 0
+        ? Arrays.stream(args).mapToInt(Integer::parseInt).toArray()
+        : new int[] {1_000, 10_000, 100_000};
+
+    System.out.printf(
+        "%10s %10s %10s %10s %12s %16s%n", "cameras", "file_kb", "cold_ms", "warm_ms", "heap_kb", "lookups/s");
+    for (int size : sizes) {
+      Path file = Files.createTempFile("cameras-" + size + "-", ".json");
+      try {
+        writeDataset(file, size);
+        run(file, size);
+      } finally {
+        Files.deleteIfExists(file);
+      }
+    }
+  }
+
+  private static void run(Path file, int size) throws Exception {
+    CameraRegistry registry = new CameraRegistry(new DefaultResourceLoader(), file.toUri().toString(), true);
+
+    long heapBefore = usedHeap();
+    CameraRegistry.ReloadResult first = registry.reload();
+    long heapAfter = usedHeap();
+    if (!first.swapped())
+      throw new IllegalStateException("Load failed: " + first.error());
+
+    // The registry logs every load; keep the race below quiet
+    PrintStream out = System.out;
+    System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    CameraRegistry.ReloadResult warm = registry.reload();
+
+    // Lookups race against continuous reloads; every lookup must hit
+    AtomicBoolean running = new AtomicBoolean(true);
+    Thread reloader = new Thread(() -> {
+      while (running.get())
+        registry.reload();
+    });
+    reloader.start();
+
+    AtomicLong misses = new AtomicLong();
+    Random random = new Random(42);
+    long lookups = 0;
+    long end = System.nanoTime() + 2_000_000_000L;
+    while (System.nanoTime() < end) {
+      for (int i = 0; i < 1000; i++) {
+        String key = "tcm" + random.nextInt(size);
+        if (registry.find(key) == null)
+          misses.incrementAndGet();
+      }
+      lookups += 1000;
+    }
+    running.set(false);
+    reloader.join();
+    System.setOut(out);
+
+    if (misses.get() > 0)
+      throw new IllegalStateException(misses.get() + " lookups missed during reload");
+
+    System.out.printf(
+        "%10d %10d %10d %10d %12d %16d%n",
+        size,
+        Files.size(file) / 1024,
+        first.millis(),
+        warm.millis(),
+        Math.max(0, heapAfter - heapBefore) / 1024,
+        lookups / 2);
+  }
+
+  // Same shape as data.json, including the nested geom object the parser has to skip
+  private static void writeDataset(Path file, int size) throws Exception {
+    Random random = new Random(size);
+    try (BufferedWriter w = Files.newBufferedWriter(file)) {
+      w.write("[\n");
+      for (int i = 0; i < size; i++) {
+        double lat = 49.2 + random.nextDouble() * 0.1;
+        double lon = -123.2 + random.nextDouble() * 0.2;
+        w.write(String.format(
+            "{\"geom\":{\"type\":\"Feature\",\"geometry\":{\"coordinates\":[%f,%f],\"type\":\"Point\"},"
+                + "\"properties\":{}},\"mapid\":\"TCM%d\",\"name\":\"Synthetic Camera %d\","
+                + "\"url\":\"https://trafficcams.vancouver.ca/cam%d.htm\",\"geo_local_area\":\"Area %d\","
+                + "\"geo_point_2d\":{\"lon\":%f,\"lat\":%f}}%s%n",
+            lon, lat, i, i, i, i % 22, lon, lat, i + 1 < size ? "," : ""));
+      }
+      w.write("]\n");
+    }
+  }
+
+  private static long usedHeap() throws InterruptedException {
+    Runtime rt = Runtime.getRuntime();
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+      Thread.sleep(50);
+    }
+    return rt.totalMemory() - rt.freeMemory();
+  }
+}
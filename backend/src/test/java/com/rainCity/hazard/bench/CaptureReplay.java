@@ -0,0 +1,263 @@
+package com.rainCity.hazard.bench;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+import com.rainCity.hazard.model.HazardModels.Coordinates;
+import com.rainCity.hazard.model.HazardModels.HazardResponse;
+import com.rainCity.hazard.service.CameraRegistry;
+import com.rainCity.hazard.service.CaptureRecorder;
+import com.rainCity.hazard.service.ExternalApiService;
+import com.rainCity.hazard.service.FanoutService;
+import com.rainCity.hazard.service.HeatmapGrid;
+import com.rainCity.hazard.service.LatestStateStore;
+import com.rainCity.hazard.service.OverlayRenderer;
+import com.rainCity.hazard.service.PipelineItem;
+import com.rainCity.hazard.service.ProcessingService;
+import com.rainCity.hazard.service.RenditionService;
+import com.rainCity.hazard.service.RoiCropper;
+import com.rainCity.hazard.service.ScoreHistoryStore;
+import com.rainCity.hazard.service.SnapshotStore;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+/**
+ * Replays a capture written by {@link CaptureRecorder} through {@link ProcessingService} scoring
+ * and the {@link FanoutService} broadcast path, with no network: camera fetches, detections and
+ * baselines come from the capture, LLM and Supabase calls are no-ops, and broadcasts go to a
+ * counting channel instead of a broker.
+ *
+ * <p>Run with {@code java -cp target/test-classes:target/classes:<test deps>
+ * com.rainCity.hazard.bench.CaptureReplay <capture.bin> [--speed N] [--threads N] [--repeat N]
+ * [--emulate-detect]}. {@code --speed 1} replays at recorded pace, {@code 10} ten times faster, {@code 0} as fast as possible (the
+ * default). {@code --emulate-detect} sleeps for each frame's recorded inference time.
+ */
+public class CaptureReplay {
+
+  private static final ThreadLocal<CaptureRecorder.CapturedFrame> CURRENT = new ThreadLocal<>();
+
+  public static void main(String[] args) throws Exception {
+    if (args.length == 0) {
+      System.err.println(
+          "usage: CaptureReplay <capture.bin> [--speed N] [--threads N] [--repeat N] [--emulate-detect]");
+      System.exit(2);
+    }
+    Path path = Path.of(args[0]);
+    double speed = 0;
+    int threads = 4;
+    int repeat = 1;
+    boolean emulateDetect = false;
+    for (int i = 1; i < args.length; i++) {
+      switch (args[i]) {
+        case "--speed" -> speed = Double.parseDouble(args[++i]);
+        case "--threads" -> threads = Integer.parseInt(args[++i]);
+        case "--repeat" -> repeat = Integer.parseInt(args[++i]);
+        case "--emulate-detect" -> emulateDetect = true;
+        default -> throw new IllegalArgumentException("Unknown option " + args[i]);
+      }
+    }
+
+    List<CaptureRecorder.CapturedFrame> captured = new ArrayList<>(CaptureRecorder.read(path));
+    if (captured.isEmpty())
+      throw new IllegalStateException(path + " has no frames");
+    captured.sort(Comparator.comparingLong(CaptureRecorder.CapturedFrame::fetchedAt));
+    long span = captured.get(captured.size() - 1).fetchedAt() - captured.get(0).fetchedAt();
+    System.out.printf(
+        "Capture %s: %d frames over %.1f s, %d locations%n",
+        path, captured.size(), span / 1000.0,
+        captured.stream().map(CaptureRecorder.CapturedFrame::location).distinct().count());
+
+    // Offsets from the first frame; repeats are laid end to end
+    List<CaptureRecorder.CapturedFrame> frames = new ArrayList<>();
+    long[] offsets = new long[captured.size() * repeat];
+    for (int r = 0; r < repeat; r++) {
+      for (CaptureRecorder.CapturedFrame f : captured) {
+        offsets[frames.size()] = r * (span + 1) + f.fetchedAt() - captured.get(0).fetchedAt();
+        frames.add(f);
+      }
+    }
+
+    new CaptureReplay(emulateDetect).run(frames, offsets, speed, threads);
+  }
+
+  private final boolean emulateDetect;
+  private final ProcessingService processing;
+  private final FanoutService fanout;
+
+  private final AtomicLong messages = new AtomicLong();
+  private final AtomicLong spikes = new AtomicLong();
+  private final LongAdder detectNanos = new LongAdder();
+  private final LongAdder describeNanos = new LongAdder();
+  private final LongAdder persistNanos = new LongAdder();
+  private final LongAdder broadcastNanos = new LongAdder();
+
+  CaptureReplay(boolean emulateDetect) {
+    this.emulateDetect = emulateDetect;
+
+    CameraRegistry cameras = new CameraRegistry(new DefaultResourceLoader(), "classpath:data.json", true);
+    OverlayRenderer overlay = new OverlayRenderer();
+    ExternalApiService offline = offlineApi(cameras, overlay);
+
+    SnapshotStore snapshots = new SnapshotStore();
+    RenditionService renditions = new RenditionService();
+    LatestStateStore latest = new LatestStateStore(snapshots, renditions);
+    this.processing = new ProcessingService(
+        offline,
+        snapshots,
+        latest,
+        new ScoreHistoryStore(),
+        renditions,
+        new CaptureRecorder(),
+        new RoiCropper(cameras),
+        new HeatmapGrid(cameras, latest));
+
+    MessageChannel broker = (message, timeout) -> {
+      messages.incrementAndGet();
+      return true;
+    };
+    this.fanout = new FanoutService(new SimpMessagingTemplate(broker));
+  }
+
+  private void run(List<CaptureRecorder.CapturedFrame> frames, long[] offsets, double speed, int threads)
+      throws InterruptedException {
+    int n = frames.size();
+    long[] latency = new long[n];
+    long[] service = new long[n];
+    ExecutorService workers = Executors.newFixedThreadPool(threads);
+    CountDownLatch done = new CountDownLatch(n);
+
+    // The service code logs every step; keep the report readable
+    PrintStream out = System.out;
+    System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+    long start = System.nanoTime();
+    for (int i = 0; i < n; i++) {
+      long due = start + (speed > 0 ? (long) (offsets[i] / speed * 1_000_000) : 0);
+      long wait = due - System.nanoTime();
+      if (wait > 0)
+        Thread.sleep(wait / 1_000_000, (int) (wait % 1_000_000));
+
+      int index = i;
+      CaptureRecorder.CapturedFrame frame = frames.get(i);
+      workers.execute(() -> {
+        long begin = System.nanoTime();
+        try {
+          replay(frame);
+        } catch (Exception e) {
+          System.err.println("Replay failed for " + frame.location() + ": " + e);
+        } finally {
+          long end = System.nanoTime();
+          latency[index] = end - Math.max(due, start);
+          service[index] = end - begin;
+          done.countDown();
+        }
+      });
+    }
+    done.await();
+    long wall = System.nanoTime() - start;
+    workers.shutdown();
+    System.setOut(out);
+
+    report(n, wall, latency, service, speed, threads);
+  }
+
+  private void replay(CaptureRecorder.CapturedFrame frame) throws InterruptedException {
+    PipelineItem item = new PipelineItem(frame.location());
+    item.setFetchedAt(frame.fetchedAt());
+    item.setAverageScore(frame.averageScore());
+    item.setRawImage(frame.rawImage());
+    CURRENT.set(frame);
+
+    long t0 = System.nanoTime();
+    if (emulateDetect)
+      Thread.sleep(frame.detectMillis());
+    processing.detect(item);
+    long t1 = System.nanoTime();
+    processing.describe(item);
+    long t2 = System.nanoTime();
+    processing.persist(item);
+    long t3 = System.nanoTime();
+    HazardResponse response = item.getResponse();
+    fanout.broadcast(response);
+    long t4 = System.nanoTime();
+
+    detectNanos.add(t1 - t0);
+    describeNanos.add(t2 - t1);
+    persistNanos.add(t3 - t2);
+    broadcastNanos.add(t4 - t3);
+    if (response.isSpike())
+      spikes.incrementAndGet();
+  }
+
+  private void report(int n, long wallNanos, long[] latency, long[] service, double speed, int threads) {
+    Arrays.sort(latency);
+    double wallSeconds = wallNanos / 1e9;
+    System.out.printf("%nReplay: %d frames, %d threads, speed %s%n", n, threads, speed > 0 ? speed + "x" : "max");
+    System.out.printf("  wall            %10.2f s%n", wallSeconds);
+    System.out.printf("  throughput      %10.1f frames/s%n", n / wallSeconds);
+    System.out.printf("  spikes          %10d%n", spikes.get());
+    System.out.printf("  latency p50     %10.2f ms%n", percentile(latency, 0.50));
+    System.out.printf("  latency p95     %10.2f ms%n", percentile(latency, 0.95));
+    System.out.printf("  latency p99     %10.2f ms%n", percentile(latency, 0.99));
+    System.out.printf("  latency max     %10.2f ms%n", latency[n - 1] / 1e6);
+    System.out.printf("  service avg     %10.2f ms%n", Arrays.stream(service).average().orElse(0) / 1e6);
+    System.out.printf("  detect avg      %10.2f ms%n", detectNanos.sum() / 1e6 / n);
+    System.out.printf("  describe avg    %10.2f ms%n", describeNanos.sum() / 1e6 / n);
+    System.out.printf("  persist avg     %10.2f ms%n", persistNanos.sum() / 1e6 / n);
+    System.out.printf("  broadcast avg   %10.2f ms%n", broadcastNanos.sum() / 1e6 / n);
+    System.out.printf(
+        "  fan-out         %10d messages, %.1f MB serialized%n",
+        messages.get(), fanout.bytesSerialized() / 1e6);
+  }
+
+  private static double percentile(long[] sorted, double p) {
+    int i = (int) Math.ceil(p * sorted.length) - 1;
+    return sorted[Math.max(0, Math.min(sorted.length - 1, i))] / 1e6;
+  }
+
+  /**
+   * A stand-in for the remote calls: fetches and detections serve the current frame's recorded
+   * inputs, everything else is a no-op. Stub-only, since a replay makes a call per frame per step
+   * and never verifies them.
+   */
+  private static ExternalApiService offlineApi(CameraRegistry cameras, OverlayRenderer overlay) {
+    ExternalApiService api = mock(ExternalApiService.class, withSettings().stubOnly());
+    when(api.fetchHistoricalAverage(any(), anyLong())).thenAnswer(call -> CURRENT.get().averageScore());
+    when(api.fetchCameraImages(any(), anyLong())).thenAnswer(call -> List.of(CURRENT.get().rawImage()));
+    // Boxes are re-rendered like the live path; older captures carry the labeled image. Recorded
+    // boxes are already in full-frame pixels, so the crop is not needed
+    when(api.detectHazards(any(), any(), anyLong())).thenAnswer(call -> {
+      byte[] imageBytes = call.getArgument(0);
+      CaptureRecorder.CapturedFrame f = CURRENT.get();
+      byte[] labeled = !f.boxes().isEmpty()
+          ? overlay.render(imageBytes, f.boxes())
+          : f.labeledImage().length > 0 ? f.labeledImage() : imageBytes;
+      return new ExternalApiService.HazardDetectionResult(labeled, f.detections(), f.boxes());
+    });
+    when(api.generateDescriptions(any(), anyLong())).thenReturn(Map.of());
+    when(api.getCameraCoordinates(any())).thenAnswer(call -> {
+      CameraRegistry.CameraInfo camera = cameras.find(call.getArgument(0));
+      return camera != null
+          ? Coordinates.builder().lat(camera.lat()).lng(camera.lon()).build()
+          : Coordinates.builder().lat(49.2827).lng(-123.1207).build();
+    });
+    return api;
+  }
+}
@@ -0,0 +1,176 @@
+package com.rainCity.hazard.bench;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
+import com.rainCity.hazard.model.HazardModels.Coordinates;
+import com.rainCity.hazard.model.HazardModels.DetailedTags;
+import com.rainCity.hazard.model.HazardModels.HazardResponse;
+import com.rainCity.hazard.model.HazardModels.JpegDataUrl;
+import com.rainCity.hazard.service.ExternalApiService;
+import com.rainCity.hazard.service.OverlayRenderer;
+import com.rainCity.hazard.service.RenditionService;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bytes allocated per frame on each step of the image path, measured with the per-thread
+ * allocation counter. The detect request and the alert message are measured twice: as they were
+ * built before (a base64 string, then a prefixed data-URL string, then serialization) and with
+ * {@link JpegDataUrl}, which encodes straight into the serializer's output. Overlay and
+ * renditions are reported as they are now.
+ *
+ * <p>Run with {@code java -cp target/test-classes:target/classes:<test deps>
+ * com.rainCity.hazard.bench.FrameAllocationBench [image.jpg] [--frames N] [--cameras N]}; the image defaults to the first bundled custom image.
+ */
+public class FrameAllocationBench {
+
+  // Serializes the data URL through toString(), i.e. the way the string used to be built
+  @JsonSerialize(using = ToStringSerializer.class)
+  private abstract static class LegacyDataUrl {
+  }
+
+  private static final com.sun.management.ThreadMXBean THREADS =
+      (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+  public static void main(String[] args) throws Exception {
+    byte[] frame = null;
+    int frames = 200;
+    int cameras = 1000;
+    for (int i = 0; i < args.length; i++) {
+      switch (args[i]) {
+        case "--frames" -> frames = Integer.parseInt(args[++i]);
+        case "--cameras" -> cameras = Integer.parseInt(args[++i]);
+        default -> frame = Files.readAllBytes(Path.of(args[i]));
+      }
+    }
+    if (frame == null) {
+      try (InputStream in = FrameAllocationBench.class.getResourceAsStream("/custom-images/MainMarineWest.jpg")) {
+        if (in == null)
+          throw new IllegalStateException("No image given and no bundled custom image found");
+        frame = in.readAllBytes();
+      }
+    }
+    new FrameAllocationBench(frame).run(frames, cameras);
+  }
+
+  private final byte[] frame;
+  private final ObjectMapper current = new ObjectMapper();
+  private final ObjectMapper legacy = new ObjectMapper().addMixIn(JpegDataUrl.class, LegacyDataUrl.class);
+  private final OverlayRenderer overlay = new OverlayRenderer();
+  private final RenditionService renditions = new RenditionService();
+  private final List<ExternalApiService.DetectionBox> boxes = List.of(
+      new ExternalApiService.DetectionBox("car", 0.91, 120, 200, 420, 380),
+      new ExternalApiService.DetectionBox("person", 0.77, 600, 240, 660, 400),
+      new ExternalApiService.DetectionBox("cone", 0.64, 300, 420, 340, 480));
+
+  FrameAllocationBench(byte[] frame) {
+    this.frame = frame;
+  }
+
+  private void run(int frames, int cameras) throws Exception {
+    if (!THREADS.isThreadAllocatedMemorySupported())
+      throw new IllegalStateException("This JVM does not report per-thread allocation");
+    THREADS.setThreadAllocatedMemoryEnabled(true);
+
+    byte[] labeled = overlay.render(frame, boxes);
+    byte[] inline = renditions.put("bench", 0, labeled).get(renditions.inlineRendition());
+    System.out.printf(
+        "Frame %d bytes, labeled %d bytes, inline %d bytes; %d frames per step%n%n",
+        frame.length, labeled.length, inline.length, frames);
+
+    // The services log every frame; keep the table readable
+    PrintStream out = System.out;
+    System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    Result[] results = {
+      new Result("detect request", measure(frames, () -> requestBody(legacy)), measure(frames, () -> requestBody(current))),
+      new Result("alert message", measure(frames, () -> alert(legacy, inline)), measure(frames, () -> alert(current, inline))),
+      new Result("overlay render", null, measure(frames, () -> overlay.render(frame, boxes))),
+      new Result("renditions", null, measure(frames, () -> renditions.put("bench", 1, labeled))),
+    };
+    System.setOut(out);
+
+    System.out.printf("%-16s %14s %14s %10s %12s %12s%n", "step", "legacy B", "current B", "saved", "legacy us", "current us");
+    long legacyTotal = 0;
+    long currentTotal = 0;
+    for (Result r : results) {
+      legacyTotal += r.legacy() != null ? r.legacy().bytes() : r.current().bytes();
+      currentTotal += r.current().bytes();
+      System.out.printf(
+          "%-16s %14s %14d %10s %12s %12.1f%n",
+          r.step(),
+          r.legacy() != null ? Long.toString(r.legacy().bytes()) : "-",
+          r.current().bytes(),
+          r.legacy() != null ? percent(r.legacy().bytes(), r.current().bytes()) : "-",
+          r.legacy() != null ? String.format("%.1f", r.legacy().micros()) : "-",
+          r.current().micros());
+    }
+    System.out.printf(
+        "%-16s %14d %14d %10s%n", "per frame", legacyTotal, currentTotal, percent(legacyTotal, currentTotal));
+    System.out.printf(
+        "%nAt %d cameras per tick: %.1f MB allocated before, %.1f MB now%n",
+        cameras, legacyTotal * cameras / 1e6, currentTotal * cameras / 1e6);
+  }
+
+  /** The Gradio request body as {@code detectHazards} builds it. */
+  private byte[] requestBody(ObjectMapper mapper) throws Exception {
+    Map<String, Object> imageDict = new HashMap<>();
+    imageDict.put("path", null);
+    imageDict.put("url", new JpegDataUrl(frame));
+    imageDict.put("size", frame.length);
+    imageDict.put("orig_name", "camera_image.jpg");
+    imageDict.put("mime_type", "image/jpeg");
+    imageDict.put("is_stream", false);
+    imageDict.put("meta", Map.of("_type", "gradio.FileData"));
+    return mapper.writeValueAsBytes(Map.of("data", List.of(imageDict)));
+  }
+
+  /** One alert serialized for fan-out. */
+  private byte[] alert(ObjectMapper mapper, byte[] inline) throws Exception {
+    HazardResponse response = HazardResponse.builder()
+        .id("bench@0")
+        .locationString("bench")
+        .coords(Coordinates.builder().lat(49.2827).lng(-123.1207).build())
+        .score(42)
+        .description("Detected: traffic cones. Hazard score 42.")
+        .timestamp("2026-01-01T00:00:00Z")
+        .image(new JpegDataUrl(inline))
+        .info(DetailedTags.builder().rawTags(List.of("car", "person", "cone")).build())
+        .build();
+    return mapper.writeValueAsBytes(response);
+  }
+
+  private interface Step {
+    Object run() throws Exception;
+  }
+
+  private record Measurement(long bytes, double micros) {
+  }
+
+  private record Result(String step, Measurement legacy, Measurement current) {
+  }
+
+  private static Measurement measure(int frames, Step step) throws Exception {
+    for (int i = 0; i < Math.max(20, frames / 4); i++)
+      step.run();
+
+    long allocated = THREADS.getCurrentThreadAllocatedBytes();
+    long start = System.nanoTime();
+    for (int i = 0; i < frames; i++)
+      step.run();
+    long nanos = System.nanoTime() - start;
+    return new Measurement(
+        (THREADS.getCurrentThreadAllocatedBytes() - allocated) / frames, nanos / 1e3 / frames);
+  }
+
+  private static String percent(long before, long after) {
+    return before > 0 ? String.format("%.0f%%", 100.0 * (before - after) / before) : "-";
+  }
+}
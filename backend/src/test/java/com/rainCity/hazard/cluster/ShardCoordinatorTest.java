@@ -0,0 +1,137 @@
+package com.rainCity.hazard.cluster;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class ShardCoordinatorTest {
+
+  private static final long LEASE_MS = 300;
+
+  private final InMemoryClusterMembership membership = new InMemoryClusterMembership();
+  private final List<ShardCoordinator> nodes = new ArrayList<>();
+  private final List<String> locations = new ArrayList<>();
+
+  ShardCoordinatorTest() {
+    for (int i = 0; i < 200; i++)
+      locations.add("Main St and " + i + "th Ave");
+  }
+
+  @AfterEach
+  void leaveCluster() {
+    nodes.forEach(ShardCoordinator::leave);
+  }
+
+  // Unique ids: the in-memory membership is shared by the whole JVM
+  private ShardCoordinator node() {
+    ShardCoordinator node = new ShardCoordinator(
+        membership, true, "test-" + UUID.randomUUID(), LEASE_MS, LEASE_MS / 3, 128);
+    nodes.add(node);
+    return node;
+  }
+
+  @Test
+  void emptyRingHasNoOwner() {
+    assertNull(new ConsistentHashRing(List.of(), 128).ownerOf("anything"));
+  }
+
+  @Test
+  void addingANodeOnlyMovesKeysToThatNode() {
+    ConsistentHashRing three = new ConsistentHashRing(List.of("a", "b", "c"), 128);
+    ConsistentHashRing four = new ConsistentHashRing(List.of("a", "b", "c", "d"), 128);
+
+    int moved = 0;
+    for (String loc : locations) {
+      String before = three.ownerOf(loc);
+      String after = four.ownerOf(loc);
+      assertEquals(before, new ConsistentHashRing(List.of("c", "a", "b"), 128).ownerOf(loc));
+      if (!before.equals(after)) {
+        assertEquals("d", after);
+        moved++;
+      }
+    }
+    // About a quarter of the keys should move to the new node
+    assertTrue(moved > locations.size() / 8 && moved < locations.size() / 2, "moved " + moved);
+  }
+
+  @Test
+  void liveNodesSplitLocationsWithOneOwnerEach() {
+    ShardCoordinator a = node();
+    ShardCoordinator b = node();
+    a.heartbeat();
+    b.heartbeat();
+    a.heartbeat();
+
+    assertEquals(Set.of(a.nodeId(), b.nodeId()), a.liveNodes());
+    Set<String> ownedByA = new HashSet<>(a.ownedLocations(locations));
+    Set<String> ownedByB = new HashSet<>(b.ownedLocations(locations));
+    assertFalse(ownedByA.isEmpty() || ownedByB.isEmpty());
+    for (String loc : locations)
+      assertTrue(ownedByA.contains(loc) ^ ownedByB.contains(loc), loc);
+  }
+
+  @Test
+  void expiredLeaseHandsLocationsToSurvivors() throws InterruptedException {
+    ShardCoordinator a = node();
+    ShardCoordinator b = node();
+    a.heartbeat();
+    b.heartbeat();
+    a.heartbeat();
+    assertTrue(a.ownedLocations(locations).size() < locations.size());
+
+    // b stops renewing; a keeps renewing past b's lease
+    long until = System.currentTimeMillis() + LEASE_MS * 2;
+    while (System.currentTimeMillis() < until) {
+      a.heartbeat();
+      Thread.sleep(LEASE_MS / 6);
+    }
+
+    assertFalse(a.liveNodes().contains(b.nodeId()));
+    assertEquals(new HashSet<>(locations), new HashSet<>(a.ownedLocations(locations)));
+  }
+
+  @Test
+  void heartbeatThreadKeepsLeaseAlive() throws InterruptedException {
+    ShardCoordinator a = node();
+    a.join();
+    Thread.sleep(LEASE_MS * 3);
+
+    assertTrue(membership.liveNodes().orElseThrow().contains(a.nodeId()));
+  }
+
+  @Test
+  void failedMembershipReadKeepsTheRing() {
+    // The database goes away between two heartbeats of a
+    boolean[] down = {false};
+    ClusterMembership flaky = new InMemoryClusterMembership() {
+      @Override
+      public Optional<Set<String>> liveNodes() {
+        return down[0] ? Optional.empty() : super.liveNodes();
+      }
+    };
+    ShardCoordinator a = new ShardCoordinator(flaky, true, "test-" + UUID.randomUUID(), LEASE_MS, LEASE_MS / 3, 128);
+    nodes.add(a);
+    ShardCoordinator b = node();
+    a.heartbeat();
+    b.heartbeat();
+    a.heartbeat();
+    Set<String> before = new HashSet<>(a.ownedLocations(locations));
+    assertTrue(before.size() < locations.size());
+
+    down[0] = true;
+    a.heartbeat();
+
+    assertEquals(Set.of(a.nodeId(), b.nodeId()), a.liveNodes());
+    assertEquals(before, new HashSet<>(a.ownedLocations(locations)));
+  }
+}
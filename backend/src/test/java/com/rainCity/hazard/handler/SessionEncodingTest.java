@@ -0,0 +1,124 @@
+package com.rainCity.hazard.handler;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.rainCity.hazard.model.HazardModels.HazardResponse;
+import com.rainCity.hazard.model.HazardModels.JpegDataUrl;
+import com.rainCity.hazard.service.FanoutService;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.sockjs.transport.SockJsSession;
+
+class SessionEncodingTest {
+
+  private static final byte[] FRAME = {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF, 1, 2, 3};
+
+  private final SessionEncoding encoding = new SessionEncoding();
+  private final List<Message<?>> broadcasts = new ArrayList<>();
+  private final FanoutService fanout = new FanoutService(new SimpMessagingTemplate((message, timeout) -> {
+    broadcasts.add(message);
+    return true;
+  }));
+
+  // Opens a session through the decorator and sends its CONNECT frame
+  private WebSocketSession connect(WebSocketSession raw, String id, String accept) throws Exception {
+    when(raw.getId()).thenReturn(id);
+    WebSocketHandler handler = mock(WebSocketHandler.class);
+    encoding.decorate(handler).afterConnectionEstablished(raw);
+    ArgumentCaptor<WebSocketSession> decorated = ArgumentCaptor.forClass(WebSocketSession.class);
+    verify(handler).afterConnectionEstablished(decorated.capture());
+
+    SimpMessageHeaderAccessor connect = SimpMessageHeaderAccessor.create(SimpMessageType.CONNECT);
+    connect.setSessionId(id);
+    if (accept != null)
+      connect.setNativeHeader(SessionEncoding.ACCEPT_HEADER, accept);
+    encoding.preSend(MessageBuilder.createMessage(new byte[0], connect.getMessageHeaders()), null);
+    return decorated.getValue();
+  }
+
+  // One alert as the broker copies it to a session
+  private Message<?> alertFor(String sessionId) {
+    if (broadcasts.isEmpty()) {
+      fanout.broadcast(HazardResponse.builder()
+          .id("Main St@1")
+          .locationString("Main St")
+          .score(42)
+          .image(new JpegDataUrl(FRAME))
+          .build());
+    }
+    Message<?> broadcast = broadcasts.get(0);
+    SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(broadcast);
+    accessor.setSessionId(sessionId);
+    accessor.setSubscriptionId("sub-0");
+    return MessageBuilder.createMessage(broadcast.getPayload(), accessor.getMessageHeaders());
+  }
+
+  @Test
+  void negotiatedSessionGetsCborAndOthersKeepJson() throws Exception {
+    connect(mock(WebSocketSession.class), "cbor", "application/cbor, application/json");
+    connect(mock(WebSocketSession.class), "json", null);
+
+    Message<?> cbor = encoding.preSend(alertFor("cbor"), null);
+    Message<?> json = encoding.preSend(alertFor("json"), null);
+
+    SimpMessageHeaderAccessor cborHeaders = SimpMessageHeaderAccessor.wrap(cbor);
+    assertEquals(SessionEncoding.APPLICATION_CBOR, cborHeaders.getContentType());
+    JsonNode decoded = new CBORMapper().readTree((byte[]) cbor.getPayload());
+    assertEquals("Main St", decoded.get("location").asText());
+    assertEquals(42, decoded.get("score").asDouble());
+    // The frame is a raw byte string, not a base64 data URL
+    assertArrayEquals(FRAME, decoded.get("img").binaryValue());
+
+    assertEquals(MimeTypeUtils.APPLICATION_JSON, SimpMessageHeaderAccessor.wrap(json).getContentType());
+    assertSame(broadcasts.get(0).getPayload(), json.getPayload());
+    JsonNode parsed = new ObjectMapper().readTree((byte[]) json.getPayload());
+    assertEquals(JpegDataUrl.PREFIX + "/9j/AQID", parsed.get("img").asText());
+    assertEquals(1L, encoding.stats().get("cborSessions"));
+  }
+
+  @Test
+  void cborSessionFramesAreWrittenAsBinary() throws Exception {
+    WebSocketSession raw = mock(WebSocketSession.class);
+    WebSocketSession session = connect(raw, "cbor", "application/cbor");
+
+    session.sendMessage(new TextMessage("MESSAGE"));
+
+    ArgumentCaptor<WebSocketMessage<?>> sent = ArgumentCaptor.forClass(WebSocketMessage.class);
+    verify(raw).sendMessage(sent.capture());
+    assertEquals(BinaryMessage.class, sent.getValue().getClass());
+  }
+
+  @Test
+  void sockJsSessionStaysOnJson() throws Exception {
+    WebSocketSession raw = mock(SockJsSession.class);
+    WebSocketSession session = connect(raw, "sockjs", "application/cbor");
+
+    Message<?> message = encoding.preSend(alertFor("sockjs"), null);
+    session.sendMessage(new TextMessage("MESSAGE"));
+
+    assertEquals(MimeTypeUtils.APPLICATION_JSON, SimpMessageHeaderAccessor.wrap(message).getContentType());
+    verify(raw).sendMessage(any(TextMessage.class));
+  }
+}
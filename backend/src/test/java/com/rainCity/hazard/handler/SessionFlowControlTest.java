@@ -0,0 +1,126 @@
+package com.rainCity.hazard.handler;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.rainCity.hazard.model.HazardModels.HazardResponse;
+import com.rainCity.hazard.service.FanoutService;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketSession;
+
+class SessionFlowControlTest {
+
+  private final SessionFlowControl flowControl = new SessionFlowControl();
+  // What the broker would hand to clientOutboundChannel, one copy per broadcast
+  private final List<Message<?>> broadcasts = new ArrayList<>();
+  private final FanoutService fanout = new FanoutService(new SimpMessagingTemplate((message, timeout) -> {
+    broadcasts.add(message);
+    return true;
+  }));
+  // Held-back alerts released once the session catches up
+  private final List<Message<?>> released = new ArrayList<>();
+  private final MessageChannel outbound = (message, timeout) -> released.add(message);
+
+  private WebSocketSession raw;
+  private WebSocketSession counted;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    ReflectionTestUtils.setField(flowControl, "conflateAfter", 4);
+    ReflectionTestUtils.setField(flowControl, "evictAfterMillis", 30_000L);
+
+    raw = mock(WebSocketSession.class);
+    when(raw.getId()).thenReturn("slow");
+    WebSocketHandler handler = mock(WebSocketHandler.class);
+    flowControl.decorate(handler).afterConnectionEstablished(raw);
+    ArgumentCaptor<WebSocketSession> session = ArgumentCaptor.forClass(WebSocketSession.class);
+    verify(handler).afterConnectionEstablished(session.capture());
+    counted = session.getValue();
+  }
+
+  private Message<?> alert(String location, double score) {
+    fanout.broadcast(HazardResponse.builder()
+        .id(location + "@" + (long) score)
+        .locationString(location)
+        .score(score)
+        .build());
+    Message<?> broadcast = broadcasts.remove(broadcasts.size() - 1);
+    SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(broadcast);
+    accessor.setSessionId("slow");
+    accessor.setSubscriptionId("sub-0");
+    return MessageBuilder.createMessage(broadcast.getPayload(), accessor.getMessageHeaders());
+  }
+
+  private static double scoreOf(Message<?> message) {
+    FanoutService.Source source = (FanoutService.Source) message.getHeaders().get(FanoutService.SOURCE_HEADER);
+    return ((HazardResponse) source.value()).getScore();
+  }
+
+  @Test
+  void behindSessionKeepsOnlyTheLatestAlertPerLocation() throws Exception {
+    for (int i = 1; i <= 4; i++)
+      assertNotNull(flowControl.preSend(alert(i % 2 == 1 ? "A" : "B", i), outbound));
+
+    // Four unsent messages: from here on each location keeps one held-back alert
+    assertNull(flowControl.preSend(alert("A", 5), outbound));
+    assertNull(flowControl.preSend(alert("A", 6), outbound));
+    assertNull(flowControl.preSend(alert("B", 7), outbound));
+    SessionFlowControl.SessionStats stats = flowControl.sessionStats().get(0);
+    assertEquals(4, stats.pending());
+    assertEquals(2, stats.heldBack());
+    assertEquals(1, stats.conflated());
+
+    // The socket drains; at half the threshold the held-back alerts go out
+    counted.sendMessage(new TextMessage("one"));
+    assertEquals(List.of(), released);
+    counted.sendMessage(new TextMessage("two"));
+    assertEquals(List.of(6.0, 7.0), released.stream().map(SessionFlowControlTest::scoreOf).sorted().toList());
+    assertEquals(0, flowControl.sessionStats().get(0).heldBack());
+  }
+
+  @Test
+  void sessionWhoseOldestMessageIsTooOldIsEvicted() throws Exception {
+    ReflectionTestUtils.setField(flowControl, "evictAfterMillis", 50L);
+    assertNotNull(flowControl.preSend(alert("A", 1), outbound));
+    Thread.sleep(100);
+
+    assertNull(flowControl.preSend(alert("B", 2), outbound));
+
+    verify(raw).close(CloseStatus.SESSION_NOT_RELIABLE);
+    assertEquals(1, flowControl.evictions());
+    assertEquals(0, flowControl.sessionCount());
+  }
+
+  @Test
+  void sessionThatKeepsUpIsNeitherConflatedNorEvicted() throws Exception {
+    ReflectionTestUtils.setField(flowControl, "evictAfterMillis", 50L);
+    for (int i = 0; i < 5; i++) {
+      assertNotNull(flowControl.preSend(alert("A", i), outbound));
+      counted.sendMessage(new TextMessage("alert"));
+      Thread.sleep(20);
+    }
+
+    SessionFlowControl.SessionStats stats = flowControl.sessionStats().get(0);
+    assertEquals(0, stats.pending());
+    assertEquals(5, stats.sent());
+    assertEquals(0, stats.conflated());
+    assertEquals(0, flowControl.evictions());
+  }
+}
@@ -0,0 +1,144 @@
+package com.rainCity.hazard.handler;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rainCity.hazard.model.HazardModels.HazardResponse;
+import com.rainCity.hazard.service.CameraRegistry;
+import com.rainCity.hazard.service.FanoutService;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.broker.SimpleBrokerMessageHandler;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+import org.springframework.messaging.support.MessageBuilder;
+
+class SubscriptionFiltersTest {
+
+  private final SubscriptionFilters filters =
+      new SubscriptionFilters(new CameraRegistry(new DefaultResourceLoader(), "classpath:data.json", true));
+  // Copies the broker hands to clientOutboundChannel, before any interceptor
+  private final List<Message<?>> dispatched = new ArrayList<>();
+  private SimpleBrokerMessageHandler broker;
+  private FanoutService fanout;
+
+  @BeforeEach
+  void setUp() {
+    MessageChannel clientOutbound = (message, timeout) -> dispatched.add(message);
+    broker = new SimpleBrokerMessageHandler(
+        new ExecutorSubscribableChannel(), clientOutbound, new ExecutorSubscribableChannel(), List.of("/topic"));
+    broker.setSubscriptionRegistry(new FilteredSubscriptionRegistry(filters));
+    broker.start();
+    fanout = new FanoutService(new SimpMessagingTemplate((message, timeout) -> {
+      broker.handleMessage(message);
+      return true;
+    }));
+  }
+
+  @AfterEach
+  void tearDown() {
+    broker.stop();
+  }
+
+  private void subscribe(String sessionId, Map<String, String> headers) {
+    // The broker only delivers to connected sessions
+    SimpMessageHeaderAccessor connect = SimpMessageHeaderAccessor.create(SimpMessageType.CONNECT);
+    connect.setSessionId(sessionId);
+    broker.handleMessage(MessageBuilder.createMessage(new byte[0], connect.getMessageHeaders()));
+
+    StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.SUBSCRIBE);
+    accessor.setSessionId(sessionId);
+    accessor.setSubscriptionId("sub-0");
+    accessor.setDestination(FanoutService.ALERTS_TOPIC);
+    headers.forEach(accessor::setNativeHeader);
+    Message<?> message = filters.preSend(
+        MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders()), null);
+    broker.handleMessage(message);
+  }
+
+  private static HazardResponse alert(double score, boolean spike) {
+    return HazardResponse.builder()
+        .id("Main St@1")
+        .locationString("Main St")
+        .score(score)
+        .spike(spike)
+        .build();
+  }
+
+  private List<String> recipients() {
+    List<String> sessions = new ArrayList<>();
+    for (Message<?> message : dispatched) {
+      if (SimpMessageHeaderAccessor.getMessageType(message.getHeaders()) == SimpMessageType.MESSAGE)
+        sessions.add(SimpMessageHeaderAccessor.getSessionId(message.getHeaders()));
+    }
+    sessions.sort(null);
+    return sessions;
+  }
+
+  @Test
+  void filteredOutSessionsGetNoCopy() {
+    subscribe("all", Map.of());
+    subscribe("high", Map.of(SubscriptionFilters.MIN_SCORE_HEADER, "50"));
+    subscribe("high-too", Map.of(SubscriptionFilters.MIN_SCORE_HEADER, "50"));
+    subscribe("spikes", Map.of(SubscriptionFilters.SPIKE_ONLY_HEADER, "true"));
+
+    fanout.broadcast(alert(20, true));
+    assertEquals(List.of("all", "spikes"), recipients());
+
+    dispatched.clear();
+    fanout.broadcast(alert(80, false));
+    assertEquals(List.of("all", "high", "high-too"), recipients());
+
+    assertEquals(3L, filters.stats().get("dropped"));
+    assertEquals(3L, filters.stats().get("delivered"));
+    // The two min-score sessions share a group, evaluated once per message
+    @SuppressWarnings("unchecked")
+    List<SubscriptionFilters.GroupStats> groups = (List<SubscriptionFilters.GroupStats>) filters.stats().get("perGroup");
+    for (SubscriptionFilters.GroupStats group : groups)
+      assertEquals(2, group.evaluations(), group.filter());
+  }
+
+  @Test
+  void descriptionUpdatesAlwaysPass() {
+    subscribe("high", Map.of(SubscriptionFilters.MIN_SCORE_HEADER, "50"));
+    subscribe("updates", Map.of());
+
+    fanout.publish(FanoutService.ALERTS_TOPIC, new FanoutService.AlertUpdate("Main St@1", "Main St", "text"));
+
+    assertEquals(List.of("high", "updates"), recipients());
+  }
+
+  // What the relay hands to clientOutboundChannel: the JSON bytes and STOMP headers, no source
+  private Message<?> relayed(String sessionId, HazardResponse response) throws Exception {
+    SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+    accessor.setSessionId(sessionId);
+    accessor.setSubscriptionId("sub-0");
+    accessor.setDestination(FanoutService.ALERTS_TOPIC);
+    accessor.setNativeHeader(FanoutService.LOCATION_HEADER, response.getLocationString());
+    byte[] payload = new ObjectMapper().writeValueAsBytes(response);
+    return MessageBuilder.createMessage(payload, accessor.getMessageHeaders());
+  }
+
+  @Test
+  void relayedAlertsAreFilteredOnTheOutboundChannel() throws Exception {
+    subscribe("high", Map.of(SubscriptionFilters.MIN_SCORE_HEADER, "50"));
+    subscribe("all", Map.of());
+
+    assertNull(filters.preSend(relayed("high", alert(20, false)), null));
+    assertNotNull(filters.preSend(relayed("high", alert(80, false)), null));
+    assertNotNull(filters.preSend(relayed("all", alert(20, false)), null));
+  }
+}
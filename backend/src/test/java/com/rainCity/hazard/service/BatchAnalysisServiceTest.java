@@ -0,0 +1,78 @@
+package com.rainCity.hazard.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.rainCity.hazard.model.HazardModels.HazardResponse;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.DefaultResourceLoader;
+
+class BatchAnalysisServiceTest {
+
+  private static final String LOCATION = "Main St and Broadway";
+
+  private final ProcessingService processing = mock(ProcessingService.class);
+  private final HazardPipeline pipeline = mock(HazardPipeline.class);
+  private final FanoutService fanout = mock(FanoutService.class);
+  private final BatchAnalysisService batch = new BatchAnalysisService(
+      processing,
+      pipeline,
+      new CameraRegistry(new DefaultResourceLoader(), "classpath:data.json", true),
+      fanout,
+      mock(IncidentCorrelator.class),
+      2,
+      16,
+      100);
+
+  @AfterEach
+  void tearDown() {
+    batch.shutdown();
+  }
+
+  private BatchAnalysisService.ItemResult analyzeOne(boolean enrich) throws Exception {
+    CompletableFuture<BatchAnalysisService.ItemResult> result = new CompletableFuture<>();
+    batch.analyze(List.of(LOCATION), enrich, result::complete, summary -> {
+    });
+    return result.get(5, TimeUnit.SECONDS);
+  }
+
+  @Test
+  void locationTheTickIsProcessingIsNotFetchedAgain() throws Exception {
+    when(pipeline.claim(LOCATION)).thenReturn(false);
+
+    BatchAnalysisService.ItemResult result = analyzeOne(false);
+
+    assertEquals("in_flight", result.status());
+    assertNull(result.response());
+    verify(processing, never()).fetch(any(), anyLong());
+    verify(pipeline, never()).release(LOCATION);
+  }
+
+  @Test
+  void descriptionIsQueuedForThePipelineWhenNotAwaited() throws Exception {
+    PipelineItem item = new PipelineItem(LOCATION);
+    item.setEnrich(true);
+    item.setResponse(HazardResponse.builder().id(LOCATION + "@1").locationString(LOCATION).build());
+    when(pipeline.claim(LOCATION)).thenReturn(true);
+    when(processing.fetch(eq(LOCATION), anyLong())).thenReturn(item);
+
+    BatchAnalysisService.ItemResult result = analyzeOne(false);
+
+    assertEquals("ok", result.status());
+    verify(fanout).broadcast(item.getResponse());
+    verify(pipeline).release(LOCATION);
+    verify(pipeline).enrichLater(eq(item), any());
+    verify(processing, never()).enrich(any());
+  }
+}
@@ -0,0 +1,171 @@
+package com.rainCity.hazard.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.reactive.function.client.WebClient;
+
+class CameraHealthTest {
+
+  private static final String CAMERA = "Clark Drive and E 1st Av";
+  private static final long BASE_MS = 1000;
+  private static final long MAX_MS = 8000;
+
+  @TempDir
+  Path dir;
+
+  private final CameraHealth health = new CameraHealth();
+  private HttpServer slowCamera;
+
+  @BeforeEach
+  void setUp() {
+    ReflectionTestUtils.setField(health, "failureThreshold", 3);
+    ReflectionTestUtils.setField(health, "baseBackoffMillis", BASE_MS);
+    ReflectionTestUtils.setField(health, "maxBackoffMillis", MAX_MS);
+    ReflectionTestUtils.setField(health, "jitter", 0.0);
+  }
+
+  @AfterEach
+  void stopCamera() {
+    if (slowCamera != null)
+      slowCamera.stop(0);
+  }
+
+  private CameraHealth.CameraStatus status() {
+    return health.statuses().stream().filter(s -> s.location().equals(CAMERA)).findFirst().orElseThrow();
+  }
+
+  private long quarantineMillis() {
+    return status().quarantinedUntil() - System.currentTimeMillis();
+  }
+
+  @Test
+  void quarantinesAfterThresholdAndDoublesUpToTheCap() {
+    health.recordFailure(CAMERA, "HTTP 500", 10);
+    health.recordFailure(CAMERA, "HTTP 500", 10);
+    assertFalse(health.isQuarantined(CAMERA));
+    assertEquals("failing", status().state());
+
+    health.recordFailure(CAMERA, "HTTP 500", 10);
+    assertTrue(health.isQuarantined(CAMERA));
+    assertTrue(Math.abs(quarantineMillis() - BASE_MS) < 200, "first quarantine " + quarantineMillis());
+
+    // Each further failure after a probe doubles the quarantine
+    long expected = BASE_MS;
+    for (int i = 0; i < 5; i++) {
+      health.release(CAMERA);
+      health.recordFailure(CAMERA, "HTTP 500", 10);
+      expected = Math.min(MAX_MS, expected * 2);
+      assertTrue(Math.abs(quarantineMillis() - expected) < 200, "expected " + expected + ", got " + quarantineMillis());
+    }
+    assertEquals(MAX_MS, expected);
+    assertEquals(8, status().consecutiveFailures());
+  }
+
+  @Test
+  void oneGoodFrameClearsTheRecord() {
+    for (int i = 0; i < 4; i++)
+      health.recordFailure(CAMERA, "HTTP 500", 10);
+    assertTrue(health.isQuarantined(CAMERA));
+    assertEquals(1, status().skipped());
+
+    health.recordSuccess(CAMERA, 20);
+
+    assertFalse(health.isQuarantined(CAMERA));
+    assertEquals("healthy", status().state());
+    assertEquals(0, status().consecutiveFailures());
+    // The next failure starts the count again instead of quarantining at once
+    health.recordFailure(CAMERA, "HTTP 500", 10);
+    assertFalse(health.isQuarantined(CAMERA));
+  }
+
+  @Test
+  void releaseKeepsTheFailureCount() {
+    for (int i = 0; i < 3; i++)
+      health.recordFailure(CAMERA, "HTTP 500", 10);
+
+    assertEquals(1, health.release(null));
+    assertFalse(health.isQuarantined(CAMERA));
+    assertEquals("failing", status().state());
+    health.recordFailure(CAMERA, "HTTP 500", 10);
+    assertTrue(health.isQuarantined(CAMERA));
+  }
+
+  // Camera fetches against a local page that answers after three seconds
+  private ExternalApiService fetcher(HostRateLimiter limiter) throws IOException {
+    slowCamera = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    slowCamera.createContext("/", exchange -> {
+      try {
+        Thread.sleep(3000);
+        exchange.sendResponseHeaders(200, -1);
+      } catch (InterruptedException | IOException e) {
+        // The client gave up
+      } finally {
+        exchange.close();
+      }
+    });
+    slowCamera.start();
+
+    Path source = dir.resolve("cameras.json");
+    Files.writeString(source, "[{\"mapid\":\"TCM001\",\"name\":\"" + CAMERA + "\",\"url\":\"http://127.0.0.1:"
+        + slowCamera.getAddress().getPort() + "/clark4.htm\",\"geo_point_2d\":{\"lat\":49.27,\"lon\":-123.08}}]");
+    CameraRegistry registry = new CameraRegistry(new DefaultResourceLoader(), source.toUri().toString(), false);
+    registry.snapshot();
+    return new ExternalApiService(registry, null, limiter, null, health);
+  }
+
+  private static HostRateLimiter limiter(double requestsPerSecond) {
+    HostRateLimiter limiter = new HostRateLimiter();
+    ReflectionTestUtils.setField(limiter, "limitedHosts", List.of("127.0.0.1"));
+    ReflectionTestUtils.setField(limiter, "requestsPerSecond", requestsPerSecond);
+    ReflectionTestUtils.setField(limiter, "burst", 1);
+    return limiter;
+  }
+
+  @Test
+  void cameraTimeoutAfterTheRequestCountsAsAFailure() throws IOException {
+    ExternalApiService api = fetcher(limiter(100));
+    // Build the client and load the request classes first, so the deadline below is spent
+    // waiting on the camera rather than on first use
+    WebClient client = ReflectionTestUtils.invokeMethod(api, "webClient");
+    client.get().uri("http://127.0.0.1/").retrieve().bodyToMono(String.class);
+    ExternalCallEvent.start("warm-up").finish();
+
+    DeadlineExceededException e = assertThrows(DeadlineExceededException.class,
+        () -> api.fetchCameraImages(CAMERA, System.currentTimeMillis() + 1000));
+
+    assertTrue(e.isInFlight());
+    assertEquals(1, status().failures());
+    assertTrue(status().lastError().startsWith("timeout"));
+  }
+
+  @Test
+  void deadlineSpentBeforeTheRequestIsNotTheCamerasFault() throws Exception {
+    HostRateLimiter limiter = limiter(0.5);
+    ExternalApiService api = fetcher(limiter);
+
+    // Already expired when the fetch starts
+    assertThrows(DeadlineExceededException.class,
+        () -> api.fetchCameraImages(CAMERA, System.currentTimeMillis() - 1));
+    // Behind the rate limiter: the burst token is taken and the next one is two seconds away
+    limiter.acquire("http://127.0.0.1/");
+    assertThrows(DeadlineExceededException.class,
+        () -> api.fetchCameraImages(CAMERA, System.currentTimeMillis() + 1000));
+
+    assertTrue(health.statuses().isEmpty());
+  }
+}
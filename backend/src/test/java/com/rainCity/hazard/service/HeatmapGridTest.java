@@ -0,0 +1,149 @@
+package com.rainCity.hazard.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import com.rainCity.hazard.model.HazardModels.HazardResponse;
+import com.rainCity.hazard.model.HazardModels.JpegDataUrl;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class HeatmapGridTest {
+
+  @TempDir
+  Path dir;
+
+  private Path source;
+  private CameraRegistry registry;
+  private final SnapshotStore snapshots = mock(SnapshotStore.class);
+  private final RenditionService renditions = mock(RenditionService.class);
+
+  @BeforeEach
+  void setUp() throws IOException {
+    // Cameras 1 and 2 share a cell; camera 3 is about 5 km north
+    source = dir.resolve("cameras.json");
+    writeCameras(3);
+    registry = new CameraRegistry(new DefaultResourceLoader(), source.toUri().toString(), true);
+    registry.init();
+  }
+
+  private void writeCameras(int count) throws IOException {
+    double[] lats = {49.2600, 49.2601, 49.3050};
+    StringBuilder json = new StringBuilder("[");
+    for (int i = 1; i <= count; i++) {
+      if (i > 1)
+        json.append(',');
+      json.append("{\"mapid\":\"C").append(i).append("\",\"name\":\"Camera ").append(i)
+          .append("\",\"url\":\"https://example.com/").append(i).append("\",\"geo_point_2d\":{\"lat\":")
+          .append(lats[i - 1]).append(",\"lon\":-123.1}}");
+    }
+    Files.writeString(source, json.append(']'));
+  }
+
+  private static HazardResponse response(String location, double score, boolean spike) {
+    return HazardResponse.builder()
+        .id(location + "@1")
+        .locationString(location)
+        .score(score)
+        .spike(spike)
+        .build();
+  }
+
+  private HeatmapGrid grid(Map<String, HazardResponse> restored) {
+    when(snapshots.latestResults()).thenReturn(restored);
+    return new HeatmapGrid(registry, new LatestStateStore(snapshots, renditions));
+  }
+
+  private static HeatmapGrid.Cell cellOf(HeatmapGrid.Heatmap heatmap, int cameras) {
+    return heatmap.cells().stream().filter(c -> c.cameras() == cameras).findFirst().orElseThrow();
+  }
+
+  private boolean registryLoaded() {
+    return ((AtomicReference<?>) ReflectionTestUtils.getField(registry, "current")).get() != null;
+  }
+
+  @Test
+  void firstRequestBuildsTheGridFromRestoredScoresWithoutRendering() {
+    HazardResponse restored = response("Camera 1", 40, false);
+    restored.setTimestamp("2026-01-01T00:00:00Z");
+    restored.setImage(new JpegDataUrl(new byte[] {1, 2, 3}));
+    HeatmapGrid grid = grid(Map.of("Camera 1", restored));
+    assertFalse(registryLoaded());
+
+    HeatmapGrid.Heatmap heatmap = grid.snapshot();
+
+    assertTrue(registryLoaded());
+    assertEquals(2, heatmap.cells().size());
+    assertEquals(40, cellOf(heatmap, 2).maxScore());
+    assertEquals(1, cellOf(heatmap, 2).reporting());
+    assertEquals(0, cellOf(heatmap, 1).reporting());
+    // Restored frames are only decoded when a client asks for the response itself
+    verifyNoInteractions(renditions);
+  }
+
+  @Test
+  void firstScoreAlsoSeedsTheGrid() {
+    HeatmapGrid grid = grid(Map.of("Camera 1", response("Camera 1", 40, false)));
+
+    grid.update(response("C3", 70, true));
+
+    HeatmapGrid.Heatmap heatmap = grid.snapshot();
+    assertEquals(40, cellOf(heatmap, 2).maxScore());
+    assertEquals(70, cellOf(heatmap, 1).maxScore());
+    assertEquals("Camera 3", cellOf(heatmap, 1).maxLocation());
+    assertEquals(1, cellOf(heatmap, 1).spikes());
+  }
+
+  @Test
+  void versionMovesOnlyWhenACellChanges() {
+    HeatmapGrid grid = grid(Map.of());
+    grid.update(response("Camera 1", 40, false));
+    HeatmapGrid.Heatmap before = grid.snapshot();
+
+    // The same reading again, and a location without a camera
+    grid.update(response("Camera 1", 40, false));
+    grid.update(response("Not A Camera", 90, true));
+    assertSame(before, grid.snapshot());
+
+    grid.update(response("Camera 2", 60, false));
+    HeatmapGrid.Heatmap after = grid.snapshot();
+    assertEquals(before.version() + 1, after.version());
+    assertEquals(60, cellOf(after, 2).maxScore());
+    assertEquals("Camera 2", cellOf(after, 2).maxLocation());
+    assertEquals(2, cellOf(after, 2).reporting());
+    // The other cell is untouched
+    assertEquals(cellOf(before, 1), cellOf(after, 1));
+  }
+
+  @Test
+  void registryReloadDropsRemovedCameras() throws IOException {
+    HeatmapGrid grid = grid(Map.of());
+    grid.update(response("Camera 1", 40, false));
+    grid.update(response("Camera 3", 70, false));
+    HeatmapGrid.Heatmap before = grid.snapshot();
+
+    writeCameras(2);
+    registry.reload();
+    HeatmapGrid.Heatmap after = grid.snapshot();
+
+    assertNotSame(before, after);
+    assertEquals(1, after.cells().size());
+    assertEquals(40, cellOf(after, 2).maxScore());
+    grid.update(response("Camera 3", 90, true));
+    assertSame(after, grid.snapshot());
+  }
+}
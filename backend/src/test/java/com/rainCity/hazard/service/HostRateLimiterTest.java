@@ -0,0 +1,55 @@
+package com.rainCity.hazard.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class HostRateLimiterTest {
+
+  private static final String URL = "https://trafficcams.vancouver.ca/clark4.htm";
+
+  private final HostRateLimiter limiter = new HostRateLimiter();
+
+  @BeforeEach
+  void setUp() {
+    ReflectionTestUtils.setField(limiter, "limitedHosts", List.of("trafficcams.vancouver.ca"));
+    ReflectionTestUtils.setField(limiter, "requestsPerSecond", 2.0);
+    ReflectionTestUtils.setField(limiter, "burst", 1);
+  }
+
+  @Test
+  void waitPastTheDeadlineIsRefusedWithoutTakingAToken() throws InterruptedException {
+    limiter.acquire(URL);
+
+    // The next token is due in 500 ms
+    long start = System.nanoTime();
+    assertThrows(DeadlineExceededException.class,
+        () -> limiter.acquire(URL, System.currentTimeMillis() + 100));
+    assertTrue((System.nanoTime() - start) / 1_000_000 < 100, "refused without waiting");
+
+    // The refused caller did not push the next one further back
+    limiter.acquire(URL, System.currentTimeMillis() + 1000);
+    HostRateLimiter.HostStats stats = limiter.stats().get("trafficcams.vancouver.ca");
+    assertEquals(3, stats.requests());
+    assertEquals(1, stats.refused());
+    assertEquals(1, stats.throttled());
+  }
+
+  @Test
+  void passedDeadlineIsRefusedEvenWithTokensLeft() {
+    assertThrows(DeadlineExceededException.class,
+        () -> limiter.acquire(URL, System.currentTimeMillis() - 1));
+  }
+
+  @Test
+  void unlimitedHostsNeverWait() throws InterruptedException {
+    for (int i = 0; i < 10; i++)
+      limiter.acquire("https://example.com/" + i, System.currentTimeMillis() + 1);
+    assertTrue(limiter.stats().isEmpty());
+  }
+}
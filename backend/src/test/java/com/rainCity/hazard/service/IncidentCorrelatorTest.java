@@ -0,0 +1,156 @@
+package com.rainCity.hazard.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.rainCity.hazard.model.HazardModels.HazardResponse;
+import com.rainCity.hazard.service.IncidentCorrelator.Incident;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class IncidentCorrelatorTest {
+
+  // Five cameras on a line, about 300 m apart; with a 400 m radius only consecutive ones are neighbours
+  private static final int CAMERAS = 5;
+  private static final double STEP_LAT = 0.0027;
+
+  @TempDir
+  Path dir;
+
+  private Path source;
+  private CameraRegistry registry;
+  private IncidentCorrelator correlator;
+  private final List<Incident> published = new ArrayList<>();
+
+  @BeforeEach
+  void setUp() throws IOException {
+    source = dir.resolve("cameras.json");
+    writeCameras(Set.of());
+    registry = new CameraRegistry(new DefaultResourceLoader(), source.toUri().toString(), false);
+
+    SimpMessagingTemplate template = new SimpMessagingTemplate((message, timeout) -> {
+      if (message.getHeaders().get(FanoutService.SOURCE_HEADER) instanceof FanoutService.Source s)
+        published.add((Incident) s.value());
+      return true;
+    });
+    correlator = new IncidentCorrelator(registry, new FanoutService(template));
+    ReflectionTestUtils.setField(correlator, "enabled", true);
+    ReflectionTestUtils.setField(correlator, "radiusMeters", 400);
+    ReflectionTestUtils.setField(correlator, "areaRadiusMeters", 0);
+    ReflectionTestUtils.setField(correlator, "windowMillis", 60_000);
+    ReflectionTestUtils.setField(correlator, "minCameras", 2);
+  }
+
+  private void writeCameras(Set<Integer> without) throws IOException {
+    StringBuilder json = new StringBuilder("[");
+    for (int i = 1; i <= CAMERAS; i++) {
+      if (without.contains(i))
+        continue;
+      if (json.length() > 1)
+        json.append(',');
+      json.append("{\"mapid\":\"C").append(i).append("\",\"name\":\"Camera ").append(i)
+          .append("\",\"url\":\"https://example.com/").append(i).append("\",\"geo_point_2d\":{\"lat\":")
+          .append(49.26 + i * STEP_LAT).append(",\"lon\":-123.1}}");
+    }
+    Files.writeString(source, json.append(']'));
+  }
+
+  private void result(int camera, boolean spike) {
+    correlator.onResult(HazardResponse.builder()
+        .id("Camera " + camera + "@1")
+        .locationString("Camera " + camera)
+        .score(spike ? 80 : 5)
+        .spike(spike)
+        .build());
+  }
+
+  private Set<Set<String>> incidents() {
+    Set<Set<String>> sets = new HashSet<>();
+    for (Incident i : correlator.activeIncidents())
+      sets.add(new HashSet<>(i.cameras()));
+    return sets;
+  }
+
+  @Test
+  void spikeBetweenTwoClustersMergesThemUnderTheOlderId() {
+    result(1, true);
+    result(2, true);
+    String older = correlator.activeIncidents().get(0).id();
+    result(4, true);
+    result(5, true);
+    assertEquals(Set.of(Set.of("C1", "C2"), Set.of("C4", "C5")), incidents());
+
+    result(3, true);
+
+    List<Incident> active = correlator.activeIncidents();
+    assertEquals(1, active.size());
+    assertEquals(older, active.get(0).id());
+    assertEquals(Set.of("C1", "C2", "C3", "C4", "C5"), new HashSet<>(active.get(0).cameras()));
+    assertTrue(published.stream().anyMatch(i -> i.status() == IncidentCorrelator.Status.RESOLVED));
+  }
+
+  @Test
+  void clearingTheBridgeSplitsTheCluster() {
+    for (int i = 1; i <= CAMERAS; i++)
+      result(i, true);
+    assertEquals(1, correlator.activeIncidents().size());
+
+    result(3, false);
+
+    assertEquals(Set.of(Set.of("C1", "C2"), Set.of("C4", "C5")), incidents());
+  }
+
+  @Test
+  void reloadWithoutAMemberCameraSplitsItsClusterAndKeepsCorrelating() throws IOException {
+    // C5 spikes first so its cluster is the older one a later merge folds into
+    result(5, true);
+    result(1, true);
+    result(2, true);
+    result(3, true);
+    assertEquals(Set.of(Set.of("C1", "C2", "C3")), incidents());
+    String split = correlator.activeIncidents().get(0).id();
+
+    writeCameras(Set.of(2));
+    assertTrue(registry.reload().swapped());
+    // Next to both C3 and C5: merges their clusters, which used to hit the removed camera
+    result(4, true);
+
+    assertEquals(Set.of(Set.of("C3", "C4", "C5")), incidents());
+    // Without C2, C1 and C3 are no longer linked; the incident they formed is resolved
+    assertTrue(published.stream().anyMatch(
+        i -> i.id().equals(split) && i.status() == IncidentCorrelator.Status.RESOLVED));
+  }
+
+  @Test
+  void camerasFarNorthAreNeighboursAcrossSeveralColumns() throws IOException {
+    // About 390 m apart east-west at 80 degrees north, where that is over five cells of longitude
+    Files.writeString(source, "["
+        + "{\"mapid\":\"N1\",\"name\":\"North 1\",\"url\":\"https://example.com/n1\","
+        + "\"geo_point_2d\":{\"lat\":80.0,\"lon\":0.0001}},"
+        + "{\"mapid\":\"N2\",\"name\":\"North 2\",\"url\":\"https://example.com/n2\","
+        + "\"geo_point_2d\":{\"lat\":80.0,\"lon\":0.0203}}]");
+    assertTrue(registry.reload().swapped());
+
+    for (String camera : List.of("North 1", "North 2")) {
+      correlator.onResult(HazardResponse.builder()
+          .id(camera + "@1")
+          .locationString(camera)
+          .score(80)
+          .spike(true)
+          .build());
+    }
+
+    assertEquals(Set.of(Set.of("N1", "N2")), incidents());
+  }
+}
@@ -0,0 +1,135 @@
+package com.rainCity.hazard.service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.rainCity.hazard.model.HazardModels.HazardResponse;
+import com.rainCity.hazard.model.HazardModels.JpegDataUrl;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class LatestStateStoreTest {
+
+  private static final String LOCATION = "Main St and Broadway";
+
+  @TempDir
+  Path dir;
+
+  private SnapshotStore snapshot() {
+    SnapshotStore store = new SnapshotStore();
+    ReflectionTestUtils.setField(store, "enabled", true);
+    ReflectionTestUtils.setField(store, "path", dir.resolve("snapshot.bin"));
+    ReflectionTestUtils.setField(store, "compactAfterBytes", Long.MAX_VALUE);
+    store.restore();
+    return store;
+  }
+
+  private static byte[] frame(int width, int height) throws IOException {
+    BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+    for (int x = 0; x < width; x++)
+      image.setRGB(x, x * height / width, 0xffffff);
+    return JpegCodec.encode(image, 0.9f);
+  }
+
+  @Test
+  void restoredAlertCarriesInlineRenditionAndLiveFrameUrls() throws IOException {
+    RenditionService renditions = new RenditionService();
+    byte[] full = frame(1280, 720);
+    long version = 1_767_225_600_000L;
+
+    // What a live alert looked like before the restart
+    RenditionService.Frame live = renditions.put(LOCATION, version, full);
+    HazardResponse sent = HazardResponse.builder()
+        .id(LOCATION + "@" + version)
+        .locationString(LOCATION)
+        .score(42)
+        .timestamp(Instant.ofEpochMilli(version).toString())
+        .image(new JpegDataUrl(live.get(renditions.inlineRendition())))
+        .imageUrls(renditions.urls(LOCATION, version))
+        .build();
+    SnapshotStore store = snapshot();
+    store.recordResult(sent, full);
+    store.close();
+
+    RenditionService restarted = new RenditionService();
+    HazardResponse restored = new LatestStateStore(snapshot(), restarted).get(LOCATION);
+
+    assertArrayEquals(sent.getImage().data(), restored.getImage().data());
+    assertTrue(restored.getImage().data().length < full.length);
+    assertEquals(sent.getImageUrls(), restored.getImageUrls());
+    RenditionService.Frame cached = restarted.get(LOCATION, version);
+    assertNotNull(cached);
+    assertArrayEquals(full, cached.get(RenditionService.Rendition.FULL));
+  }
+
+  @Test
+  void newerLiveFrameIsNotReplacedByRestoredOne() throws IOException {
+    long version = 1_767_225_600_000L;
+    SnapshotStore store = snapshot();
+    store.recordResult(HazardResponse.builder()
+        .id(LOCATION + "@" + version)
+        .locationString(LOCATION)
+        .timestamp(Instant.ofEpochMilli(version).toString())
+        .build(), frame(640, 360));
+    store.close();
+
+    RenditionService renditions = new RenditionService();
+    LatestStateStore latest = new LatestStateStore(snapshot(), renditions);
+    renditions.put(LOCATION, version + 10_000, frame(640, 360));
+
+    HazardResponse restored = latest.get(LOCATION);
+    assertNull(restored.getImageUrls());
+    assertEquals(version + 10_000, renditions.get(LOCATION, null).version());
+  }
+
+  @Test
+  void restoredResponseIsNeverModifiedAndEveryReaderGetsTheSameRenderedCopy() throws Exception {
+    long version = 1_767_225_600_000L;
+    byte[] full = frame(1280, 720);
+    SnapshotStore store = snapshot();
+    store.recordResult(HazardResponse.builder()
+        .id(LOCATION + "@" + version)
+        .locationString(LOCATION)
+        .score(42)
+        .timestamp(Instant.ofEpochMilli(version).toString())
+        .build(), full);
+    store.close();
+
+    LatestStateStore latest = new LatestStateStore(snapshot(), new RenditionService());
+    HazardResponse peeked = latest.peekAll(List.of(LOCATION)).get(0);
+    JpegDataUrl restoredImage = peeked.getImage();
+
+    ExecutorService readers = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<HazardResponse>> reads = new ArrayList<>();
+      for (int i = 0; i < 32; i++)
+        reads.add(readers.submit(() -> latest.get(LOCATION)));
+      HazardResponse first = reads.get(0).get();
+      for (Future<HazardResponse> read : reads)
+        assertSame(first, read.get());
+      assertNotNull(first.getImageUrls());
+      assertTrue(first.getImage().data().length < full.length);
+    } finally {
+      readers.shutdown();
+    }
+
+    // The instance a score reader was handed still has the frame it was restored with
+    assertSame(restoredImage, peeked.getImage());
+    assertNull(peeked.getImageUrls());
+    assertEquals(1, latest.size());
+  }
+}
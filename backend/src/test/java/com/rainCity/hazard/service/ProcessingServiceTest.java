@@ -0,0 +1,144 @@
+package com.rainCity.hazard.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.rainCity.hazard.model.HazardModels.HazardResponse;
+import com.sun.net.httpserver.HttpServer;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class ProcessingServiceTest {
+
+  private static final String LOCATION = "Main St and Broadway";
+
+  private ExternalApiService api;
+  private LatestStateStore latest;
+  private ProcessingService processing;
+
+  @BeforeEach
+  void setUp() {
+    api = mock(ExternalApiService.class);
+    latest = new LatestStateStore(new SnapshotStore(), new RenditionService());
+    processing = new ProcessingService(
+        api,
+        new SnapshotStore(),
+        latest,
+        mock(ScoreHistoryStore.class),
+        new RenditionService(),
+        mock(CaptureRecorder.class),
+        mock(RoiCropper.class),
+        mock(HeatmapGrid.class));
+  }
+
+  private static PipelineItem frame(long capturedAt) {
+    PipelineItem item = new PipelineItem(LOCATION);
+    item.setDetections(List.of());
+    item.setLabeledImage(new byte[0]);
+    item.setResponse(HazardResponse.builder()
+        .id(LOCATION + "@" + capturedAt)
+        .locationString(LOCATION)
+        .description("template " + capturedAt)
+        .build());
+    return item;
+  }
+
+  @Test
+  void descriptionFinishingAfterANewerFrameIsDropped() throws Exception {
+    PipelineItem a = frame(1000);
+    PipelineItem b = frame(2000);
+    processing.persist(a);
+
+    CountDownLatch asked = new CountDownLatch(1);
+    CountDownLatch answer = new CountDownLatch(1);
+    when(api.generateDescriptions(anyList(), anyLong())).thenAnswer(call -> {
+      asked.countDown();
+      answer.await(5, TimeUnit.SECONDS);
+      return Map.of("L1", "LLM description of A");
+    });
+
+    CompletableFuture<List<PipelineItem>> enrichA = CompletableFuture.supplyAsync(() -> processing.enrichAll(List.of(a)));
+    assertTrue(asked.await(5, TimeUnit.SECONDS));
+    // B is persisted while A's description is still being generated
+    processing.persist(b);
+    answer.countDown();
+
+    assertTrue(enrichA.get(5, TimeUnit.SECONDS).isEmpty());
+    assertEquals("template 1000", a.getResponse().getDescription());
+    assertEquals(b.getResponse(), latest.get(LOCATION));
+    // Only the two persists reached Supabase
+    verify(api, times(1)).saveHazardRecord(eq(a.getResponse()), anyLong());
+    verify(api, times(1)).saveHazardRecord(eq(b.getResponse()), anyLong());
+  }
+
+  @Test
+  void descriptionForASupersededFrameIsNotRequested() {
+    PipelineItem a = frame(1000);
+    PipelineItem b = frame(2000);
+    processing.persist(a);
+    processing.persist(b);
+
+    assertTrue(processing.enrichAll(List.of(a)).isEmpty());
+    verify(api, never()).generateDescriptions(anyList(), anyLong());
+  }
+
+  @Test
+  void currentFrameGetsItsDescription() {
+    PipelineItem a = frame(1000);
+    processing.persist(a);
+    when(api.generateDescriptions(anyList(), anyLong())).thenReturn(Map.of("L1", "LLM description of A"));
+
+    HazardResponse sent = a.getResponse();
+
+    assertEquals(List.of(a), processing.enrichAll(List.of(a)));
+    assertEquals("LLM description of A", a.getResponse().getDescription());
+    assertSame(a.getResponse(), latest.get(LOCATION));
+    // The broadcast instance is left as it was sent
+    assertEquals("template 1000", sent.getDescription());
+    assertEquals(sent.getId(), a.getResponse().getId());
+    verify(api, times(2)).saveHazardRecord(any(), anyLong());
+  }
+
+  @Test
+  void savingKeepsTheFrameIdAndRecordsTheRowId() throws Exception {
+    HttpServer supabase = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    supabase.createContext("/hazards", exchange -> {
+      byte[] body = "[{\"id\":\"6f1c2a3e-row\"}]".getBytes(StandardCharsets.UTF_8);
+      exchange.sendResponseHeaders(201, body.length);
+      exchange.getResponseBody().write(body);
+      exchange.close();
+    });
+    supabase.start();
+    try {
+      ExternalApiService service = new ExternalApiService(null, null, null, null, null);
+      ReflectionTestUtils.setField(service, "supabaseUrl", "http://127.0.0.1:" + supabase.getAddress().getPort());
+      ReflectionTestUtils.setField(service, "supabaseKey", "test");
+      HazardResponse response = frame(1000).getResponse();
+
+      service.saveHazardRecord(response);
+
+      assertEquals(LOCATION + "@1000", response.getId());
+      assertEquals("6f1c2a3e-row", response.getDbId());
+    } finally {
+      supabase.stop(0);
+    }
+  }
+}
@@ -0,0 +1,180 @@
+package com.rainCity.hazard.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.rainCity.hazard.model.HazardModels.HazardResponse;
+import com.rainCity.hazard.service.ScoreHistoryStore.HistoryPoint;
+import com.rainCity.hazard.service.ScoreHistoryStore.Resolution;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class ScoreHistoryStoreTest {
+
+  private static final long MINUTE = ScoreHistoryStore.MINUTE_MS;
+  private static final long HOUR = ScoreHistoryStore.HOUR_MS;
+  private static final long DAY = 24 * HOUR;
+  // 10:00 on some day, on a whole hour
+  private static final long T0 = Instant.parse("2026-10-01T10:00:00Z").toEpochMilli();
+
+  @TempDir
+  Path dir;
+
+  private ScoreHistoryStore open(int segmentRows) {
+    ScoreHistoryStore store = new ScoreHistoryStore();
+    ReflectionTestUtils.setField(store, "enabled", true);
+    ReflectionTestUtils.setField(store, "dir", dir);
+    ReflectionTestUtils.setField(store, "segmentRows", segmentRows);
+    store.open();
+    return store;
+  }
+
+  private static HazardResponse response(String location, double score, long capturedAt) {
+    return HazardResponse.builder()
+        .id(location + "@" + capturedAt)
+        .locationString(location)
+        .score(score)
+        .timestamp(Instant.ofEpochMilli(capturedAt).toString())
+        .build();
+  }
+
+  @Test
+  void samplesAreStampedWithTheFrameTimeAndQueriedPerLocation() {
+    ScoreHistoryStore store = open(1024);
+    store.append(response("A", 10, T0));
+    store.append(response("B", 50, T0 + 1000));
+    store.append(response("A", 20, T0 + 2000));
+
+    List<HistoryPoint> a = store.query("A", T0, T0 + MINUTE, Resolution.RAW);
+    assertEquals(List.of(T0, T0 + 2000), a.stream().map(HistoryPoint::t).toList());
+    assertEquals(20, a.get(1).avg());
+    assertEquals(1, store.query("B", T0, T0 + MINUTE, Resolution.RAW).size());
+    assertTrue(store.query("A", T0 + 3000, T0 + MINUTE, Resolution.RAW).isEmpty());
+    assertTrue(store.query("C", T0, T0 + MINUTE, Resolution.RAW).isEmpty());
+    store.close();
+  }
+
+  @Test
+  void rollsUpIntoMinuteAndHourBuckets() {
+    ScoreHistoryStore store = open(1024);
+    store.append("A", T0 + 1000, 10, ScoreHistoryStore.TAG_SPIKE);
+    store.append("A", T0 + 2000, 30, ScoreHistoryStore.TAG_CONES);
+    store.append("A", T0 + MINUTE + 1000, 50, 0);
+    store.append("B", T0 + HOUR + 1000, 5, 0);
+
+    // The first minute was written out, the second is still open behind B's newer sample
+    List<HistoryPoint> minutes = store.query("A", T0, T0 + HOUR, Resolution.MINUTE);
+    assertEquals(2, minutes.size());
+    HistoryPoint first = minutes.get(0);
+    assertEquals(T0, first.t());
+    assertEquals(2, first.count());
+    assertEquals(20, first.avg());
+    assertEquals(30, first.max());
+    assertEquals(ScoreHistoryStore.TAG_SPIKE | ScoreHistoryStore.TAG_CONES, first.tags());
+    assertEquals(1, first.spikes());
+    assertEquals(T0 + MINUTE, minutes.get(1).t());
+
+    List<HistoryPoint> hours = store.query("A", T0, T0 + DAY, Resolution.HOUR);
+    assertEquals(1, hours.size());
+    assertEquals(3, hours.get(0).count());
+    assertEquals(50, hours.get(0).max());
+    store.close();
+  }
+
+  @Test
+  void lateFrameLandsInTheMinuteItWasCaptured() {
+    ScoreHistoryStore store = open(1024);
+    store.append(response("A", 10, T0 + 5 * MINUTE));
+    store.append(response("B", 10, T0 + 7 * MINUTE));
+    // Queued behind B: captured in A's 10:05 bucket, which was already written out
+    store.append(response("A", 30, T0 + 5 * MINUTE + 30_000));
+
+    List<HistoryPoint> minutes = store.query("A", T0, T0 + HOUR, Resolution.MINUTE);
+    assertEquals(1, minutes.size());
+    assertEquals(T0 + 5 * MINUTE, minutes.get(0).t());
+    assertEquals(2, minutes.get(0).count());
+    assertEquals(20, minutes.get(0).avg());
+    store.close();
+  }
+
+  @Test
+  void reopenRebuildsOpenBucketsAndIgnoresATornAppend() throws IOException {
+    ScoreHistoryStore store = open(1024);
+    store.append("A", T0 + 1000, 10, 0);
+    store.append("A", T0 + MINUTE + 1000, 20, 0);
+    store.append("A", T0 + MINUTE + 2000, 40, 0);
+    store.close();
+
+    // A fourth sample whose columns were written but whose row count never was
+    try (FileChannel time = FileChannel.open(dir.resolve("raw-00000000.0.col"), StandardOpenOption.WRITE);
+        FileChannel score = FileChannel.open(dir.resolve("raw-00000000.2.col"), StandardOpenOption.WRITE)) {
+      time.write(ByteBuffer.allocate(8).putLong(0, T0 + MINUTE + 3000), 3 * 8);
+      score.write(ByteBuffer.allocate(8).putDouble(0, 99), 3 * 8);
+    }
+
+    store = open(1024);
+    assertEquals(3, store.sampleCount());
+    assertEquals(3, store.query("A", T0, T0 + HOUR, Resolution.RAW).size());
+    List<HistoryPoint> minutes = store.query("A", T0, T0 + HOUR, Resolution.MINUTE);
+    assertEquals(2, minutes.size());
+    // The open minute came back from the raw tail, counted once
+    assertEquals(2, minutes.get(1).count());
+    assertEquals(40, minutes.get(1).max());
+
+    // The next append takes the torn row's place
+    store.append("A", T0 + MINUTE + 4000, 30, 0);
+    assertEquals(4, store.sampleCount());
+    assertEquals(30, store.query("A", T0 + MINUTE + 3000, T0 + HOUR, Resolution.RAW).get(0).avg());
+    store.close();
+  }
+
+  @Test
+  void rawSegmentsPastRetentionAreDeletedAndRollupsRemain() {
+    long now = System.currentTimeMillis();
+    long old = now - 30 * DAY;
+    ScoreHistoryStore store = open(4);
+    for (int i = 0; i < 10; i++)
+      store.append("A", old + i * MINUTE, 10, 0);
+    for (int i = 0; i < 3; i++)
+      store.append("A", now - HOUR + i * 1000, 20, 0);
+    assertEquals(13, store.sampleCount());
+
+    store.applyRetention();
+
+    // Segments of four rows: the two holding only old samples go, the mixed one stays
+    assertEquals(5, store.sampleCount());
+    assertFalse(Files.exists(dir.resolve("raw-00000000.0.col")));
+    assertEquals(2, store.query("A", old, old + DAY, Resolution.RAW).size());
+    assertEquals(3, store.query("A", now - HOUR, now, Resolution.RAW).size());
+    assertEquals(10, store.query("A", old - MINUTE, old + DAY, Resolution.MINUTE).size());
+    store.close();
+
+    store = open(4);
+    assertEquals(5, store.sampleCount());
+    assertEquals(3, store.query("A", now - HOUR, now, Resolution.RAW).size());
+    store.close();
+  }
+
+  @Test
+  void autoResolutionFollowsSpanAndRetention() {
+    ScoreHistoryStore store = new ScoreHistoryStore();
+    long now = System.currentTimeMillis();
+
+    assertEquals(Resolution.RAW, store.resolutionFor(now - HOUR, now));
+    assertEquals(Resolution.MINUTE, store.resolutionFor(now - 2 * DAY, now));
+    assertEquals(Resolution.HOUR, store.resolutionFor(now - 30 * DAY, now));
+    // Raw samples are kept for a week, minute buckets for 90 days
+    assertEquals(Resolution.MINUTE, store.resolutionFor(now - 30 * DAY, now - 30 * DAY + HOUR));
+    assertEquals(Resolution.HOUR, store.resolutionFor(now - 200 * DAY, now - 200 * DAY + HOUR));
+  }
+}
@@ -0,0 +1,129 @@
+package com.rainCity.hazard.service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.rainCity.hazard.model.HazardModels.HazardResponse;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class SnapshotStoreTest {
+
+  @TempDir
+  Path dir;
+
+  private SnapshotStore open() {
+    SnapshotStore store = new SnapshotStore();
+    ReflectionTestUtils.setField(store, "enabled", true);
+    ReflectionTestUtils.setField(store, "path", dir.resolve("snapshot.bin"));
+    ReflectionTestUtils.setField(store, "compactAfterBytes", Long.MAX_VALUE);
+    store.restore();
+    return store;
+  }
+
+  private static HazardResponse response(String location, double score) {
+    return HazardResponse.builder()
+        .id(location + "@" + (long) score)
+        .locationString(location)
+        .score(score)
+        .timestamp("2026-01-01T00:00:00Z")
+        .build();
+  }
+
+  @Test
+  void restoresMonitoredLocationsAndLatestResultPerLocation() {
+    SnapshotStore store = open();
+    store.recordMonitored("A");
+    store.recordMonitored("B");
+    store.recordResult(response("A", 10), new byte[] {1, 2, 3});
+    store.recordResult(response("A", 20), new byte[] {4, 5});
+    store.recordResult(response("B", 30), null);
+    store.close();
+
+    SnapshotStore restored = open();
+    Map<String, HazardResponse> latest = restored.latestResults();
+    assertEquals(Set.of("A", "B"), restored.monitoredLocations());
+    assertEquals(20, latest.get("A").getScore());
+    assertArrayEquals(new byte[] {4, 5}, latest.get("A").getImage().data());
+    assertEquals(30, latest.get("B").getScore());
+    restored.close();
+  }
+
+  @Test
+  void tornTailIsTruncatedAndEarlierRecordsSurvive() throws IOException {
+    SnapshotStore store = open();
+    store.recordMonitored("A");
+    store.recordResult(response("A", 10), new byte[] {1});
+    store.close();
+    Path file = dir.resolve("snapshot.bin");
+    long valid = Files.size(file);
+
+    // A newer result for A whose write was cut short
+    store = open();
+    store.recordResult(response("A", 99), new byte[100]);
+    store.close();
+    byte[] bytes = Files.readAllBytes(file);
+    Files.write(file, Arrays.copyOf(bytes, bytes.length - 40));
+
+    SnapshotStore restored = open();
+    assertEquals(valid, Files.size(file));
+    assertEquals(10, restored.latestResults().get("A").getScore());
+
+    // Appends after recovery land on a clean record boundary
+    restored.recordResult(response("A", 50), new byte[] {2});
+    restored.close();
+    assertEquals(50, open().latestResults().get("A").getScore());
+  }
+
+  @Test
+  void corruptRecordEndsReplay() throws IOException {
+    SnapshotStore store = open();
+    store.recordResult(response("A", 10), null);
+    store.close();
+    Path file = dir.resolve("snapshot.bin");
+    long valid = Files.size(file);
+
+    store = open();
+    store.recordResult(response("B", 20), null);
+    store.close();
+    // Flip a byte inside B's payload so its CRC no longer matches
+    byte[] bytes = Files.readAllBytes(file);
+    bytes[(int) valid + 8] ^= 0x5a;
+    Files.write(file, bytes, StandardOpenOption.TRUNCATE_EXISTING);
+
+    SnapshotStore restored = open();
+    assertEquals(valid, Files.size(file));
+    assertEquals(Set.of("A"), restored.latestResults().keySet());
+    assertTrue(restored.monitoredLocations().isEmpty());
+    restored.close();
+  }
+
+  @Test
+  void descriptionIsRecordedWithoutRewritingTheFrame() throws IOException {
+    SnapshotStore store = open();
+    store.recordResult(response("A", 10), new byte[4096]);
+    Path file = dir.resolve("snapshot.bin");
+    long afterResult = Files.size(file);
+
+    store.recordDescription("A", "A@10", "Cones in the left lane");
+    // A description for a frame that has since been replaced is ignored
+    store.recordDescription("A", "A@9", "stale");
+    store.close();
+    assertTrue(Files.size(file) - afterResult < 128);
+
+    SnapshotStore restored = open();
+    HazardResponse latest = restored.latestResults().get("A");
+    assertEquals("Cones in the left lane", latest.getDescription());
+    assertEquals(4096, latest.getImage().data().length);
+    restored.close();
+  }
+}
@@ -4,6 +4,7 @@ import SockJS from "sockjs-client";
 import { motion, AnimatePresence } from 'framer-motion';
 import { Activity, Wifi, WifiOff, UserX, Flame, TreeDeciduous, Users } from 'lucide-react';
 import Header from './Header';
+import { BACKEND_URL } from './config';
 
 const MONITORED_INTERSECTIONS = [
   'Granville St and W Broadway',
@@ -32,6 +33,7 @@ export default function TrafficDashboard() {
 
     return {
       id: loc,
+      responseId: backend.id,
       location: loc,
       currentScore: Math.round(backend.score || 0),
       baseline: Math.round(backend.average || 0),
@@ -46,6 +48,9 @@ export default function TrafficDashboard() {
       },
       timestamp: new Date().toLocaleTimeString(),
       img: backend.img,
+      // Versioned thumb / medium / full URLs; `img` is the inline medium rendition
+      images: backend.images,
+      coords: backend.coords,
       description: backend.description || "System analyzing live feed..."
     };
   };
@@ -54,13 +59,13 @@ export default function TrafficDashboard() {
     console.log("🚀 Initializing WebSocket...");
 
     const client = new Client({
-      webSocketFactory: () => new SockJS('http://localhost:8080/ws/hazards'),
+      webSocketFactory: () => new SockJS(`${BACKEND_URL}/ws/hazards`),
       reconnectDelay: 5000,
       onConnect: () => {
         console.log("✅ WEBSOCKET CONNECTED");
         setConnected(true);
 
-        client.subscribe('/topic/traffic-alerts', (msg) => {
+        const onAlert = (msg) => {
           const rawData = JSON.parse(msg.body);
           console.log("📥 MESSAGE RECEIVED FROM JAVA:", rawData);
 
@@ -84,7 +89,20 @@ export default function TrafficDashboard() {
           });
 
           setLastUpdated(new Date().toLocaleTimeString());
-        });
+        };
+
+        // LLM description for an alert already shown; ignored if a newer frame replaced it
+        const onAlertUpdate = (msg) => {
+          const update = JSON.parse(msg.body);
+          setAlerts(currentAlerts => currentAlerts.map(a =>
+            a.responseId === update.id ? { ...a, description: update.description } : a
+          ));
+        };
+
+        client.subscribe('/topic/traffic-alerts', onAlert);
+        client.subscribe('/topic/traffic-alert-updates', onAlertUpdate);
+        // Last known state for our intersections, sent right after the monitor request
+        client.subscribe('/user/queue/traffic-alerts', onAlert);
 
         client.publish({
           destination: '/app/monitor-intersections',
@@ -3,6 +3,7 @@ import React from 'react';
 import { MapContainer, TileLayer, Marker, Popup, Circle } from 'react-leaflet';
 import 'leaflet/dist/leaflet.css';
 import L from 'leaflet';
+import { BACKEND_URL } from './config';
 
 // Fix for default marker icons
 import icon from 'leaflet/dist/images/marker-icon.png';
@@ -69,6 +70,9 @@ export default function Map({ alerts }) {
             <Marker position={[alert.coords.lat, alert.coords.lng]}>
               <Popup>
                 <div className="text-slate-900 p-2">
+                  {alert.images?.thumb && (
+                    <img src={BACKEND_URL + alert.images.thumb} alt="" loading="lazy" className="w-40 rounded mb-1" />
+                  )}
                   <h4 className="font-bold">{alert.location}</h4>
                   <p className="text-xs">Score: {alert.currentScore}</p>
                   <p className="text-[10px] mt-1 text-slate-600">{alert.description}</p>
@@ -0,0 +1,2 @@
+// Backend origin for the WebSocket and REST calls; set VITE_BACKEND_URL to point elsewhere
+export const BACKEND_URL = import.meta.env.VITE_BACKEND_URL ?? 'http://localhost:8080';
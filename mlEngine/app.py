@@ -23,12 +23,12 @@ def detect_hazards(image):
     for box in result.boxes:
         cls_name = result.names[int(box.cls[0])]
         conf = float(box.conf[0])
+        x1, y1, x2, y2 = (round(float(v), 1) for v in box.xyxy[0])
+        entry = summary.setdefault(cls_name, {"label": cls_name, "confidence": 0.0, "boxes": []})
         # Only keep the highest confidence for each label type
-        if cls_name not in summary or conf > summary[cls_name]["confidence"]:
-            summary[cls_name] = {
-                "label": cls_name,
-                "confidence": round(conf, 3)
-            }
+        entry["confidence"] = max(entry["confidence"], round(conf, 3))
+        # Every box as [x1, y1, x2, y2, confidence] in input pixels, so clients can draw their own overlay
+        entry["boxes"].append([x1, y1, x2, y2, round(conf, 3)])
 
     # Convert map to a simple list
     return labeled_img, list(summary.values())